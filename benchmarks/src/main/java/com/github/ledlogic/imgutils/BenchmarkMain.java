@@ -0,0 +1,38 @@
+package com.github.ledlogic.imgutils;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * BenchmarkMain - the JMH runner with the GC profiler always on
+ *
+ * Takes the usual JMH command line (benchmark regex, -p, -f, -rf json ...)
+ * and adds -prof gc, so every result has its allocation rate
+ * (gc.alloc.rate, MB/s, and gc.alloc.rate.norm, bytes per operation) next
+ * to its throughput.
+ *
+ * Usage:
+ *   java -jar benchmarks/target/benchmarks.jar [JMH options] [regex]
+ *
+ * Example:
+ *   java -jar benchmarks/target/benchmarks.jar "PixelBenchmark.gray" -p size=2048 -rf json
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        Options options = new OptionsBuilder()
+            .parent(cli)
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
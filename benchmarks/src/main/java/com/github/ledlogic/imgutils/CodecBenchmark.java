@@ -0,0 +1,82 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CodecBenchmark - file-to-image paths: ImageColorApp.recolor end to end
+ * (PNG decode, recolor, PNG encode) and the Anycubic preview parser
+ *
+ * Slicer previews are {@code size} wide and 3/4 as tall, as are the PNGs.
+ * PNG output goes to a temporary folder that is deleted afterwards.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    @Param({ "256", "1024", "2048" })
+    int size;
+
+    private Path dir;
+    private File png;
+    private File out;
+    private byte[] anycubic;
+    private byte[] rgb565;
+
+    @Setup
+    public void setup() throws IOException {
+        int width = size, height = size * 3 / 4;
+        dir = Files.createTempDirectory("imgutils-bench");
+        png = dir.resolve("map.png").toFile();
+        out = dir.resolve("map-out.png").toFile();
+        ImageIO.write(SyntheticData.lineArt(width, height), "png", png);
+
+        anycubic = SyntheticData.anycubic(width, height);
+        rgb565 = SyntheticData.rgb565(width, height);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public int recolor() throws Exception {
+        return ImageColorApp.recolor(png, out, "3A7BD5");
+    }
+
+    @Benchmark
+    public BufferedImage decodeRgb565() {
+        return SliceViewerApp.decodeRgb565(rgb565, 0, size, size * 3 / 4);
+    }
+
+    /** Section table walk plus both preview decodes */
+    @Benchmark
+    public BufferedImage parseAnycubicBytes() throws IOException {
+        return SliceViewerApp.parseAnycubicBytes(anycubic);
+    }
+}
@@ -0,0 +1,208 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * CorpusGenerator - writes a deterministic test corpus for EndToEndSuite
+ *
+ * Each folder holds what one family of tools reads in practice, built from
+ * the seeded generators in SyntheticData, so the same scale always gives
+ * byte-identical files:
+ *
+ *   maps/      blueprint pages with orange-framed maps, as PNG and JPEG
+ *   planets/   planet discs on black, as PNG
+ *   slicer/    Anycubic .pm4n files (RGB565 PREVIEW sections) and Lychee
+ *              .lys files (PNG previews in a mangoFiles manifest)
+ *   zips/      a Google Drive split download: drive-download-...-001.zip
+ *              and so on, each part holding a slice of one folder tree
+ *   stl/       nested model folders of binary and ASCII STL files, some
+ *              with "SUP" (support) in their names
+ *
+ * Scales:
+ *   small    a quick run (about 80 MB), 2000 px maps
+ *   medium   more and larger files, 4000 px maps
+ *   large    print-resolution maps, 8000 px wide, and 200K-triangle meshes
+ *
+ * Usage:
+ *   java -cp benchmarks/target/benchmarks.jar com.github.ledlogic.imgutils.CorpusGenerator <dir>
+ *        [--scale small|medium|large]
+ */
+public class CorpusGenerator {
+
+    /** Counts and sizes for one scale */
+    private static final class Scale {
+        final String name;
+        final int maps, mapWidth, planets, planetSize, slicerFiles, previewWidth,
+                  zipParts, zipEntries, zipEntryBytes, stlFolders, stlPerFolder, stlTriangles;
+
+        Scale(String name, int maps, int mapWidth, int planets, int planetSize, int slicerFiles, int previewWidth,
+              int zipParts, int zipEntries, int zipEntryBytes, int stlFolders, int stlPerFolder, int stlTriangles) {
+            this.name = name;
+            this.maps = maps;
+            this.mapWidth = mapWidth;
+            this.planets = planets;
+            this.planetSize = planetSize;
+            this.slicerFiles = slicerFiles;
+            this.previewWidth = previewWidth;
+            this.zipParts = zipParts;
+            this.zipEntries = zipEntries;
+            this.zipEntryBytes = zipEntryBytes;
+            this.stlFolders = stlFolders;
+            this.stlPerFolder = stlPerFolder;
+            this.stlTriangles = stlTriangles;
+        }
+    }
+
+    private static final Scale[] SCALES = {
+        new Scale("small",   4, 2000,  4, 1024,  12,  800, 3,  20,   256 * 1024,  4,  6,  20_000),
+        new Scale("medium", 12, 4000, 12, 2048,  48, 1024, 6,  40,   512 * 1024,  8, 10,  60_000),
+        new Scale("large",  16, 8000, 24, 4096, 120, 1920, 8,  64,  1024 * 1024, 12, 16, 200_000),
+    };
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args[0].startsWith("--")) {
+            System.err.println("Usage: java CorpusGenerator <dir> [--scale small|medium|large]");
+            System.exit(1);
+        }
+        String scaleName = flagValue(args, "--scale", "small").toLowerCase(Locale.ROOT);
+        Scale scale = null;
+        for (Scale s : SCALES) {
+            if (s.name.equals(scaleName)) scale = s;
+        }
+        if (scale == null) {
+            System.err.println("Error: --scale must be small, medium or large");
+            System.exit(1);
+        }
+
+        Path root = Paths.get(args[0]);
+        Files.createDirectories(root);
+        long start = System.nanoTime();
+
+        maps(root.resolve("maps"), scale);
+        planets(root.resolve("planets"), scale);
+        slicer(root.resolve("slicer"), scale);
+        zips(root.resolve("zips"), scale);
+        stl(root.resolve("stl"), scale);
+        Files.writeString(root.resolve("corpus.properties"), "scale=" + scale.name + System.lineSeparator());
+
+        System.out.printf(Locale.ROOT, "Corpus (%s): %.1f MB in %s, written in %.1f s%n", scale.name,
+            EndToEndSuite.bytes(root) / 1048576.0, root.toAbsolutePath(), (System.nanoTime() - start) / 1e9);
+    }
+
+    // ── folders ──
+
+    private static void maps(Path dir, Scale s) throws IOException {
+        Files.createDirectories(dir);
+        for (int i = 0; i < s.maps; i++) {
+            // vary the size a little so pooled buffers see different shapes
+            int width = s.mapWidth - i * 16;
+            BufferedImage page = SyntheticData.blueprint(width, width * 3 / 4);
+            String format = i % 2 == 0 ? "png" : "jpg";
+            File out = dir.resolve(String.format("map-%03d.%s", i + 1, format)).toFile();
+            ImageIO.write(page, format, out);
+            progress("maps", i + 1, s.maps);
+        }
+    }
+
+    private static void planets(Path dir, Scale s) throws IOException {
+        Files.createDirectories(dir);
+        BufferedImage planet = SyntheticData.planet(s.planetSize, s.planetSize);
+        byte[] png = SyntheticData.png(planet);
+        for (int i = 0; i < s.planets; i++) {
+            Files.write(dir.resolve(String.format("planet-%03d.png", i + 1)), png);
+        }
+        progress("planets", s.planets, s.planets);
+    }
+
+    private static void slicer(Path dir, Scale s) throws IOException {
+        Files.createDirectories(dir);
+        int width = s.previewWidth, height = width * 3 / 4;
+        byte[] pm4n = SyntheticData.anycubic(width, height);
+        byte[] lys = SyntheticData.lychee(width, height);
+        for (int i = 0; i < s.slicerFiles; i++) {
+            Path sub = dir.resolve(String.format("batch-%02d", i / 10 + 1));
+            Files.createDirectories(sub);
+            if (i % 2 == 0) {
+                Files.write(sub.resolve(String.format("print-%03d.pm4n", i + 1)), pm4n);
+            } else {
+                Files.write(sub.resolve(String.format("print-%03d.lys", i + 1)), lys);
+            }
+        }
+        progress("slicer", s.slicerFiles, s.slicerFiles);
+    }
+
+    /**
+     * One tree split across parts the way Drive does it: every part repeats
+     * the top folders, and each file is in exactly one part.
+     */
+    private static void zips(Path dir, Scale s) throws IOException {
+        Files.createDirectories(dir);
+        byte[] image = SyntheticData.png(SyntheticData.lineArt(1024, 768));
+        byte[] mesh = SyntheticData.stl(s.stlTriangles / 4, 20f, false, 0);
+        int n = 0;
+        for (int part = 1; part <= s.zipParts; part++) {
+            Path zip = dir.resolve(String.format("drive-download-20260503T145811Z-3-%03d.zip", part));
+            try (OutputStream os = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(os)) {
+                for (int i = 0; i < s.zipEntries; i++, n++) {
+                    String folder = "Campaign/" + (n % 3 == 0 ? "maps/" : n % 3 == 1 ? "tokens/" : "models/");
+                    zos.putNextEntry(new ZipEntry(folder + String.format("item-%04d", n)
+                        + (n % 3 == 2 ? ".stl" : ".png")));
+                    zos.write(n % 3 == 2 ? mesh : image);
+                    zos.closeEntry();
+                }
+                // plus one large incompressible entry per part
+                zos.putNextEntry(new ZipEntry(String.format("Campaign/archive/part-%03d.bin", part)));
+                zos.write(SyntheticData.noise(s.zipEntryBytes * 4, part));
+                zos.closeEntry();
+            }
+            progress("zips", part, s.zipParts);
+        }
+    }
+
+    private static void stl(Path dir, Scale s) throws IOException {
+        Files.createDirectories(dir);
+        String[] parts = { "Body", "Head", "Arm_L", "Arm_R", "Base", "Weapon", "Cloak", "Shield" };
+        for (int f = 0; f < s.stlFolders; f++) {
+            Path model = dir.resolve(String.format("Creator %02d", f / 4 + 1))
+                            .resolve(String.format("Model %02d", f + 1));
+            Path supported = model.resolve("Supported");
+            Files.createDirectories(supported);
+            for (int i = 0; i < s.stlPerFolder; i++) {
+                String part = parts[i % parts.length] + (i >= parts.length ? "_" + (i / parts.length + 1) : "");
+                boolean sup = i % 3 == 0;
+                boolean ascii = i % 5 == 4;
+                // every fourth folder repeats the first folder's meshes, for dedupe
+                long seed = f % 4 == 3 ? i : (long) f * 1000 + i;
+                byte[] mesh = SyntheticData.stl(s.stlTriangles, 15f + i, ascii, seed);
+                Path file = sup ? supported.resolve(part + "_SUP.stl") : model.resolve(part + ".stl");
+                Files.write(file, mesh);
+            }
+            progress("stl", f + 1, s.stlFolders);
+        }
+    }
+
+    // ── helpers ──
+
+    private static void progress(String what, int done, int total) {
+        System.out.printf("\r  %-8s %d / %d", what, done, total);
+        if (done == total) System.out.println();
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,378 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * EndToEndSuite - runs each App on a CorpusGenerator corpus and records
+ * files/s, MB/s, wall time and peak RSS as JSON
+ *
+ * Each case runs its App in a fresh JVM, as a user would, so decode and
+ * encode, the filesystem, thread pools and JVM startup are all in the
+ * numbers. Before each run the case's corpus folder is mirrored into a
+ * scratch folder with hard links (copies where links are not possible),
+ * since some tools add files next to their inputs or delete them; the
+ * mirror is not timed.
+ *
+ * Peak RSS is the child's VmHWM from /proc, polled while it runs, so it is
+ * reported on Linux only (null elsewhere). Wall time, files/s and MB/s are
+ * medians over --repeat runs; the first run may read from disk and later
+ * ones from the page cache.
+ *
+ * With --keep, each case's last output and its log are left in
+ * <corpus>.work for inspection.
+ *
+ * The report has one result per line with fixed keys, so two reports diff
+ * cleanly; --compare prints the ratio of each case to an older report.
+ *
+ * Usage:
+ *   java -cp benchmarks/target/benchmarks.jar com.github.ledlogic.imgutils.EndToEndSuite <corpus>
+ *        [--out FILE] [--repeat N] [--only REGEX] [--jvm-args "ARGS"] [--compare OLD.json] [--keep]
+ *
+ * Example:
+ *   java -cp benchmarks/target/benchmarks.jar com.github.ledlogic.imgutils.CorpusGenerator /tmp/corpus
+ *   java -cp benchmarks/target/benchmarks.jar com.github.ledlogic.imgutils.EndToEndSuite /tmp/corpus \
+ *        --jvm-args "-Xmx2g" --out after.json --compare before.json
+ */
+public class EndToEndSuite {
+
+    /** One App, named by its class, run against one corpus folder */
+    private static final class Case {
+        final String name;
+        final String folder;
+        final Predicate<String> inputs;
+        final Function<Path, List<String>> args;
+
+        Case(String name, String folder, Predicate<String> inputs, Function<Path, List<String>> args) {
+            this.name = name;
+            this.folder = folder;
+            this.inputs = inputs;
+            this.args = args;
+        }
+    }
+
+    /** Measurements of one case */
+    private static final class Result {
+        final Case c;
+        int files;
+        long inputBytes;
+        int exitCode;
+        final List<Double> wallMs = new ArrayList<>();
+        long peakRssKb = -1;
+
+        Result(Case c) {
+            this.c = c;
+        }
+
+        double medianMs() {
+            double[] sorted = wallMs.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            int n = sorted.length;
+            return n == 0 ? 0 : n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+        }
+    }
+
+    private static final String PKG = "com.github.ledlogic.imgutils.";
+
+    private static final Predicate<String> PNG = n -> n.endsWith(".png");
+    private static final Predicate<String> IMAGE = n -> n.endsWith(".png") || n.endsWith(".jpg");
+
+    private static final List<Case> CASES = List.of(
+        new Case("ImageCropApp", "maps", PNG,
+            w -> List.of(w.toString())),
+        new Case("ImageColorApp", "maps", PNG,
+            w -> List.of(w.toString(), "3A7BD5")),
+        new Case("ImagePipelineApp", "maps", IMAGE,
+            w -> List.of(w.toString(), "--steps", "gray,recolor:3A7BD5,resize:0.5", "--format", "jpg")),
+        new Case("TiledImageApp", "maps", n -> n.equals("map-001.png"),
+            w -> List.of(w.resolve("map-001.png").toString(), "--gray", "--split", "4", "--cache-mb", "64")),
+        new Case("ImageCircleCutter", "planets", PNG,
+            w -> listFiles(w, PNG)),
+        new Case("SliceViewerApp", "slicer", n -> n.endsWith(".pm4n") || n.endsWith(".lys"),
+            w -> List.of("--output-dir", w.resolve("previews").toString(), w.toString())),
+        new Case("ZipExtractor", "zips", n -> n.endsWith(".zip"),
+            w -> List.of(w.toString())),
+        new Case("StlReportApp", "stl", n -> n.endsWith(".stl"),
+            w -> List.of(w.toString(), "--format", "json", "--out", w.resolve("report.json").toString())),
+        new Case("StlSupFinderApp", "stl", n -> n.endsWith(".stl"),
+            w -> List.of(w.toString(), w.resolveSibling(w.getFileName() + "-sup").toString()))
+    );
+
+    public static void main(String[] args) throws Exception {
+        // ── Argument handling ──────────────────────────────────────────────
+        if (args.length < 1 || args[0].startsWith("--")) {
+            System.err.println("Usage: java EndToEndSuite <corpus> [--out FILE] [--repeat N] [--only REGEX]");
+            System.err.println("                          [--jvm-args \"ARGS\"] [--compare OLD.json] [--keep]");
+            System.exit(1);
+        }
+        Path corpus = Paths.get(args[0]).toAbsolutePath();
+        if (!Files.isDirectory(corpus)) {
+            System.err.println("Error: corpus folder not found: " + corpus);
+            System.exit(1);
+        }
+        Path out        = Paths.get(flagValue(args, "--out", "e2e-report.json"));
+        int repeat      = Math.max(1, Integer.parseInt(flagValue(args, "--repeat", "3")));
+        Pattern only    = Pattern.compile(flagValue(args, "--only", ".*"));
+        String jvmArgs  = flagValue(args, "--jvm-args", "").trim();
+        String compare  = flagValue(args, "--compare", null);
+        boolean keep    = hasFlag(args, "--keep");
+
+        Path scratch = corpus.resolveSibling(corpus.getFileName() + ".work");
+        System.out.println("Corpus : " + corpus + " (" + scale(corpus) + ")");
+        System.out.println("Scratch: " + scratch);
+
+        // ── Run ────────────────────────────────────────────────────────────
+        List<Result> results = new ArrayList<>();
+        for (Case c : CASES) {
+            if (!only.matcher(c.name).find() || !Files.isDirectory(corpus.resolve(c.folder))) continue;
+            Result r = new Result(c);
+            for (Path p : listPaths(corpus.resolve(c.folder), c.inputs)) {
+                r.files++;
+                r.inputBytes += Files.size(p);
+            }
+            Path caseDir = scratch.resolve(c.name);
+            Path log = scratch.resolve(c.name + ".log");
+            Files.createDirectories(scratch);
+            Files.deleteIfExists(log);
+            for (int i = 0; i < repeat; i++) {
+                FileUtils.deleteDirectory(caseDir.toFile());
+                Path work = caseDir.resolve(c.folder);
+                mirror(corpus.resolve(c.folder), work);
+                run(r, work, jvmArgs, log);
+                if (r.exitCode != 0) break;
+            }
+            print(r);
+            results.add(r);
+            if (!keep) FileUtils.deleteDirectory(caseDir.toFile());
+        }
+        if (!keep) FileUtils.deleteDirectory(scratch.toFile());
+
+        writeReport(out, corpus, jvmArgs, repeat, results);
+        System.out.println("\nReport: " + out.toAbsolutePath());
+        if (compare != null) compare(Paths.get(compare), results);
+    }
+
+    // ── running ──
+
+    private static void run(Result r, Path work, String jvmArgs, Path log) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (!jvmArgs.isEmpty()) cmd.addAll(Arrays.asList(jvmArgs.split("\\s+")));
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(PKG + r.c.name);
+        cmd.addAll(r.c.args.apply(work));
+
+        long start = System.nanoTime();
+        Process proc = new ProcessBuilder(cmd).redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile())).start();
+        Path status = Paths.get("/proc", String.valueOf(proc.pid()), "status");
+        long peak = -1;
+        while (!proc.waitFor(10, TimeUnit.MILLISECONDS)) {
+            peak = Math.max(peak, vmHwmKb(status));
+        }
+        double ms = (System.nanoTime() - start) / 1e6;
+
+        r.exitCode = proc.exitValue();
+        r.wallMs.add(ms);
+        r.peakRssKb = Math.max(r.peakRssKb, peak);
+        if (r.exitCode != 0) {
+            System.err.println("  " + r.c.name + " exited with " + r.exitCode + ", last output:");
+            List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+            lines.subList(Math.max(0, lines.size() - 10), lines.size()).forEach(l -> System.err.println("    " + l));
+        }
+    }
+
+    /** VmHWM (peak resident set) of a running process in kB, or -1 */
+    private static long vmHwmKb(Path status) {
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not Linux, or the process has just exited
+        }
+        return -1;
+    }
+
+    /** Recreates {@code src} under {@code dst} with hard links, copying where linking fails */
+    private static void mirror(Path src, Path dst) throws IOException {
+        Files.walkFileTree(src, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dst.resolve(src.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = dst.resolve(src.relativize(file).toString());
+                try {
+                    Files.createLink(target, file);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(file, target);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // ── report ──
+
+    private static void print(Result r) {
+        System.out.printf(Locale.ROOT, "  %-18s %4d file(s) %9.1f MB  %9.0f ms  %8.2f files/s  %8.2f MB/s  peak RSS %s%s%n",
+            r.c.name, r.files, r.inputBytes / 1048576.0, r.medianMs(), filesPerSec(r), mbPerSec(r),
+            r.peakRssKb < 0 ? "n/a" : (r.peakRssKb / 1024) + " MB", r.exitCode == 0 ? "" : "  FAILED (" + r.exitCode + ")");
+    }
+
+    private static void writeReport(Path out, Path corpus, String jvmArgs, int repeat, List<Result> results)
+            throws IOException {
+        Path parent = out.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            pw.println("{");
+            pw.println("  \"suite\": \"imgutils-e2e\",");
+            pw.println("  \"timestamp\": \"" + Instant.now() + "\",");
+            pw.println("  \"corpus\": " + quote(corpus.toString()) + ",");
+            pw.println("  \"scale\": " + quote(scale(corpus)) + ",");
+            pw.println("  \"java\": " + quote(System.getProperty("java.version")) + ",");
+            pw.println("  \"os\": " + quote(System.getProperty("os.name") + " " + System.getProperty("os.arch")) + ",");
+            pw.println("  \"cpus\": " + Runtime.getRuntime().availableProcessors() + ",");
+            pw.println("  \"jvmArgs\": " + quote(jvmArgs) + ",");
+            pw.println("  \"repeat\": " + repeat + ",");
+            pw.println("  \"results\": [");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                StringBuilder runs = new StringBuilder();
+                for (double ms : r.wallMs) {
+                    if (runs.length() > 0) runs.append(", ");
+                    runs.append(num(ms));
+                }
+                pw.print(String.format(Locale.ROOT,
+                    "    {\"case\": %s, \"files\": %d, \"inputBytes\": %d, \"exitCode\": %d, \"wallMs\": %s, "
+                        + "\"filesPerSec\": %s, \"mbPerSec\": %s, \"peakRssKb\": %s, \"runsMs\": [%s]}",
+                    quote(r.c.name), r.files, r.inputBytes, r.exitCode, num(r.medianMs()),
+                    num(filesPerSec(r)), num(mbPerSec(r)), r.peakRssKb < 0 ? "null" : String.valueOf(r.peakRssKb), runs));
+                pw.println(i < results.size() - 1 ? "," : "");
+            }
+            pw.println("  ]");
+            pw.println("}");
+        }
+    }
+
+    private static final Pattern RESULT_LINE = Pattern.compile(
+        "\"case\": \"([^\"]+)\".*\"wallMs\": ([0-9.]+).*\"peakRssKb\": ([0-9]+|null)");
+
+    /** Prints new/old ratios for the cases both reports have */
+    private static void compare(Path old, List<Result> results) throws IOException {
+        Map<String, double[]> before = new HashMap<>();
+        for (String line : Files.readAllLines(old, StandardCharsets.UTF_8)) {
+            Matcher m = RESULT_LINE.matcher(line);
+            if (m.find()) {
+                double rss = m.group(3).equals("null") ? -1 : Double.parseDouble(m.group(3));
+                before.put(m.group(1), new double[] { Double.parseDouble(m.group(2)), rss });
+            }
+        }
+        System.out.println("\nCompared with " + old + " (ratio new / old, below 1.00 is better):");
+        for (Result r : results) {
+            double[] b = before.get(r.c.name);
+            if (b == null) continue;
+            String rss = b[1] <= 0 || r.peakRssKb < 0 ? "n/a" : String.format(Locale.ROOT, "%.2f", r.peakRssKb / b[1]);
+            System.out.printf(Locale.ROOT, "  %-18s wall %9.0f -> %9.0f ms  x%.2f   peak RSS x%s%n",
+                r.c.name, b[0], r.medianMs(), r.medianMs() / b[0], rss);
+        }
+    }
+
+    // ── helpers ──
+
+    private static double filesPerSec(Result r) {
+        double ms = r.medianMs();
+        return ms > 0 ? r.files * 1000.0 / ms : 0;
+    }
+
+    private static double mbPerSec(Result r) {
+        double ms = r.medianMs();
+        return ms > 0 ? r.inputBytes / 1048576.0 * 1000.0 / ms : 0;
+    }
+
+    private static String scale(Path corpus) {
+        try {
+            for (String line : Files.readAllLines(corpus.resolve("corpus.properties"))) {
+                if (line.startsWith("scale=")) return line.substring(6).trim();
+            }
+        } catch (IOException e) {
+            // not written by CorpusGenerator
+        }
+        return "unknown";
+    }
+
+    /** Total size of the regular files under {@code dir} */
+    static long bytes(Path dir) throws IOException {
+        long total = 0;
+        for (Path p : listPaths(dir, n -> true)) total += Files.size(p);
+        return total;
+    }
+
+    private static List<Path> listPaths(Path dir, Predicate<String> names) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(Files::isRegularFile)
+                       .filter(p -> names.test(p.getFileName().toString().toLowerCase(Locale.ROOT)))
+                       .sorted(Comparator.naturalOrder())
+                       .toList();
+        }
+    }
+
+    private static List<String> listFiles(Path dir, Predicate<String> names) {
+        try {
+            return listPaths(dir, names).stream().map(Path::toString).toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot list " + dir, e);
+        }
+    }
+
+    private static String num(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String a : args) {
+            if (a.equalsIgnoreCase(flag)) return true;
+        }
+        return false;
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
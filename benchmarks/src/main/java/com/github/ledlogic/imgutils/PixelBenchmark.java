@@ -0,0 +1,110 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PixelBenchmark - in-memory pixel loops, without decode or encode
+ *
+ * Images are {@code size} wide and 3/4 as tall. The loops rewrite their
+ * input in place, so each is given an input on which repeating the work
+ * costs the same every time: graying an image again does the same
+ * arithmetic, and recoloring paints near-black pixels another near-black
+ * color, leaving the same pixels to match next time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PixelBenchmark {
+
+    @Param({ "256", "1024", "2048" })
+    int size;
+
+    private BufferedImage lineArt;
+    private int[] lineArtPixels;
+    private BufferedImage blueprint;
+    private int[] columnCounts;
+    private BufferedImage planet;
+    private ImageCircleCutter.Circle circle;
+    private BufferedImage circleOut;
+
+    @Setup
+    public void setup() {
+        int width = size, height = size * 3 / 4;
+        lineArt = SyntheticData.lineArt(width, height);
+        lineArtPixels = ((DataBufferInt) lineArt.getRaster().getDataBuffer()).getData();
+
+        blueprint = SyntheticData.blueprint(width, height);
+        boolean[][] orange = ImageCropApp.buildOrangeMask(blueprint, width, height);
+        columnCounts = new int[width];
+        for (boolean[] row : orange) {
+            for (int x = 0; x < width; x++) {
+                if (row[x]) columnCounts[x]++;
+            }
+        }
+
+        planet = SyntheticData.planet(width, height);
+        circle = ImageCircleCutter.detectCircle(planet);
+        circleOut = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /** GrayScalerService on the int[] raster, as for pooled decodes */
+    @Benchmark
+    public BufferedImage grayscaleRaster() {
+        GrayScalerService.grayscale(lineArt, lineArtPixels);
+        return lineArt;
+    }
+
+    /** GrayScalerService through getRGB / setRGB, as for other image types */
+    @Benchmark
+    public BufferedImage grayscaleGetRgb() {
+        GrayScalerService.grayscale(lineArt, null);
+        return lineArt;
+    }
+
+    @Benchmark
+    public int recolorPixels() {
+        return ImageColorApp.recolorPixels(lineArtPixels, lineArtPixels.length, 0x0A0A0A);
+    }
+
+    @Benchmark
+    public boolean[][] buildOrangeMask() {
+        return ImageCropApp.buildOrangeMask(blueprint, blueprint.getWidth(), blueprint.getHeight());
+    }
+
+    /** Column bands at the default density, with ImageCropApp's gap */
+    @Benchmark
+    public List<int[]> denseBands() {
+        int threshold = (int) (blueprint.getHeight() * ImageCropApp.BORDER_DENSITY_COL);
+        return ImageCropApp.denseBands(columnCounts, threshold, ImageCropApp.BAND_GAP);
+    }
+
+    /** createCircularMask allocating its output, as ImagePipeline calls it */
+    @Benchmark
+    public BufferedImage circularMask() {
+        return ImageCircleCutter.createCircularMask(planet, circle);
+    }
+
+    /** createCircularMask into a reused output, as ImageCircleCutter calls it */
+    @Benchmark
+    public BufferedImage circularMaskInto() {
+        return ImageCircleCutter.createCircularMask(planet, circle, circleOut);
+    }
+}
@@ -0,0 +1,297 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * SyntheticData - deterministic inputs for the benchmarks
+ *
+ * Every generator is seeded, so a given size always produces the same
+ * pixels and bytes, and runs on different machines or commits compare like
+ * with like. The images imitate what the tools see in practice: blueprint
+ * scans with orange map borders, line-art maps with black ink, a planet on
+ * black, RGB565 and PNG slicer previews, STL meshes and zips of mixed
+ * content.
+ */
+final class SyntheticData {
+
+    private static final long SEED = 0x1eD10C1CL;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * A TYPE_INT_RGB blueprint page of {@code width} x {@code height}: paper
+     * noise, ink specks and two side-by-side maps framed in orange, as
+     * ImageCropApp expects from readRaw.
+     */
+    static BufferedImage blueprint(int width, int height) {
+        SplittableRandom rnd = new SplittableRandom(SEED);
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = 235 + rnd.nextInt(20);
+                int rgb = (v << 16) | (v << 8) | (v - 5);
+                if (rnd.nextInt(200) == 0) rgb = 0x202020;
+                img.setRGB(x, y, rgb);
+            }
+        }
+        int border = Math.max(2, width / 200);
+        int top = height / 8, bottom = height - height / 10;
+        frame(img, width / 20, top, width / 2 - width / 40, bottom, border);
+        frame(img, width / 2 + width / 40, top, width - width / 20, bottom, border);
+        return img;
+    }
+
+    private static void frame(BufferedImage img, int x0, int y0, int x1, int y1, int t) {
+        int orange = 0xE8821E;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                boolean edge = x < x0 + t || x >= x1 - t || y < y0 + t || y >= y1 - t;
+                if (edge) img.setRGB(x, y, orange);
+            }
+        }
+    }
+
+    /**
+     * A TYPE_INT_ARGB line-art map: colored regions crossed by near-black
+     * strokes (about a fifth of the pixels), with some translucent pixels.
+     */
+    static BufferedImage lineArt(int width, int height) {
+        SplittableRandom rnd = new SplittableRandom(SEED + 1);
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int cell = Math.max(8, width / 16);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean ink = x % cell < cell / 10 || y % cell < cell / 10 || rnd.nextInt(50) == 0;
+                int alpha = rnd.nextInt(10) == 0 ? 0x80 : 0xFF;
+                int rgb = ink
+                    ? rnd.nextInt(25) * 0x010101
+                    : ((x * 255 / width) << 16) | ((y * 255 / height) << 8) | 0x80;
+                img.setRGB(x, y, (alpha << 24) | rgb);
+            }
+        }
+        return img;
+    }
+
+    /**
+     * A planet disc of radius 0.4 * min(width, height) on black, as
+     * ImageCircleCutter expects.
+     */
+    static BufferedImage planet(int width, int height) {
+        SplittableRandom rnd = new SplittableRandom(SEED + 2);
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int cx = width / 2, cy = height / 2, r = Math.min(width, height) * 2 / 5;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int dx = x - cx, dy = y - cy;
+                if (dx * dx + dy * dy <= r * r) {
+                    int shade = 90 + rnd.nextInt(120);
+                    img.setRGB(x, y, (shade << 16) | ((shade * 3 / 4) << 8) | (shade / 2));
+                } else {
+                    img.setRGB(x, y, rnd.nextInt(400) == 0 ? 0xFFFFFF : 0);
+                }
+            }
+        }
+        return img;
+    }
+
+    /**
+     * {@code width * height} little-endian RGB565 pixels: a gradient with
+     * noise in the low bits.
+     */
+    static byte[] rgb565(int width, int height) {
+        SplittableRandom rnd = new SplittableRandom(SEED + 3);
+        ByteBuffer buf = ByteBuffer.allocate(width * height * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r5 = x * 31 / Math.max(1, width - 1);
+                int g6 = y * 63 / Math.max(1, height - 1);
+                int b5 = rnd.nextInt(32);
+                buf.putShort((short) ((r5 << 11) | (g6 << 5) | b5));
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * An Anycubic Photon Workshop file with a HEADER section, a small
+     * preview and a {@code width} x {@code height} PREVIEW, laid out as
+     * SliceViewerApp.parseAnycubicBytes reads it.
+     */
+    static byte[] anycubic(int width, int height) {
+        byte[] header = new byte[64];
+        byte[] small = preview(width / 4 + 1, height / 4 + 1);
+        byte[] large = preview(width, height);
+        byte[][] sections = { header, small, large };
+        String[] tags = { "HEADER", "PREVIEW", "PREVIEW" };
+
+        int tableEnd = 20 + sections.length * 4;
+        int size = tableEnd;
+        for (byte[] s : sections) size += 16 + s.length;
+
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put("ANYCUBIC".getBytes(StandardCharsets.US_ASCII));
+        buf.putInt(8, 0);
+        buf.putInt(12, 515);          // version
+        buf.putInt(16, sections.length);
+        int off = tableEnd;
+        for (int i = 0; i < sections.length; i++) {
+            buf.putInt(20 + i * 4, off);
+            byte[] tag = tags[i].getBytes(StandardCharsets.US_ASCII);
+            buf.put(off, tag);
+            buf.putInt(off + 12, sections[i].length);
+            buf.put(off + 16, sections[i]);
+            off += 16 + sections[i].length;
+        }
+        return buf.array();
+    }
+
+    private static byte[] preview(int width, int height) {
+        byte[] pixels = rgb565(width, height);
+        ByteBuffer buf = ByteBuffer.allocate(12 + pixels.length).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(width).putInt(height).putInt(0).put(pixels);
+        return buf.array();
+    }
+
+    /**
+     * A Lychee .lys file: the header, a "mangoFiles" manifest and a blob
+     * section holding a {@code width} x {@code height} preview.png and a
+     * small thumbnail, each after the two prefix bytes newer exports add.
+     */
+    static byte[] lychee(int width, int height) throws IOException {
+        byte[] preview = png(planet(width, height));
+        byte[] thumb = png(planet(Math.max(1, width / 4), Math.max(1, height / 4)));
+        String json = "{\"version\":2,\"mangoFiles\":{"
+            + "\"thumbnail.png\":{\"offset\":0,\"size\":" + (thumb.length + 2) + "},"
+            + "\"preview.png\":{\"offset\":" + (thumb.length + 2) + ",\"size\":" + (preview.length + 2) + "},"
+            + "\"scene.json\":{\"offset\":" + (thumb.length + preview.length + 4) + ",\"size\":2}}}";
+        byte[] manifest = json.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buf = ByteBuffer.allocate(16 + manifest.length + thumb.length + preview.length + 6)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(4).putInt(1).putInt(0).putInt(manifest.length).put(manifest);
+        buf.put((byte) 0).put((byte) 0).put(thumb);
+        buf.put((byte) 0).put((byte) 0).put(preview);
+        buf.put((byte) '{').put((byte) '}');
+        return buf.array();
+    }
+
+    static byte[] png(BufferedImage img) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * A closed, lumpy sphere of about {@code triangles} triangles and the
+     * given radius in mm, as binary or ASCII STL. {@code seed} varies the
+     * surface so files differ in content, not only in name.
+     */
+    static byte[] stl(int triangles, float radius, boolean ascii, long seed) {
+        int rings = Math.max(3, (int) Math.sqrt(triangles / 4.0));
+        int segments = Math.max(3, triangles / (2 * rings));
+        SplittableRandom rnd = new SplittableRandom(SEED + seed);
+        float[][] lump = new float[rings + 1][segments];
+        for (float[] row : lump) {
+            for (int j = 0; j < segments; j++) row[j] = radius * (0.9f + 0.2f * (float) rnd.nextDouble());
+        }
+        for (int j = 1; j < segments; j++) {
+            lump[0][j] = lump[0][0];             // poles are single points
+            lump[rings][j] = lump[rings][0];
+        }
+
+        List<float[]> tris = new ArrayList<>();
+        for (int i = 0; i < rings; i++) {
+            for (int j = 0; j < segments; j++) {
+                int k = (j + 1) % segments;
+                float[] a = vertex(i, j, rings, segments, lump), b = vertex(i + 1, j, rings, segments, lump);
+                float[] c = vertex(i + 1, k, rings, segments, lump), d = vertex(i, k, rings, segments, lump);
+                tris.add(new float[] { a[0], a[1], a[2], b[0], b[1], b[2], c[0], c[1], c[2] });
+                tris.add(new float[] { a[0], a[1], a[2], c[0], c[1], c[2], d[0], d[1], d[2] });
+            }
+        }
+        return ascii ? asciiStl(tris) : binaryStl(tris);
+    }
+
+    private static float[] vertex(int ring, int segment, int rings, int segments, float[][] lump) {
+        double theta = Math.PI * ring / rings;
+        double phi = 2 * Math.PI * segment / segments;
+        float r = lump[ring][segment];
+        return new float[] {
+            (float) (r * Math.sin(theta) * Math.cos(phi)),
+            (float) (r * Math.sin(theta) * Math.sin(phi)),
+            (float) (r * Math.cos(theta))
+        };
+    }
+
+    private static byte[] binaryStl(List<float[]> tris) {
+        ByteBuffer buf = ByteBuffer.allocate(84 + 50 * tris.size()).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] header = "solid synthetic".getBytes(StandardCharsets.US_ASCII);
+        buf.put(header).position(80);
+        buf.putInt(tris.size());
+        for (float[] t : tris) {
+            buf.putFloat(0).putFloat(0).putFloat(0);
+            for (float v : t) buf.putFloat(v);
+            buf.putShort((short) 0);
+        }
+        return buf.array();
+    }
+
+    private static byte[] asciiStl(List<float[]> tris) {
+        StringBuilder sb = new StringBuilder("solid synthetic\n");
+        for (float[] t : tris) {
+            sb.append("  facet normal 0 0 0\n    outer loop\n");
+            for (int v = 0; v < 9; v += 3) {
+                sb.append("      vertex ").append(t[v]).append(' ').append(t[v + 1]).append(' ').append(t[v + 2]).append('\n');
+            }
+            sb.append("    endloop\n  endfacet\n");
+        }
+        return sb.append("endsolid synthetic\n").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** {@code n} random bytes, which do not compress */
+    static byte[] noise(int n, long seed) {
+        byte[] data = new byte[n];
+        new SplittableRandom(SEED + 5 + seed).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Writes a zip of {@code entries} files of about {@code entryBytes} each,
+     * alternating incompressible (random) and compressible (repeated text)
+     * content, some of them in subfolders.
+     */
+    static void zip(Path zip, int entries, int entryBytes) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(SEED + 4);
+        byte[] text = "Stone arch, level 2, north wing. Scale 1:48. ".getBytes(StandardCharsets.US_ASCII);
+        try (OutputStream os = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (int i = 0; i < entries; i++) {
+                byte[] data = new byte[entryBytes];
+                if (i % 2 == 0) {
+                    for (int j = 0; j < data.length; j++) data[j] = (byte) rnd.nextInt(256);
+                } else {
+                    for (int j = 0; j < data.length; j++) data[j] = text[j % text.length];
+                }
+                String dir = i % 3 == 0 ? "" : "part" + (i % 3) + "/";
+                zos.putNextEntry(new ZipEntry(dir + String.format("file-%04d.bin", i)));
+                zos.write(data);
+                zos.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ZipBenchmark - ZipExtractor.extractZip on a synthetic archive
+ *
+ * {@code fresh} extracts into an emptied folder each time, so every entry
+ * is written; {@code skip} extracts over the previous output, so every
+ * entry hits the size check and nothing is written. The per-entry console
+ * lines are discarded while the benchmark runs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ZipBenchmark {
+
+    @Param({ "16", "256" })
+    int entries;
+
+    @Param({ "4096", "262144" })
+    int entryBytes;
+
+    private Path dir;
+    private Path zip;
+    private Path freshDir;
+    private Path skipDir;
+    private PrintStream stdout;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("imgutils-bench");
+        zip = dir.resolve("archive.zip");
+        SyntheticData.zip(zip, entries, entryBytes);
+        freshDir = dir.resolve("fresh");
+        skipDir = dir.resolve("skip");
+        ZipExtractor.extractZip(zip, skipDir, false);
+
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyFreshDir() throws IOException {
+        FileUtils.deleteDirectory(freshDir.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public Object fresh() {
+        return ZipExtractor.extractZip(zip, freshDir, false);
+    }
+
+    @Benchmark
+    public Object skip() {
+        return ZipExtractor.extractZip(zip, skipDir, false);
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.ledlogic.imgutils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * BkTree - Burkhard-Keller tree over 64-bit hashes with Hamming distance
+ *
+ * Each node stores one hash and an id, and its children are keyed by their
+ * distance to it. A radius query only descends into children whose key lies
+ * within [d - radius, d + radius] of the query's distance d to the node
+ * (triangle inequality), so small-radius lookups touch a small fraction of
+ * the tree instead of every entry.
+ *
+ * Usage:
+ *   BkTree tree = new BkTree();
+ *   tree.add(hash, id);
+ *   tree.query(hash, 6, id -> ...);
+ */
+class BkTree {
+
+    private static final class Node {
+        final long hash;
+        final int id;
+        Node[] children; // indexed by distance 0..64
+
+        Node(long hash, int id) {
+            this.hash = hash;
+            this.id = id;
+        }
+    }
+
+    private Node root;
+    private int size = 0;
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    void add(long hash, int id) {
+        size++;
+        if (root == null) {
+            root = new Node(hash, id);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int d = distance(hash, node.hash);
+            if (node.children == null) node.children = new Node[65];
+            Node child = node.children[d];
+            if (child == null) {
+                node.children[d] = new Node(hash, id);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Calls {@code found} with the id of every entry within {@code radius}
+     * of {@code hash}, including exact matches.
+     */
+    void query(long hash, int radius, IntConsumer found) {
+        if (root == null) return;
+        Node[] stack = new Node[64];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            Node node = stack[--top];
+            int d = distance(hash, node.hash);
+            if (d <= radius) found.accept(node.id);
+            if (node.children == null) continue;
+            int hi = Math.min(64, d + radius);
+            for (int k = Math.max(0, d - radius); k <= hi; k++) {
+                Node child = node.children[k];
+                if (child != null) {
+                    if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                    stack[top++] = child;
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+}
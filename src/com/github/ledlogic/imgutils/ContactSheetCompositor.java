@@ -0,0 +1,558 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * ContactSheetCompositor - renders gridder token sheets straight to print-DPI
+ * PNG or TIFF pages, without a browser.
+ *
+ * Takes the same inputs as the HTML gridders: a list of images and a cell
+ * size in CSS pixels (96 per inch), repeated for a number of passes, with an
+ * optional filename label along the bottom of each cell. Cells flow left to
+ * right and top to bottom inside the page margins; each section ends with a
+ * 0.25 inch gap, and a new page starts when the next cell does not fit.
+ *
+ * Every distinct (image, cell size) tile is decoded, scaled, bordered and
+ * labelled once, in parallel, and copied into its cells as soon as it is
+ * ready, so a repeated token costs one raster copy. Pages are rendered one
+ * at a time, with the next page's tiles composed while the current page is
+ * written, and a tile is dropped after the last page that uses it: memory
+ * holds about two pages of tiles, not the whole sheet. Labels are drawn
+ * from a cache of pre-rendered glyph masks.
+ *
+ * Runs headless.
+ *
+ * Usage:
+ *   java ContactSheetCompositor [options] <file|dir> [<file|dir> ...]
+ *
+ * Options:
+ *   --cell <px>        Cell size in CSS pixels (default: 96). Repeat for more sections.
+ *   --passes <n>       Times each section is repeated (default: 1).
+ *   --fill             Repeat the images until the page is full (SingleImageGridderApp layout).
+ *   --fit cover|contain  How the image fills its cell (default: cover).
+ *   --no-label         Do not draw filename labels.
+ *   --dpi <n>          Output resolution (default: 300).
+ *   --page letter|a4   Page size (default: letter).
+ *   --margin <in>      Page margin in inches (default: 0.5).
+ *   --format png|tiff  Page format (default: png).
+ *   --out <dir>        Output directory (default: first input's folder).
+ *   --threads <n>      Worker threads (default: all CPU cores).
+ *
+ * Output: contact-sheet-01.png, contact-sheet-02.png, ...
+ */
+public class ContactSheetCompositor {
+
+    static final double CSS_DPI = 96.0;
+
+    // ── Options ─────────────────────────────────────────────────────────────
+
+    private final int dpi;
+    private final double pageWidthInches;
+    private final double pageHeightInches;
+    private final double marginInches;
+    private final String format;
+    private final int threads;
+
+    // Glyph masks for labels, shared by every tile
+    private final Map<Character, Glyph> glyphs = new ConcurrentHashMap<>();
+    private Font labelFont;
+
+    /**
+     * One run of cells: every image at one cell size, repeated {@code passes}
+     * times. With {@code fill} the images repeat until the page is full.
+     */
+    public static class Section {
+        final List<File> files;
+        final double cssPx;
+        final int passes;
+        final boolean label;
+        final boolean cover;
+        final boolean fill;
+
+        public Section(List<File> files, double cssPx, int passes, boolean label, boolean cover, boolean fill) {
+            this.files = files;
+            this.cssPx = cssPx;
+            this.passes = passes;
+            this.label = label;
+            this.cover = cover;
+            this.fill = fill;
+        }
+    }
+
+    public ContactSheetCompositor(int dpi, double pageWidthInches, double pageHeightInches,
+            double marginInches, String format, int threads) {
+        this.dpi = dpi;
+        this.pageWidthInches = pageWidthInches;
+        this.pageHeightInches = pageHeightInches;
+        this.marginInches = marginInches;
+        this.format = format;
+        this.threads = Math.max(1, threads);
+    }
+
+    // ── CLI ─────────────────────────────────────────────────────────────────
+
+    public static void main(String[] args) throws Exception {
+        args = Metrics.init("ContactSheetCompositor", args);
+        System.setProperty("java.awt.headless", "true");
+
+        List<Double> cells = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        int passes = 1, dpi = 300, threads = Runtime.getRuntime().availableProcessors();
+        boolean fill = false, label = true, cover = true;
+        double pageW = 8.5, pageH = 11.0, margin = 0.5;
+        String format = "png";
+        File outDir = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--cell":     cells.add(Double.parseDouble(args[++i])); break;
+                    case "--passes":   passes = Integer.parseInt(args[++i]); break;
+                    case "--fill":     fill = true; break;
+                    case "--fit":      cover = !"contain".equalsIgnoreCase(args[++i]); break;
+                    case "--no-label": label = false; break;
+                    case "--dpi":      dpi = Integer.parseInt(args[++i]); break;
+                    case "--margin":   margin = Double.parseDouble(args[++i]); break;
+                    case "--format":   format = args[++i].toLowerCase(); break;
+                    case "--out":      outDir = new File(args[++i]); break;
+                    case "--threads":  threads = Integer.parseInt(args[++i]); break;
+                    case "--page":
+                        if ("a4".equalsIgnoreCase(args[++i])) { pageW = 8.27; pageH = 11.69; }
+                        else { pageW = 8.5; pageH = 11.0; }
+                        break;
+                    default:
+                        if (args[i].startsWith("-")) throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        addInput(files, new File(args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("Error: " + (e.getMessage() != null ? e.getMessage() : "missing option value"));
+            System.err.println("Usage: java ContactSheetCompositor [--cell px] [--passes n] [--fill] [--fit cover|contain]");
+            System.err.println("         [--no-label] [--dpi n] [--page letter|a4] [--margin in] [--format png|tiff]");
+            System.err.println("         [--out dir] [--threads n] <file|dir> ...");
+            System.exit(1);
+        }
+
+        if (files.isEmpty()) {
+            System.err.println("No images found.");
+            System.exit(1);
+        }
+        if (cells.isEmpty()) cells.add(96.0);
+        if (outDir == null) outDir = files.get(0).getAbsoluteFile().getParentFile();
+
+        List<Section> sections = new ArrayList<>();
+        for (double cssPx : cells) sections.add(new Section(files, cssPx, passes, label, cover, fill));
+
+        new ContactSheetCompositor(dpi, pageW, pageH, margin, format, threads)
+                .render(sections, outDir, "contact-sheet");
+    }
+
+    private static void addInput(List<File> files, File input) {
+        if (input.isDirectory()) {
+            List<File> images = FileDiscoveryService.files(input,
+                FileDiscoveryService.Format.PNG, FileDiscoveryService.Format.JPEG);
+            images.sort((a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+            files.addAll(images);
+        } else if (input.isFile()) {
+            files.add(input);
+        } else {
+            System.err.println("Warning: not found: " + input);
+        }
+    }
+
+    // ── Rendering ───────────────────────────────────────────────────────────
+
+    /**
+     * Lays out and renders all sections, writing one image per page as
+     * {@code <baseName>-NN.<format>} in {@code outDir}.
+     *
+     * @return the page files, in order
+     */
+    public List<File> render(List<Section> sections, File outDir, String baseName) throws IOException {
+        long start = System.nanoTime();
+        if (!outDir.exists() && !outDir.mkdirs()) throw new IOException("Cannot create " + outDir);
+
+        List<List<Placement>> pages = layout(sections);
+        int cellCount = 0;
+        for (List<Placement> page : pages) cellCount += page.size();
+        System.out.printf("Layout: %d cell(s) on %d page(s) at %d DPI%n", cellCount, pages.size(), dpi);
+
+        // Last page each tile appears on, so it can be dropped after that page
+        Map<TileKey, Integer> lastUse = new HashMap<>();
+        for (int p = 0; p < pages.size(); p++)
+            for (Placement cell : pages.get(p))
+                lastUse.put(cell.key, p);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Map<TileKey, Future<BufferedImage>> tiles = new HashMap<>();
+        Set<TileKey> failed = new HashSet<>();
+        List<File> written = new ArrayList<>();
+        try {
+            int pageW = px(pageWidthInches), pageH = px(pageHeightInches);
+            submitTiles(pages.get(0), tiles, pool);
+            for (int p = 0; p < pages.size(); p++) {
+                // compose the next page's tiles while this one is copied and written
+                if (p + 1 < pages.size()) submitTiles(pages.get(p + 1), tiles, pool);
+
+                BufferedImage page = new BufferedImage(pageW, pageH, BufferedImage.TYPE_INT_RGB);
+                Arrays.fill(((DataBufferInt) page.getRaster().getDataBuffer()).getData(), 0xFFFFFF);
+
+                // Copy each tile into its cells as soon as it is composed; cells never overlap
+                List<Future<?>> copies = new ArrayList<>();
+                for (Placement cell : pages.get(p)) {
+                    BufferedImage tile = awaitTile(cell.key, tiles, failed);
+                    if (tile == null) continue;
+                    copies.add(pool.submit(() -> page.getRaster().setDataElements(cell.x, cell.y, tile.getRaster())));
+                }
+                awaitAll(copies);
+                final int done = p;
+                tiles.keySet().removeIf(key -> lastUse.get(key) <= done);
+
+                File out = new File(outDir, String.format("%s-%02d.%s", baseName, p + 1, extension()));
+                long t = System.nanoTime();
+                writePage(page, out);
+                Metrics.stage(Metrics.ENCODE, extension(), t);
+                Metrics.bytesWritten(extension(), out.length());
+                written.add(out);
+                System.out.println("Saved: " + out.getPath());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.printf("Done in %.2f s%n", (System.nanoTime() - start) / 1e9);
+        return written;
+    }
+
+    /** Places every cell on a page, in the same flow order as the HTML gridders. */
+    List<List<Placement>> layout(List<Section> sections) {
+        int left = px(marginInches), top = px(marginInches);
+        int right = px(pageWidthInches - marginInches), bottom = px(pageHeightInches - marginInches);
+        int sectionGap = px(0.25);
+
+        List<List<Placement>> pages = new ArrayList<>();
+        List<Placement> page = new ArrayList<>();
+        pages.add(page);
+        int x = left, y = top, rowHeight = 0;
+
+        for (Section section : sections) {
+            if (section.files.isEmpty()) continue;
+            int cell = cellPx(section.cssPx);
+            if (cell > right - left || cell > bottom - top)
+                throw new IllegalArgumentException("Cell of " + section.cssPx + " CSS px does not fit on the page");
+            int perPass = section.fill ? Integer.MAX_VALUE : section.files.size();
+
+            for (int pass = 0; pass < section.passes; pass++) {
+                for (int i = 0; i < perPass; i++) {
+                    if (x + cell > right) {
+                        x = left;
+                        y += rowHeight;
+                        rowHeight = 0;
+                    }
+                    if (y + cell > bottom) {
+                        if (section.fill) break; // page is full
+                        page = new ArrayList<>();
+                        pages.add(page);
+                        x = left;
+                        y = top;
+                    }
+                    File file = section.files.get(i % section.files.size());
+                    page.add(new Placement(x, y, new TileKey(file, cell, section.label, section.cover)));
+                    x += cell;
+                    rowHeight = Math.max(rowHeight, cell);
+                }
+                if (section.fill) {
+                    // each fill pass is one full page
+                    if (pass < section.passes - 1) {
+                        page = new ArrayList<>();
+                        pages.add(page);
+                        x = left;
+                        y = top;
+                        rowHeight = 0;
+                    }
+                } else if (x > left) {
+                    // section-end: clear the row and leave a gap
+                    y += rowHeight + sectionGap;
+                    x = left;
+                    rowHeight = 0;
+                }
+            }
+        }
+        if (page.isEmpty() && pages.size() > 1) pages.remove(pages.size() - 1);
+        return pages;
+    }
+
+    /** Starts composing every tile of {@code page} that is not already composed or under way. */
+    private void submitTiles(List<Placement> page, Map<TileKey, Future<BufferedImage>> tiles, ExecutorService pool) {
+        for (Placement cell : page)
+            tiles.computeIfAbsent(cell.key, key -> pool.submit(() -> composeTile(key)));
+    }
+
+    /**
+     * Waits for a tile to be composed. Returns null if it could not be,
+     * reporting each failed image once.
+     */
+    private static BufferedImage awaitTile(TileKey key, Map<TileKey, Future<BufferedImage>> tiles,
+            Set<TileKey> failed) throws IOException {
+        try {
+            return tiles.get(key).get();
+        } catch (ExecutionException e) {
+            if (failed.add(key)) System.err.println("Skipping " + key.file + ": " + e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while preparing tiles", e);
+        }
+    }
+
+    /** One finished cell: scaled image, 1 CSS px border and optional label. */
+    private BufferedImage composeTile(TileKey key) throws IOException {
+        int cell = key.cellPx;
+        int border = Math.max(1, px(1 / CSS_DPI));
+        int inner = cell - 2 * border;
+
+        BufferedImage src = ThumbnailCache.readSubsampled(key.file, inner);
+        double scale = key.cover
+                ? Math.max((double) inner / src.getWidth(), (double) inner / src.getHeight())
+                : Math.min((double) inner / src.getWidth(), (double) inner / src.getHeight());
+        int w = Math.max(1, (int) Math.round(src.getWidth() * scale));
+        int h = Math.max(1, (int) Math.round(src.getHeight() * scale));
+        BufferedImage scaled = ThumbnailCache.scaleToCover(src, Math.min(w, h));
+
+        BufferedImage tile = new BufferedImage(cell, cell, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setColor(new Color(0xCC, 0xCC, 0xCC));
+            g.fillRect(0, 0, cell, cell);
+            g.setColor(Color.WHITE);
+            g.fillRect(border, border, inner, inner);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setClip(border, border, inner, inner);
+            g.drawImage(scaled, border + (inner - w) / 2, border + (inner - h) / 2, w, h, null);
+        } finally {
+            g.dispose();
+        }
+
+        if (key.label) {
+            String text = StringUtils.substringBefore(key.file.getName(), ".");
+            drawLabel(tile, text, border, inner);
+        }
+        return tile;
+    }
+
+    // ── Labels ──────────────────────────────────────────────────────────────
+
+    /**
+     * Draws {@code text} centered on a white strip along the bottom of the
+     * tile, blending cached glyph masks straight into the tile's pixels.
+     */
+    private void drawLabel(BufferedImage tile, String text, int border, int inner) {
+        Font font = labelFont();
+        int lineHeight = (int) Math.ceil(font.getSize2D() * 1.25);
+
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        int stride = tile.getWidth();
+        int stripTop = border + inner - lineHeight;
+
+        for (int y = Math.max(border, stripTop); y < border + inner; y++)
+            Arrays.fill(pixels, y * stride + border, y * stride + border + inner, 0xFFFFFF);
+
+        int textWidth = 0;
+        for (int i = 0; i < text.length(); i++) textWidth += glyph(text.charAt(i)).advance;
+        int x = border + Math.max(0, (inner - textWidth) / 2);
+
+        for (int i = 0; i < text.length(); i++) {
+            Glyph gl = glyph(text.charAt(i));
+            for (int gy = 0; gy < gl.height; gy++) {
+                int ty = stripTop + gy;
+                if (ty < border || ty >= border + inner) continue;
+                for (int gx = 0; gx < gl.width; gx++) {
+                    int tx = x + gx;
+                    if (tx < border || tx >= border + inner) continue;
+                    int a = gl.mask[gy * gl.width + gx] & 0xFF;
+                    if (a == 0) continue;
+                    int idx = ty * stride + tx;
+                    int bg = pixels[idx];
+                    int r = ((bg >> 16) & 0xFF) * (255 - a) / 255;
+                    int gr = ((bg >> 8) & 0xFF) * (255 - a) / 255;
+                    int b = (bg & 0xFF) * (255 - a) / 255;
+                    pixels[idx] = (r << 16) | (gr << 8) | b;
+                }
+            }
+            x += gl.advance;
+        }
+    }
+
+    private synchronized Font labelFont() {
+        if (labelFont == null) {
+            // 10px bold Bahnschrift in the HTML; Java falls back to Dialog when missing
+            labelFont = new Font("Bahnschrift", Font.BOLD, 1).deriveFont(Font.BOLD, (float) (10 * dpi / CSS_DPI));
+        }
+        return labelFont;
+    }
+
+    private Glyph glyph(char c) {
+        return glyphs.computeIfAbsent(c, this::renderGlyph);
+    }
+
+    private Glyph renderGlyph(char c) {
+        Font font = labelFont();
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D pg = probe.createGraphics();
+        int advance = Math.max(1, pg.getFontMetrics(font).charWidth(c));
+        pg.dispose();
+
+        int height = (int) Math.ceil(font.getSize2D() * 1.25);
+        BufferedImage mask = new BufferedImage(advance, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = mask.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(font);
+            g.setColor(Color.WHITE);
+            g.drawString(String.valueOf(c), 0, (int) Math.ceil(font.getSize2D()));
+        } finally {
+            g.dispose();
+        }
+        byte[] bytes = ((DataBufferByte) mask.getRaster().getDataBuffer()).getData();
+        return new Glyph(bytes, advance, height, advance);
+    }
+
+    // ── Output ──────────────────────────────────────────────────────────────
+
+    /** Writes a page with its DPI recorded in the file's metadata. */
+    private void writePage(BufferedImage page, File out) throws IOException {
+        String writerFormat = "tiff".equals(format) ? "tiff" : "png";
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(writerFormat);
+        if (!writers.hasNext()) throw new IOException("No " + writerFormat + " writer available");
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("tiff".equals(writerFormat) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionType("Deflate");
+            }
+            IIOMetadata metadata = writer.getDefaultImageMetadata(
+                    ImageTypeSpecifier.createFromRenderedImage(page), param);
+            setDpi(metadata);
+            writer.write(null, new IIOImage(page, null, metadata), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void setDpi(IIOMetadata metadata) {
+        if (metadata == null || !metadata.isStandardMetadataFormatSupported()) return;
+        String mmPerPixel = Double.toString(25.4 / dpi);
+        IIOMetadataNode horiz = new IIOMetadataNode("HorizontalPixelSize");
+        horiz.setAttribute("value", mmPerPixel);
+        IIOMetadataNode vert = new IIOMetadataNode("VerticalPixelSize");
+        vert.setAttribute("value", mmPerPixel);
+        IIOMetadataNode dimension = new IIOMetadataNode("Dimension");
+        dimension.appendChild(horiz);
+        dimension.appendChild(vert);
+        IIOMetadataNode root = new IIOMetadataNode("javax_imageio_1.0");
+        root.appendChild(dimension);
+        try {
+            metadata.mergeTree("javax_imageio_1.0", root);
+        } catch (Exception e) {
+            System.err.println("Warning: could not record DPI: " + e.getMessage());
+        }
+    }
+
+    private String extension() {
+        return "tiff".equals(format) ? "tif" : "png";
+    }
+
+    // ── Helpers ─────────────────────────────────────────────────────────────
+
+    private int px(double inches) {
+        return (int) Math.round(inches * dpi);
+    }
+
+    private int cellPx(double cssPx) {
+        return (int) Math.round(cssPx * dpi / CSS_DPI);
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws IOException {
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Tile copy failed: " + e.getCause(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while composing page", e);
+            }
+        }
+    }
+
+    static final class Placement {
+        final int x, y;
+        final TileKey key;
+        Placement(int x, int y, TileKey key) { this.x = x; this.y = y; this.key = key; }
+    }
+
+    static final class TileKey {
+        final File file;
+        final int cellPx;
+        final boolean label;
+        final boolean cover;
+
+        TileKey(File file, int cellPx, boolean label, boolean cover) {
+            this.file = file; this.cellPx = cellPx; this.label = label; this.cover = cover;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TileKey)) return false;
+            TileKey k = (TileKey) o;
+            return file.equals(k.file) && cellPx == k.cellPx && label == k.label && cover == k.cover;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((file.hashCode() * 31 + cellPx) * 31 + (label ? 1 : 0)) * 31 + (cover ? 1 : 0);
+        }
+    }
+
+    private static final class Glyph {
+        final byte[] mask;
+        final int width, height, advance;
+        Glyph(byte[] mask, int width, int height, int advance) {
+            this.mask = mask; this.width = width; this.height = height; this.advance = advance;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DuplicateFinder - groups files with identical content
+ *
+ * Works in three passes so that most files are never read in full:
+ *
+ *   1. size    - files with a unique size cannot have a duplicate and are
+ *                dropped without being opened
+ *   2. prefix  - the remaining files are hashed over their first 64 KB and
+ *                regrouped; files of 64 KB or less are finished here
+ *   3. full    - only files still sharing size and prefix hash are hashed
+ *                in full
+ *
+ * The hashing passes run on a fixed thread pool. Files that cannot be read
+ * are reported and left out of every group. So are symbolic links and
+ * anything else that is not a regular file, and a second name for a file
+ * already listed (a hard link, or the same path twice): deleting either
+ * one as a "duplicate" of the other would lose the content, or leave a
+ * dangling link.
+ *
+ * Usage:
+ *   List<List<Path>> groups = DuplicateFinder.findDuplicates(files, threads);
+ */
+public class DuplicateFinder {
+
+    /** Bytes hashed in the prefix pass. */
+    static final int PREFIX_BYTES = 64 * 1024;
+
+    /**
+     * Returns every group of two or more files with identical content. Groups
+     * and the files within them keep the order of {@code files}.
+     */
+    public static List<List<Path>> findDuplicates(List<Path> files, int threads) throws InterruptedException {
+        long start = System.nanoTime();
+
+        // ── pass 1: size ──
+        Map<Long, List<Path>> bySize = new LinkedHashMap<>();
+        Set<Object> seen = new HashSet<>();
+        for (Path file : files) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+                if (!attrs.isRegularFile()) {
+                    System.err.println("Skipping " + file + ": not a regular file");
+                    continue;
+                }
+                Object key = attrs.fileKey() != null ? attrs.fileKey() : file.toAbsolutePath().normalize();
+                if (!seen.add(key)) {
+                    System.err.println("Skipping " + file + ": same file as one already listed");
+                    continue;
+                }
+                bySize.computeIfAbsent(attrs.size(), k -> new ArrayList<>()).add(file);
+            } catch (IOException e) {
+                System.err.println("Could not read size of " + file + ": " + e.getMessage());
+            }
+        }
+        List<List<Path>> candidates = new ArrayList<>();
+        for (List<Path> group : bySize.values()) {
+            if (group.size() > 1) candidates.add(group);
+        }
+        int afterSize = count(candidates);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        AtomicLong bytesRead = new AtomicLong();
+        try {
+            // ── pass 2: first 64 KB ──
+            candidates = regroup(pool, candidates, PREFIX_BYTES, bytesRead);
+            int afterPrefix = count(candidates);
+
+            // ── pass 3: full content, only where the prefix did not cover the file ──
+            List<List<Path>> done = new ArrayList<>();
+            List<List<Path>> large = new ArrayList<>();
+            for (List<Path> group : candidates) {
+                (sizeOf(group.get(0)) <= PREFIX_BYTES ? done : large).add(group);
+            }
+            int fullyRead = count(large);
+            done.addAll(regroup(pool, large, Long.MAX_VALUE, bytesRead));
+
+            System.out.println(String.format(
+                "Duplicate scan: %d file(s), %d share a size, %d share a 64 KB prefix, %d read in full, %.1f MB read, %.1f ms",
+                files.size(), afterSize, afterPrefix, fullyRead,
+                bytesRead.get() / 1048576.0, (System.nanoTime() - start) / 1e6));
+            return done;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Splits each group by the hash of its files' first {@code limit} bytes,
+     * keeping only sub-groups of two or more.
+     */
+    private static List<List<Path>> regroup(ExecutorService pool, List<List<Path>> groups,
+            long limit, AtomicLong bytesRead) throws InterruptedException {
+        List<List<Future<String>>> futures = new ArrayList<>();
+        for (List<Path> group : groups) {
+            List<Future<String>> hashes = new ArrayList<>(group.size());
+            for (Path file : group) {
+                hashes.add(pool.submit(() -> hash(file, limit, bytesRead)));
+            }
+            futures.add(hashes);
+        }
+
+        List<List<Path>> result = new ArrayList<>();
+        for (int g = 0; g < groups.size(); g++) {
+            List<Path> group = groups.get(g);
+            Map<String, List<Path>> byHash = new LinkedHashMap<>();
+            for (int i = 0; i < group.size(); i++) {
+                try {
+                    String hash = futures.get(g).get(i).get();
+                    byHash.computeIfAbsent(hash, k -> new ArrayList<>()).add(group.get(i));
+                } catch (ExecutionException e) {
+                    System.err.println("Could not hash " + group.get(i) + ": " + e.getCause().getMessage());
+                }
+            }
+            for (List<Path> sub : byHash.values()) {
+                if (sub.size() > 1) result.add(sub);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * SHA-1 of the first {@code limit} bytes of {@code file}, timed as a read
+     */
+    static String hash(Path file, long limit, AtomicLong bytesRead) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+        String format = Metrics.format(file.getFileName().toString());
+        long t = System.nanoTime();
+        byte[] buf = new byte[(int) Math.min(PREFIX_BYTES, limit)];
+        long remaining = limit;
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while (remaining > 0 && (n = in.read(buf, 0, (int) Math.min(buf.length, remaining))) > 0) {
+                digest.update(buf, 0, n);
+                remaining -= n;
+                bytesRead.addAndGet(n);
+            }
+        }
+        Metrics.stage(Metrics.READ, format, t);
+        Metrics.bytesRead(format, limit - remaining);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static int count(List<List<Path>> groups) {
+        int n = 0;
+        for (List<Path> group : groups) n += group.size();
+        return n;
+    }
+}
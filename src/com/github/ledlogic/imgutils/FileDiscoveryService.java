@@ -0,0 +1,268 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * FileDiscoveryService - lists a directory once and sorts it into formats
+ *
+ * Each directory is read in a single pass. Every regular file goes into a
+ * format bucket by its extension, compared case-insensitively, so .JPG,
+ * .jpeg and .Png all count. Listings are cached by absolute path for the
+ * rest of the run, so apps that ask for PNG and then JPEG files, or that
+ * revisit a folder, do not list it again. That matters on synced and
+ * network drives, where each listing is a round trip.
+ *
+ * With sniffing on, each image file also has its first 16 bytes read, and
+ * it is bucketed by its content rather than its name. A .png that is
+ * really a JPEG then lands in JPEG, and a truncated or mislabelled file
+ * lands in OTHER. The reads run on virtual threads, so their waits overlap.
+ *
+ * Buckets are sorted by name, case-insensitively.
+ *
+ * Usage:
+ *   List<File> images = FileDiscoveryService.files(dir, Format.PNG, Format.JPEG);
+ *   List<File> webps  = FileDiscoveryService.files(dir, true, Format.WEBP);  // sniffed
+ *   FileDiscoveryService.invalidate(dir);  // after writing into dir
+ */
+public class FileDiscoveryService {
+
+    public enum Format {
+        PNG("png"),
+        JPEG("jpg", "jpeg", "jpe"),
+        WEBP("webp"),
+        HEIC("heic", "heif"),
+        GIF("gif"),
+        BMP("bmp"),
+        OTHER;
+
+        private final String[] extensions;
+
+        Format(String... extensions) {
+            this.extensions = extensions;
+        }
+    }
+
+    private static final int SNIFF_BYTES = 16;
+
+    private static final Map<String, Format> BY_EXTENSION = new HashMap<>();
+    static {
+        for (Format f : Format.values()) {
+            for (String ext : f.extensions) BY_EXTENSION.put(ext, f);
+        }
+    }
+
+    private static final Comparator<File> BY_NAME =
+        Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER);
+
+    /** Listings for this run, keyed by absolute directory path */
+    private static final Map<Path, Listing> LISTINGS = new ConcurrentHashMap<>();
+    private static final Map<Path, Listing> SNIFFED = new ConcurrentHashMap<>();
+
+    /**
+     * One directory's regular files, bucketed by format
+     */
+    public static final class Listing {
+        private final Map<Format, List<File>> buckets;
+
+        private Listing(Map<Format, List<File>> buckets) {
+            this.buckets = buckets;
+        }
+
+        /**
+         * Files in any of {@code formats}, bucket by bucket in the order
+         * given, each bucket sorted by name
+         */
+        public List<File> files(Format... formats) {
+            List<File> out = new ArrayList<>();
+            for (Format f : formats) {
+                List<File> bucket = buckets.get(f);
+                if (bucket != null) out.addAll(bucket);
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Files of {@code dir} in any of {@code formats}, by extension. Returns an
+     * empty list if {@code dir} is missing or unreadable.
+     */
+    public static List<File> files(File dir, Format... formats) {
+        return files(dir, false, formats);
+    }
+
+    /**
+     * Files of {@code dir} in any of {@code formats}; with {@code sniff}, by
+     * their first bytes instead of their extension.
+     */
+    public static List<File> files(File dir, boolean sniff, Format... formats) {
+        try {
+            return listing(dir, sniff).files(formats);
+        } catch (IOException e) {
+            System.err.println("Cannot list " + dir + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * The cached listing of {@code dir}, reading the directory on first use.
+     */
+    public static Listing listing(File dir, boolean sniff) throws IOException {
+        Path key = dir.toPath().toAbsolutePath().normalize();
+        Listing listing = LISTINGS.get(key);
+        if (listing == null) {
+            listing = list(key);
+            LISTINGS.put(key, listing);
+        }
+        if (!sniff) return listing;
+
+        Listing sniffed = SNIFFED.get(key);
+        if (sniffed == null) {
+            sniffed = sniff(listing);
+            SNIFFED.put(key, sniffed);
+        }
+        return sniffed;
+    }
+
+    /**
+     * Drops the cached listing of {@code dir}, e.g. after writing into it.
+     */
+    public static void invalidate(File dir) {
+        Path key = dir.toPath().toAbsolutePath().normalize();
+        LISTINGS.remove(key);
+        SNIFFED.remove(key);
+    }
+
+    /**
+     * Format of a file name, by extension (case-insensitive)
+     */
+    public static Format formatOf(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) return Format.OTHER;
+        return BY_EXTENSION.getOrDefault(name.substring(dot + 1).toLowerCase(Locale.ROOT), Format.OTHER);
+    }
+
+    /**
+     * Format of a file by its signature, or OTHER if none matches
+     */
+    public static Format sniff(File file) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        int n;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            n = in.readNBytes(head, 0, SNIFF_BYTES);
+        }
+        return formatOf(head, n);
+    }
+
+    static Format formatOf(byte[] b, int n) {
+        if (n >= 8 && (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G'
+                && b[4] == '\r' && b[5] == '\n' && b[6] == 0x1A && b[7] == '\n') {
+            return Format.PNG;
+        }
+        if (n >= 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF) {
+            return Format.JPEG;
+        }
+        if (n >= 12 && b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') {
+            return Format.WEBP;
+        }
+        if (n >= 12 && b[4] == 'f' && b[5] == 't' && b[6] == 'y' && b[7] == 'p') {
+            String brand = new String(b, 8, 4, StandardCharsets.US_ASCII);
+            switch (brand) {
+                case "heic": case "heix": case "heim": case "heis":
+                case "hevc": case "hevx": case "mif1": case "msf1":
+                    return Format.HEIC;
+                default:
+                    return Format.OTHER;
+            }
+        }
+        if (n >= 6 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F' && b[3] == '8'
+                && (b[4] == '7' || b[4] == '9') && b[5] == 'a') {
+            return Format.GIF;
+        }
+        if (n >= 2 && b[0] == 'B' && b[1] == 'M') {
+            return Format.BMP;
+        }
+        return Format.OTHER;
+    }
+
+    // ── listing ──
+
+    private static Listing list(Path dir) throws IOException {
+        Map<Format, List<File>> buckets = new EnumMap<>(Format.class);
+        // depth 1 hands back each entry's attributes from the directory read
+        // itself, so there is no separate stat per file
+        Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    String name = file.getFileName().toString();
+                    buckets.computeIfAbsent(formatOf(name), k -> new ArrayList<>()).add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (file.equals(dir)) throw exc;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (List<File> bucket : buckets.values()) bucket.sort(BY_NAME);
+        return new Listing(buckets);
+    }
+
+    private static Listing sniff(Listing listing) throws IOException {
+        Map<Format, List<File>> buckets = new EnumMap<>(Format.class);
+        List<File> candidates = new ArrayList<>();
+        for (Map.Entry<Format, List<File>> e : listing.buckets.entrySet()) {
+            if (e.getKey() == Format.OTHER) {
+                buckets.put(Format.OTHER, new ArrayList<>(e.getValue()));
+            } else {
+                candidates.addAll(e.getValue());
+            }
+        }
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Format>> futures = new ArrayList<>(candidates.size());
+            for (File f : candidates) futures.add(pool.submit(() -> sniff(f)));
+            for (int i = 0; i < candidates.size(); i++) {
+                Format format;
+                try {
+                    format = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    System.err.println("Cannot read " + candidates.get(i) + ": " + e.getCause().getMessage());
+                    format = Format.OTHER;
+                }
+                buckets.computeIfAbsent(format, k -> new ArrayList<>()).add(candidates.get(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sniffing", e);
+        }
+        for (List<File> bucket : buckets.values()) bucket.sort(BY_NAME);
+        return new Listing(buckets);
+    }
+}
@@ -5,53 +5,57 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import com.github.ledlogic.imgutils.FileDiscoveryService.Format;
+
 public class FloppyImageGridderApp {
 	
-	private static JpgFilenameFilter jpgFilter = new JpgFilenameFilter();
-	
 	public static void main(String[] args) throws IOException, InterruptedException {
+		args = Metrics.init("FloppyImageGridderApp", args);
 		
 		// attack folder
 		String attackFolder = "G:\\My Drive\\Games\\The Chase";
 		File attackFolderFile = new File(attackFolder);
 				
-		// get filenames
-		List<String> names = new ArrayList<String>();
+		// get files
+		List<File> files = new ArrayList<File>();
 		
-		File[] files2 = attackFolderFile.listFiles(jpgFilter);
-		for (File file: files2) {
+		for (File file: FileDiscoveryService.files(attackFolderFile, Format.JPEG)) {
 			String name = file.getName();
 			if (name.contains("floppy")) {
-				names.add(name);
+				files.add(file);
 			}
 		}
 		
 		// sort
-		Collections.sort(names);
+		Collections.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
 
 		boolean square = true;
 		//float ratio = 1.25f;
 		float ratio = 1.00f;
 		int dim = Math.round(96f * ratio);
 
-		// generate html page
-		List<String> html = new ArrayList<String>();
-		html.add("<html>");
-		for (int i=0;i<100;i++) {
-		for (String name: names) {
-			String truncName = StringUtils.substringBefore(name, ".");
-			html.add("<div style=\"position: relative; width: " + dim + "px; height: " + (square ? dim : 200) + "px; border: 1px solid #ccc; float: left; overflow:hidden; margin:2px;\">");	
-			html.add("<img src=\"" + name + "\" alt=\"" + truncName + "\" title=\"" + truncName + "\" width=\"" + dim + "\" />");	
-			html.add("</div>");	
-		}}
-		html.add("</html>");
-		
+		// print-size thumbnails, decoded once and reused by every repeat
+		ThumbnailCache thumbnailCache = new ThumbnailCache(new File(attackFolder, ".thumbs"));
+		Map<File, File> thumbs = thumbnailCache.thumbnails(files, dim);
+
+		// generate html page, streamed straight to disk
 		File outFile = new File(attackFolder + "\\index-" + dim + ".html");
-		FileUtils.write(outFile, StringUtils.join(html, "\n"), "UTF-8");
+		try (HtmlGridRenderer html = new HtmlGridRenderer(outFile)) {
+			html.css(".cell { position: relative; width: " + dim + "px; height: " + (square ? dim : 200) + "px; border: 1px solid #ccc; float: left; overflow:hidden; margin:2px; }");
+			html.css(".cell img { width: " + dim + "px; }");
+			html.beginBody(null);
+			for (int i=0;i<100;i++) {
+			for (File file: files) {
+				String name = file.getName();
+				String truncName = StringUtils.substringBefore(name, ".");
+				String src = ThumbnailCache.htmlSrc(thumbs.get(file));
+				html.cell("cell", src, truncName, null);
+			}}
+		}
 		
 		String[] cmd = { "\"C:\\Program Files\\Google\\Chrome\\Application\\chrome.exe\" \"file:///" + outFile + "\"" };
 		Process proc = Runtime.getRuntime().exec(cmd);
@@ -9,35 +9,82 @@ import javax.imageio.ImageIO;
 import org.apache.commons.io.FileUtils;
 
 public class GrayScalerService {
+	/**
+	 * Writes a grayscale PNG of {@code inPath} to {@code outPath} and deletes
+	 * the original. An unreadable input is reported and left alone; if the
+	 * PNG cannot be written the original is kept and the error is thrown.
+	 */
 	public static void convertWebFile(String inPath, String outPath) throws IOException, InterruptedException {
-        BufferedImage img = null;
 		File inFile = new File(inPath);
+		String format = Metrics.format(inPath);
+		StageEvent decode = StageEvent.start(Metrics.DECODE, inPath, format);
+		// decode into a pooled raster, reused by the next file on this thread
+		RasterPool.Lease lease = null;
         try{
-            img = ImageIO.read(inFile);
+            lease = RasterPool.decode(inFile);
         } catch(IOException e){
             System.out.println(e);
         }
+		if (lease == null) {
+			System.out.println("Could not read " + inPath);
+			Metrics.file(format, false);
+			return;
+		}
+		decode.image(lease.image()).bytes(inFile.length()).finish();
 
-        int width = img.getWidth();
-        int height = img.getHeight();
-        for(int y = 0; y < height; y++){
-            for(int x = 0; x < width; x++){
-                int p = img.getRGB(x,y);
-                int a = (p >> 24) & 0xff;
-                int r = (p >> 16) & 0xff;
-                int g = (p >> 8) & 0xff;
-                int b = p & 0xff;
-                int avg = (r + g + b)/3;
-                p = (a<<24) | (avg<<16) | (avg<<8) |  avg;
-                img.setRGB(x, y, p);
-            }
-        }
-        try{
-            File outFile = new File(outPath);
-            ImageIO.write(img, "png", outFile);
-        } catch(IOException e){
-            System.out.println(e);
-        }
+		try {
+			BufferedImage img = lease.image();
+			StageEvent transform = StageEvent.start(Metrics.TRANSFORM, inPath, format);
+			grayscale(img, lease.pixels());
+			transform.image(img).finish();
+	        File outFile = new File(outPath);
+	        try{
+	            StageEvent encode = StageEvent.start(Metrics.ENCODE, outPath, "png");
+	            ImageIO.write(img, "png", outFile);
+	            encode.image(img).bytes(outFile.length()).finish();
+	            Metrics.file(format, true);
+	        } catch(IOException e){
+	            System.out.println(e);
+	            Metrics.file(format, false);
+	            // never leave a partial PNG next to the original
+	            outFile.delete();
+	            throw e;
+	        }
+		} finally {
+			lease.close();
+		}
 		FileUtils.delete(inFile);
 	}
+
+	/**
+	 * Grays {@code img} in place, through {@code px} (its int[] raster, row-major
+	 * with stride width) when given, otherwise pixel by pixel
+	 */
+	static void grayscale(BufferedImage img, int[] px) {
+		int width = img.getWidth();
+		int height = img.getHeight();
+		if (px != null) {
+			for (int i = 0, n = width * height; i < n; i++) {
+				px[i] = gray(px[i]);
+			}
+		} else {
+			for(int y = 0; y < height; y++){
+				for(int x = 0; x < width; x++){
+					img.setRGB(x, y, gray(img.getRGB(x,y)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces r, g and b by their average, keeping alpha
+	 */
+	static int gray(int p) {
+		int a = (p >> 24) & 0xff;
+		int r = (p >> 16) & 0xff;
+		int g = (p >> 8) & 0xff;
+		int b = p & 0xff;
+		int avg = (r + g + b)/3;
+		return (a<<24) | (avg<<16) | (avg<<8) |  avg;
+	}
 }
\ No newline at end of file
@@ -4,30 +4,29 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+
+import com.github.ledlogic.imgutils.FileDiscoveryService.Format;
 
 public class GrayscalerApp {
 	
-	private static PngFilenameFilter pngFilter = new PngFilenameFilter();
-	private static JpgFilenameFilter jpgFilter = new JpgFilenameFilter();
-	
 	public static void main(String[] args) throws IOException, InterruptedException {
+		args = Metrics.init("GrayscalerApp", args);
 		String attackFolder = "G:\\My Drive\\Games\\Savage Worlds";
 		File attackFolderFile = new File(attackFolder);
 		
-		File[] pngFiles = attackFolderFile.listFiles(pngFilter);
-		File[] jpgFiles = attackFolderFile.listFiles(jpgFilter);
+		List<File> files = FileDiscoveryService.files(attackFolderFile, Format.PNG, Format.JPEG);
 
 		String pattern = "yyyyMMddHHmm";
 		SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
 		String date = simpleDateFormat.format(new Date());
 		
+		RasterPool.Meter meter = RasterPool.Meter.start();
 		long cnt = 1000;
-		for (File file: pngFiles) {
-			processFile(attackFolder, date, cnt++, file);
-		}
-		for (File file: jpgFiles) {
+		for (File file: files) {
 			processFile(attackFolder, date, cnt++, file);
 		}
+		System.out.println(meter);
 	}
 
 	private static void processFile(String attackFolder, String date, long cnt, File file)
@@ -38,6 +37,11 @@ public class GrayscalerApp {
 		String inPath = attackFolder + "\\" + inputFile;
 		String outPath = attackFolder + "\\" + outputFile;
 		
-		GrayScalerService.convertWebFile(inPath, outPath);
+		try {
+			GrayScalerService.convertWebFile(inPath, outPath);
+		} catch (IOException e) {
+			// the original is kept; carry on with the rest of the folder
+			System.out.println("Could not convert " + inPath + ": " + e.getMessage());
+		}
 	}
 }
\ No newline at end of file
@@ -4,6 +4,9 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+
+import com.github.ledlogic.imgutils.FileDiscoveryService.Format;
 
 /**
  * Assumption, running on a system with image magick installed
@@ -14,13 +17,12 @@ import java.util.Date;
  */
 public class HeicConverterApp {
 	
-	private static HeicFilenameFilter filter = new HeicFilenameFilter();
-	
 	public static void main(String[] args) throws IOException, InterruptedException {
+		args = Metrics.init("HeicConverterApp", args);
 		String attackFolder = "G:\\My Drive\\Ebay\\20250901";
 		File attackFolderFile = new File(attackFolder);
 		
-		File[] files = attackFolderFile.listFiles(filter);
+		List<File> files = FileDiscoveryService.files(attackFolderFile, Format.HEIC);
 
 		String pattern = "yyyyMMddHHmm";
 		SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
@@ -10,9 +10,14 @@ import org.apache.commons.io.FileUtils;
 public class HeicConverterService {
 	public static void convertWebFile(String inPath, String outPath) throws IOException, InterruptedException {
 		String[] cmd = { "magick", "\"" + inPath + "\"", "\"" + outPath + "\"" };
+		String format = Metrics.format(inPath);
+		StageEvent encode = StageEvent.start(Metrics.ENCODE, inPath, format);
 		Process proc = Runtime.getRuntime().exec(cmd);
 		int exitVal = proc.waitFor();
 		System.out.println("Process exitValue: " + exitVal);
+		// the external converter decodes and encodes in one step
+		encode.bytes(new File(inPath).length()).finish();
+		Metrics.file(format, exitVal == 0);
 		
 		if (exitVal == 0) {
 			File inFile = new File(inPath);
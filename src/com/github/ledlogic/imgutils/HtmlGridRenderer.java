@@ -0,0 +1,130 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HtmlGridRenderer - streams a grid page of image cells to disk
+ *
+ * Used by the gridders instead of building the page as a List of lines.
+ * Styles are declared once in the head as CSS classes, and every cell is
+ * written straight through a buffered writer as
+ *
+ *   <div class="cls"><img src="..." alt="..." title="..."><span>label</span></div>
+ *
+ * so the page size and the memory needed to produce it grow only with the
+ * bare cell markup, not with repeated inline style attributes.
+ *
+ * Usage:
+ *   try (HtmlGridRenderer html = new HtmlGridRenderer(outFile)) {
+ *       html.css(".cell { width: 96px; height: 96px; float: left; }");
+ *       html.beginBody("Title");
+ *       html.cell("cell", src, name, null);
+ *   }   // closes body and html
+ */
+public class HtmlGridRenderer implements Closeable {
+
+    private final File outFile;
+    private final Writer out;
+    private final long started = System.nanoTime();
+    private final List<String> css = new ArrayList<>();
+    private boolean bodyStarted = false;
+    private long cells = 0;
+
+    public HtmlGridRenderer(File outFile) throws IOException {
+        this.outFile = outFile;
+        this.out = new BufferedWriter(
+                Files.newBufferedWriter(outFile.toPath(), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /** Adds one CSS line to the head. Must be called before {@link #beginBody}. */
+    public HtmlGridRenderer css(String line) {
+        if (bodyStarted) throw new IllegalStateException("CSS must be declared before the body");
+        css.add(line);
+        return this;
+    }
+
+    /** Writes the document head with all declared CSS and opens the body. */
+    public void beginBody(String title) throws IOException {
+        out.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n");
+        if (title != null) {
+            out.write("<title>" + esc(title) + "</title>\n");
+        }
+        out.write("<style>\n");
+        for (String line : css) {
+            out.write(line);
+            out.write('\n');
+        }
+        out.write("</style>\n</head>\n<body>\n");
+        bodyStarted = true;
+    }
+
+    /**
+     * Writes one image cell. {@code alt} is also used as the title; a null
+     * {@code label} omits the caption span.
+     */
+    public void cell(String cssClass, String src, String alt, String label) throws IOException {
+        out.write("<div class=\"");
+        out.write(cssClass);
+        out.write("\"><img src=\"");
+        out.write(esc(src));
+        out.write("\" alt=\"");
+        out.write(esc(alt));
+        out.write("\" title=\"");
+        out.write(esc(alt));
+        out.write("\">");
+        if (label != null) {
+            out.write("<span>");
+            out.write(esc(label));
+            out.write("</span>");
+        }
+        out.write("</div>\n");
+        cells++;
+    }
+
+    /** Writes an empty div with the given class, e.g. a section break. */
+    public void div(String cssClass) throws IOException {
+        out.write("<div class=\"" + cssClass + "\"></div>\n");
+    }
+
+    /** Opens a container div with the given class. */
+    public void openDiv(String cssClass) throws IOException {
+        out.write("<div class=\"" + cssClass + "\">\n");
+    }
+
+    /** Closes the most recently opened container div. */
+    public void closeDiv() throws IOException {
+        out.write("</div>\n");
+    }
+
+    public long cellCount() {
+        return cells;
+    }
+
+    /**
+     * Closes the body and html elements and the file. The whole page is
+     * timed as one write stage.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!bodyStarted) beginBody(null);
+            out.write("</body>\n</html>\n");
+        } finally {
+            out.close();
+        }
+        Metrics.stage(Metrics.WRITE, "html", started);
+        Metrics.bytesWritten("html", outFile.length());
+    }
+
+    static String esc(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
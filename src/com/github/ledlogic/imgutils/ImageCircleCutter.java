@@ -9,26 +9,32 @@ import javax.imageio.ImageIO;
 public class ImageCircleCutter {
     
     public static void main(String[] args) {
+        args = Metrics.init("ImageCircleCutter", args);
         if (args.length == 0) {
             System.out.println("Usage: java PlanetCircleCutter <image-path>");
             System.out.println("Example: java PlanetCircleCutter planet.webp");
             return;
         }
         
-        String inputPath = args[0];
-        processImage(inputPath);
+        // Several images share pooled rasters (RasterPool) between them
+        for (String inputPath : args) {
+            processImage(inputPath);
+        }
     }
     
     public static void processImage(String inputPath) {
-        try {
-            // Load the image
-            File inputFile = new File(inputPath);
-            BufferedImage image = ImageIO.read(inputFile);
-            
-            if (image == null) {
+        // Load the image into a pooled raster
+        File inputFile = new File(inputPath);
+        String format = Metrics.format(inputPath);
+        long t = System.nanoTime();
+        try (RasterPool.Lease source = RasterPool.decode(inputFile)) {
+            if (source == null) {
                 System.err.println("Error: Could not load image from " + inputPath);
+                Metrics.file(format, false);
                 return;
             }
+            t = Metrics.stage(Metrics.DECODE, format, t);
+            BufferedImage image = source.image();
             
             System.out.println("Loaded image: " + image.getWidth() + "x" + image.getHeight());
             
@@ -37,30 +43,38 @@ public class ImageCircleCutter {
             
             if (circle == null) {
                 System.err.println("Error: Could not detect planet circle");
+                Metrics.file(format, false);
                 return;
             }
             
             System.out.println("Detected circle: center(" + circle.x + ", " + circle.y + "), radius=" + circle.radius);
             
             // Create output image with transparency
-            BufferedImage output = createCircularMask(image, circle);
-            
-            // Generate output filename
-            String outputPath = generateOutputPath(inputPath);
-            
-            // Save the output image as PNG
-            File outputFile = new File(outputPath);
-            ImageIO.write(output, "PNG", outputFile);
-            
-            System.out.println("Saved circular cutout to: " + outputPath);
+            try (RasterPool.Lease output = RasterPool.lease(image.getWidth(), image.getHeight(),
+                    BufferedImage.TYPE_INT_ARGB, false)) {
+                createCircularMask(image, circle, output.image());
+                t = Metrics.stage(Metrics.TRANSFORM, format, t);
+                
+                // Generate output filename
+                String outputPath = generateOutputPath(inputPath);
+                
+                // Save the output image as PNG
+                File outputFile = new File(outputPath);
+                ImageIO.write(output.image(), "PNG", outputFile);
+                Metrics.stage(Metrics.ENCODE, "png", t);
+                Metrics.file(format, true);
+                
+                System.out.println("Saved circular cutout to: " + outputPath);
+            }
             
         } catch (IOException e) {
             System.err.println("Error processing image: " + e.getMessage());
+            Metrics.file(format, false);
             e.printStackTrace();
         }
     }
     
-    private static Circle detectCircle(BufferedImage image) {
+    static Circle detectCircle(BufferedImage image) {
         int width = image.getWidth();
         int height = image.getHeight();
         
@@ -141,13 +155,20 @@ public class ImageCircleCutter {
         return count > 0 ? sumRadius / count : initialRadius;
     }
     
-    private static BufferedImage createCircularMask(BufferedImage source, Circle circle) {
+    static BufferedImage createCircularMask(BufferedImage source, Circle circle) {
+        // Create image with alpha channel
+        BufferedImage output = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        return createCircularMask(source, circle, output);
+    }
+    
+    /**
+     * Writes the cut-out into {@code output}, an ARGB image at least the size
+     * of {@code source}, overwriting every pixel.
+     */
+    static BufferedImage createCircularMask(BufferedImage source, Circle circle, BufferedImage output) {
         int width = source.getWidth();
         int height = source.getHeight();
         
-        // Create image with alpha channel
-        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 int dx = x - circle.x;
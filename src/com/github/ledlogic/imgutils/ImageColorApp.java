@@ -2,7 +2,12 @@ package com.github.ledlogic.imgutils;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
@@ -11,16 +16,22 @@ import javax.imageio.ImageIO;
  * with the given hex color.
  *
  * Usage:
- *   java ImageColorApp <input.png|folder> <hexcolor>
+ *   java ImageColorApp <input.png|folder> <hexcolor> [--threads N]
  *
  * Examples:
  *   java ImageColorApp map.png FF0000           # single file → map_FF0000.png
  *   java ImageColorApp map.png #3A7BD5          # leading # is optional
  *   java ImageColorApp ./maps  FF0000           # folder → ./maps/FF0000/*.png
+ *   java ImageColorApp ./maps --threads 4 FF0000  # flags may go anywhere
  *
  * Single-file output:  <basename>_<HEXCOLOR>.png  (same directory as input)
  * Folder output:       <folder>/<HEXCOLOR>/<originalname>.png
  *
+ * Folders are processed on --threads workers (default: one per core). Each
+ * worker decodes into and recolors through pooled rasters (RasterPool), so
+ * a batch of same-sized maps allocates its pixel buffers once per worker;
+ * allocation and GC totals are printed at the end.
+ *
  * "Black" is defined as any pixel whose R, G, and B values are all
  * below the threshold (default 30/255).  Alpha is preserved.
  */
@@ -30,18 +41,30 @@ public class ImageColorApp {
     private static final int BLACK_THRESHOLD = 30;
 
     public static void main(String[] args) throws Exception {
+        args = Metrics.init("ImageColorApp", args);
 
         // ── argument validation ──────────────────────────────────────────────
-        if (args.length != 2) {
-            System.err.println("Usage: java ImageColorApp <input.png|folder> <hexcolor>");
+        int threads = Integer.parseInt(flagValue(args, "--threads",
+                          String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--threads")) {
+                i++;
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 2) {
+            System.err.println("Usage: java ImageColorApp <input.png|folder> <hexcolor> [--threads N]");
             System.err.println("Examples:");
             System.err.println("  java ImageColorApp map.png FF0000");
             System.err.println("  java ImageColorApp ./maps  FF0000");
             System.exit(1);
         }
 
-        String inputPath = args[0];
-        String hexRaw    = args[1].replaceFirst("^#", "").toUpperCase();
+        String inputPath = positional.get(0);
+        String hexRaw    = positional.get(1).replaceFirst("^#", "").toUpperCase();
 
         if (!hexRaw.matches("[0-9A-F]{6}")) {
             System.err.println("Error: hex color must be 6 hex digits (e.g. FF0000 or #FF0000).");
@@ -55,7 +78,7 @@ public class ImageColorApp {
         }
 
         if (input.isDirectory()) {
-            processFolder(input, hexRaw);
+            processFolder(input, hexRaw, threads);
         } else {
             processSingleFile(input, hexRaw);
         }
@@ -63,19 +86,15 @@ public class ImageColorApp {
 
     // ── folder mode ──────────────────────────────────────────────────────────
 
-    private static void processFolder(File folder, String hexRaw) throws Exception {
-        // Collect all PNGs directly in the folder (non-recursive)
-        File[] pngFiles = folder.listFiles(
-                f -> f.isFile() && f.getName().toLowerCase().endsWith(".png"));
+    private static void processFolder(File folder, String hexRaw, int threads) throws Exception {
+        // Collect all PNGs directly in the folder (non-recursive), sorted by name
+        List<File> pngFiles = FileDiscoveryService.files(folder, FileDiscoveryService.Format.PNG);
 
-        if (pngFiles == null || pngFiles.length == 0) {
+        if (pngFiles.isEmpty()) {
             System.out.println("No PNG files found in: " + folder.getPath());
             return;
         }
 
-        // Sort for deterministic output order
-        Arrays.sort(pngFiles);
-
         // Create <folder>/<HEXCOLOR>/ output directory
         File outDir = new File(folder, hexRaw);
         if (!outDir.exists()) {
@@ -85,17 +104,36 @@ public class ImageColorApp {
             }
         }
 
-        System.out.printf("Processing %d PNG file(s) → %s%n%n", pngFiles.length, outDir.getPath());
+        System.out.printf("Processing %d PNG file(s) → %s%n%n", pngFiles.size(), outDir.getPath());
 
+        RasterPool.Meter meter = RasterPool.Meter.start();
         int filesDone = 0;
-        for (File png : pngFiles) {
-            File outFile = new File(outDir, png.getName());
-            int replaced = recolor(png, outFile, hexRaw);
-            System.out.printf("  %-30s  →  %,d pixel(s) replaced%n", png.getName(), replaced);
-            filesDone++;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, pngFiles.size())));
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (File png : pngFiles) {
+                futures.add(pool.submit(() -> {
+                    File outFile = new File(outDir, png.getName());
+                    int replaced = recolor(png, outFile, hexRaw);
+                    System.out.printf("  %-30s  →  %,d pixel(s) replaced%n", png.getName(), replaced);
+                    return replaced;
+                }));
+            }
+            for (Future<Integer> f : futures) {
+                try {
+                    f.get();
+                    filesDone++;
+                } catch (ExecutionException e) {
+                    System.err.println("  Error: " + e.getCause());
+                    Metrics.file("png", false);
+                }
+            }
+        } finally {
+            pool.shutdown();
         }
 
         System.out.printf("%nDone. Processed %d file(s). Output in: %s%n", filesDone, outDir.getPath());
+        System.out.println(meter);
     }
 
     // ── single-file mode ─────────────────────────────────────────────────────
@@ -121,41 +159,74 @@ public class ImageColorApp {
      * {@code hexRaw} (6 uppercase hex digits, no #), writes the result to
      * {@code dst}, and returns the number of pixels replaced.
      */
-    private static int recolor(File src, File dst, String hexRaw) throws Exception {
+    static int recolor(File src, File dst, String hexRaw) throws Exception {
         int targetR = Integer.parseInt(hexRaw.substring(0, 2), 16);
         int targetG = Integer.parseInt(hexRaw.substring(2, 4), 16);
         int targetB = Integer.parseInt(hexRaw.substring(4, 6), 16);
 
-        BufferedImage srcImg = ImageIO.read(src);
-        if (srcImg == null) {
-            System.err.println("  Warning: could not read image, skipping: " + src.getName());
-            return 0;
+        String format = Metrics.format(src.getName());
+        long t = System.nanoTime();
+        int width, height;
+        RasterPool.Lease dstLease;
+        try (RasterPool.Lease srcLease = RasterPool.decode(src)) {
+            if (srcLease == null) {
+                System.err.println("  Warning: could not read image, skipping: " + src.getName());
+                Metrics.file(format, false);
+                return 0;
+            }
+            t = Metrics.stage(Metrics.DECODE, format, t);
+            width  = srcLease.image().getWidth();
+            height = srcLease.image().getHeight();
+
+            // Copy the source into a pooled ARGB buffer, then recolor in place
+            dstLease = RasterPool.lease(width, height, BufferedImage.TYPE_INT_ARGB, false);
+            if (srcLease.pixels() != null && srcLease.image().getType() == BufferedImage.TYPE_INT_ARGB) {
+                System.arraycopy(srcLease.pixels(), 0, dstLease.pixels(), 0, width * height);
+            } else {
+                srcLease.image().getRGB(0, 0, width, height, dstLease.pixels(), 0, width);
+            }
         }
 
-        int width  = srcImg.getWidth();
-        int height = srcImg.getHeight();
-        BufferedImage dstImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        try (RasterPool.Lease lease = dstLease) {
+            int replaced = recolorPixels(lease.pixels(), width * height, (targetR << 16) | (targetG << 8) | targetB);
+            t = Metrics.stage(Metrics.TRANSFORM, format, t);
+            ImageIO.write(lease.image(), "PNG", dst);
+            Metrics.stage(Metrics.ENCODE, "png", t);
+            Metrics.file(format, true);
+            Metrics.counter("recolored_pixels_total").add(replaced);
+            return replaced;
+        }
+    }
 
+    /**
+     * Paints the near-black pixels among the first {@code n} of {@code px}
+     * the color {@code rgb}, keeping alpha, and returns how many there were.
+     */
+    static int recolorPixels(int[] px, int n, int rgb) {
         int replaced = 0;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int argb  = srcImg.getRGB(x, y);
-                int alpha = (argb >> 24) & 0xFF;
-                int r     = (argb >> 16) & 0xFF;
-                int g     = (argb >>  8) & 0xFF;
-                int b     =  argb        & 0xFF;
-
-                if (r < BLACK_THRESHOLD && g < BLACK_THRESHOLD && b < BLACK_THRESHOLD) {
-                    int newArgb = (alpha << 24) | (targetR << 16) | (targetG << 8) | targetB;
-                    dstImg.setRGB(x, y, newArgb);
-                    replaced++;
-                } else {
-                    dstImg.setRGB(x, y, argb);
-                }
+        for (int i = 0; i < n; i++) {
+            int argb = px[i];
+            if (isNearBlack(argb)) {
+                px[i] = (argb & 0xFF000000) | rgb;
+                replaced++;
             }
         }
-
-        ImageIO.write(dstImg, "PNG", dst);
         return replaced;
     }
-}
\ No newline at end of file
+
+    /**
+     * True if every RGB channel of {@code argb} is below the black threshold.
+     */
+    static boolean isNearBlack(int argb) {
+        return ((argb >> 16) & 0xFF) < BLACK_THRESHOLD
+            && ((argb >>  8) & 0xFF) < BLACK_THRESHOLD
+            && ( argb        & 0xFF) < BLACK_THRESHOLD;
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
@@ -1,23 +1,17 @@
 package com.github.ledlogic.imgutils;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import javax.imageio.ImageIO;
-
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.StringUtils;
+import com.github.ledlogic.imgutils.FileDiscoveryService.Format;
 
 public class ImageComputerApp {
 	
-	private static PngFilenameFilter pngFilter = new PngFilenameFilter();
-	private static JpgFilenameFilter jpgFilter = new JpgFilenameFilter();
-	
 	public static void main(String[] args) throws IOException, InterruptedException {
+		args = Metrics.init("ImageComputerApp", args);
 		
 		// attack folder
 		String attackFolder = "C:\\Dev\\workspace-2024\\mgt2-geomorph-assembler\\img\\geomorphs";
@@ -26,47 +20,31 @@ public class ImageComputerApp {
 		// get filenames
 		List<String> names = new ArrayList<String>();
 		
-		File[] files1 = attackFolderFile.listFiles(pngFilter);
-		for (File file: files1) {
-			String name = file.getName();
-			names.add(name);
-		}
-		
-		File[] files2 = attackFolderFile.listFiles(jpgFilter);
-		for (File file: files2) {
+		for (File file: FileDiscoveryService.files(attackFolderFile, Format.PNG, Format.JPEG)) {
 			String name = file.getName();
 			names.add(name);
 		}
 		
 		// sort
 		Collections.sort(names);
-
-		// generate json page
-		List<String> json = new ArrayList<String>();
-		json.add("[");
-		int cnt = 0;
+		
+		// bring the persistent index up to date, probing only new or changed files
+		long start = System.nanoTime();
+		List<File> files = new ArrayList<File>();
 		for (String name: names) {
-			if (cnt++ > 0) {
-				json.add(",");
-			}
-			
-	        BufferedImage img = null;
-			File inFile = new File(attackFolder + "\\" + name);
-	        try{
-	            img = ImageIO.read(inFile);
-	        } catch(IOException e){
-	            System.out.println(e);
-	        }
-
-	        int width = img.getWidth();
-	        int height = img.getHeight();
-			
-			json.add("{ \"name\": \"" + name + "\", \"width\": " + width + ",\"height\": " + height + "}");
+			files.add(new File(attackFolder + "\\" + name));
 		}
-		json.add("]");
+		ImageMetadataIndex index = ImageMetadataIndex.load(new File(attackFolder + "\\index.bin"));
+		boolean changed = index.update(files);
 		
+		// binary index for the assembler, json page in the existing shape
 		File outFile = new File(attackFolder + "\\index.json");
-		FileUtils.write(outFile, StringUtils.join(json, "\n"), "UTF-8");
+		if (changed || !outFile.exists()) {
+			index.save();
+			index.writeJson(outFile);
+		}
+		System.out.println(String.format("Indexed %d image(s) in %.1f ms: %s",
+			index.entries().size(), (System.nanoTime() - start) / 1e6, outFile));
 		
 		String[] cmd = { "\"C:\\Program Files\\Google\\Chrome\\Application\\chrome.exe\" \"file:///" + outFile + "\"" };
 		Process proc = Runtime.getRuntime().exec(cmd);
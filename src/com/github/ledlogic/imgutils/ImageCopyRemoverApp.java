@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 
@@ -11,13 +12,26 @@ import java.util.Set;
  * Scans a directory (recursively) and deletes image files whose names
  * contain the word "Copy" (case-sensitive by default).
  *
+ * With --content, duplicates are found by content instead (see
+ * DuplicateFinder): in each group of identical images one file is kept,
+ * chosen by the --keep policy, and the rest are deleted. A name without
+ * "Copy" wins ties, so a renamed original is kept over its copy. Only
+ * regular files take part: symlinks are skipped and hard links to one file
+ * count once, so deleting a "duplicate" never removes the data itself. By
+ * name, links are matched and deleted like any other file.
+ *
  * Usage:
  *   java RemoveCopyImages <directory> [--dry-run] [--ignore-case] [--recursive]
+ *                         [--content] [--keep oldest|shortest] [--threads N]
  *
  * Flags:
  *   --dry-run      List files that WOULD be deleted without actually deleting them.
  *   --ignore-case  Match "copy", "COPY", "Copy", etc.
  *   --recursive    Walk sub-directories (default: top-level only).
+ *   --content      Delete files whose content duplicates another image.
+ *   --keep         Which file of a duplicate group to keep: the oldest
+ *                  (last modified) or the one with the shortest path (default).
+ *   --threads      Hashing threads for --content (default: available cores).
  */
 public class ImageCopyRemoverApp {
 
@@ -27,10 +41,11 @@ public class ImageCopyRemoverApp {
         ".tiff", ".tif", ".webp", ".heic", ".svg", ".ico"
     );
 
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        args = Metrics.init("ImageCopyRemoverApp", args);
 
         if (args.length == 0) {
-            System.err.println("Usage: java RemoveCopyImages <directory> [--dry-run] [--ignore-case] [--recursive]");
+            System.err.println("Usage: java RemoveCopyImages <directory> [--dry-run] [--ignore-case] [--recursive] [--content] [--keep oldest|shortest] [--threads N]");
             System.exit(1);
         }
 
@@ -38,6 +53,15 @@ public class ImageCopyRemoverApp {
         boolean dryRun      = hasFlag(args, "--dry-run");
         boolean ignoreCase  = hasFlag(args, "--ignore-case");
         boolean recursive   = hasFlag(args, "--recursive");
+        boolean content     = hasFlag(args, "--content");
+        String keep         = flagValue(args, "--keep", "shortest").toLowerCase();
+        int threads         = Integer.parseInt(flagValue(args, "--threads",
+                                  String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        if (!keep.equals("oldest") && !keep.equals("shortest")) {
+            System.err.println("ERROR: --keep must be oldest or shortest");
+            System.exit(1);
+        }
 
         if (!Files.isDirectory(targetDir)) {
             System.err.println("ERROR: Not a directory: " + targetDir);
@@ -48,16 +72,18 @@ public class ImageCopyRemoverApp {
         System.out.printf("Directory  : %s%n", targetDir.toAbsolutePath());
         System.out.printf("Recursive  : %s%n", recursive);
         System.out.printf("Ignore case: %s%n", ignoreCase);
+        System.out.printf("Content    : %s%s%n", content, content ? " (keep " + keep + ")" : "");
         System.out.printf("Dry run    : %s%n%n", dryRun);
 
-        List<Path> toDelete = new ArrayList<>();
+        List<Path> images = new ArrayList<>();
 
         if (recursive) {
             // Walk the full tree
             Files.walkFileTree(targetDir, new SimpleFileVisitor<>() {
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    if (isCopyImage(file, ignoreCase)) toDelete.add(file);
+                    // links are not followed: a symlink is never a duplicate of its target
+                    if ((attrs.isRegularFile() || !content) && isImage(file)) images.add(file);
                     return FileVisitResult.CONTINUE;
                 }
 
@@ -71,13 +97,31 @@ public class ImageCopyRemoverApp {
             // Top-level only
             try (DirectoryStream<Path> stream = Files.newDirectoryStream(targetDir)) {
                 for (Path entry : stream) {
-                    if (Files.isRegularFile(entry) && isCopyImage(entry, ignoreCase)) {
-                        toDelete.add(entry);
+                    boolean regular = content
+                        ? Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS)
+                        : Files.isRegularFile(entry);
+                    if (regular && isImage(entry)) {
+                        images.add(entry);
                     }
                 }
             }
         }
 
+        List<Path> toDelete = new ArrayList<>();
+        if (content) {
+            Comparator<Path> order = keepOrder(keep, ignoreCase);
+            for (List<Path> group : DuplicateFinder.findDuplicates(images, threads)) {
+                group.sort(order);
+                System.out.println("Keeping " + group.get(0));
+                toDelete.addAll(group.subList(1, group.size()));
+            }
+            System.out.println();
+        } else {
+            for (Path file : images) {
+                if (isCopyName(file, ignoreCase)) toDelete.add(file);
+            }
+        }
+
         if (toDelete.isEmpty()) {
             System.out.println("No matching files found.");
             return;
@@ -91,11 +135,16 @@ public class ImageCopyRemoverApp {
         for (Path file : toDelete) {
             System.out.println("  " + file);
             if (!dryRun) {
+                String format = Metrics.format(file.getFileName().toString());
+                long t = System.nanoTime();
                 try {
                     Files.delete(file);
+                    Metrics.stage(Metrics.WRITE, format, t);
+                    Metrics.file(format, true);
                     deleted++;
                 } catch (IOException e) {
                     System.err.println("    ERROR deleting: " + e.getMessage());
+                    Metrics.file(format, false);
                     failed++;
                 }
             }
@@ -110,19 +159,43 @@ public class ImageCopyRemoverApp {
     }
 
     /**
-     * Returns true if the file is an image and its name contains "Copy".
+     * Returns true if the file has an image extension.
      */
-    private static boolean isCopyImage(Path file, boolean ignoreCase) {
-        String name = file.getFileName().toString();
-        String ext  = getExtension(name);
-
-        if (!IMAGE_EXTENSIONS.contains(ext.toLowerCase())) return false;
+    private static boolean isImage(Path file) {
+        return IMAGE_EXTENSIONS.contains(getExtension(file.getFileName().toString()));
+    }
 
+    /**
+     * Returns true if the file's name contains "Copy".
+     */
+    private static boolean isCopyName(Path file, boolean ignoreCase) {
+        String name = file.getFileName().toString();
         return ignoreCase
             ? name.toLowerCase().contains("copy")
             : name.contains("Copy");
     }
 
+    /**
+     * Orders a duplicate group so the file to keep comes first: by the --keep
+     * policy, then names without "Copy" first, then by path.
+     */
+    private static Comparator<Path> keepOrder(String keep, boolean ignoreCase) {
+        Comparator<Path> policy = keep.equals("oldest")
+            ? Comparator.comparingLong(ImageCopyRemoverApp::lastModified)
+            : Comparator.comparingInt(p -> p.toString().length());
+        return policy
+            .thenComparing(p -> isCopyName(p, ignoreCase))
+            .thenComparing(Path::toString);
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
     /** Extracts the lowercase file extension including the dot, e.g. ".jpg" */
     private static String getExtension(String filename) {
         int dot = filename.lastIndexOf('.');
@@ -133,4 +206,11 @@ public class ImageCopyRemoverApp {
         for (String arg : args) if (arg.equalsIgnoreCase(flag)) return true;
         return false;
     }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
 }
\ No newline at end of file
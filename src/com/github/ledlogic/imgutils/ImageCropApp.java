@@ -47,6 +47,7 @@ public class ImageCropApp {
     // ────────────────────────────────────────────────────────────────────────
 
     public static void main(String[] args) throws Exception {
+        args = Metrics.init("ImageCropApp", args);
         if (args.length < 1) {
             System.err.println("Usage: java -jar ImageCropApp.jar <input.png|folder>");
             System.exit(1);
@@ -59,17 +60,17 @@ public class ImageCropApp {
         }
 
         if (input.isDirectory()) {
-            File[] pngs = input.listFiles(f ->
-                f.isFile()
-                && f.getName().toLowerCase().endsWith(".png")
-                && !f.getName().toLowerCase().endsWith("t.png"));
-            if (pngs == null || pngs.length == 0) {
+            List<File> pngs = new ArrayList<>();
+            for (File f : FileDiscoveryService.files(input, FileDiscoveryService.Format.PNG)) {
+                if (!f.getName().toLowerCase().endsWith("t.png")) pngs.add(f);
+            }
+            if (pngs.isEmpty()) {
                 System.out.println("No eligible PNG files found in: " + input.getAbsolutePath());
                 return;
             }
-            java.util.Arrays.sort(pngs);
             System.out.printf("Found %d PNG file(s) to process in: %s%n",
-                    pngs.length, input.getAbsolutePath());
+                    pngs.size(), input.getAbsolutePath());
+            RasterPool.Meter meter = RasterPool.Meter.start();
             int ok = 0, failed = 0;
             for (File f : pngs) {
                 System.out.println("\n── " + f.getName() + " ──");
@@ -78,25 +79,41 @@ public class ImageCropApp {
                     ok++;
                 } catch (Exception e) {
                     System.err.println("  FAILED: " + e.getMessage());
+                    Metrics.file("png", false);
                     failed++;
                 }
             }
             System.out.printf("%nDone: %d succeeded, %d failed.%n", ok, failed);
+            System.out.println(meter);
         } else {
             processFile(input);
         }
     }
 
     static void processFile(File inputFile) throws Exception {
+        System.out.println("Reading: " + inputFile.getAbsolutePath());
+        String format = Metrics.format(inputFile.getName());
+        StageEvent decode = StageEvent.start(Metrics.DECODE, inputFile.getPath(), format);
+        // The raster goes back to the pool once every crop is written
+        try (RasterPool.Lease raw = readRaw(inputFile)) {
+            if (raw == null) {
+                System.err.println("Error: unreadable image");
+                Metrics.file(format, false);
+                return;
+            }
+            decode.image(raw.image()).bytes(inputFile.length()).finish();
+            processImage(inputFile, raw.image(), format);
+        }
+    }
+
+    private static void processImage(File inputFile, BufferedImage img, String format) throws Exception {
         String inputPath = inputFile.getAbsolutePath();
         String outputPath = tSuffix(inputPath);
 
-        System.out.println("Reading: " + inputPath);
-        BufferedImage img = readRaw(inputFile);
-        if (img == null) { System.err.println("Error: unreadable image"); return; }
-
         int W = img.getWidth(), H = img.getHeight();
         System.out.printf("Image size: %d × %d px%n", W, H);
+        // transform covers the mask, the band search and the crops
+        StageEvent transform = StageEvent.start(Metrics.TRANSFORM, inputPath, format);
 
         // ── Build orange mask ────────────────────────────────────────────────
         boolean[][] orange = buildOrangeMask(img, W, H);
@@ -181,6 +198,8 @@ public class ImageCropApp {
                     maxC, (int)(H*0.08));
             System.err.printf("  Image: %dx%d  Orange mask R>%d G=%d-%d B<%d%n",
                     W, H, ORANGE_R_MIN, ORANGE_G_MIN, ORANGE_G_MAX, ORANGE_B_MAX);
+            transform.image(img).finish();
+            Metrics.file(format, false);
             System.exit(1);
         }
 
@@ -193,12 +212,17 @@ public class ImageCropApp {
 
             BufferedImage left  = crop(img, rectL);
             BufferedImage right = crop(img, rectR);
+            transform.image(img).finish();
 
             // Derive two output paths: stem_1t.png and stem_2t.png
             String outL = dualOutPath(inputPath, 1);
             String outR = dualOutPath(inputPath, 2);
+            StageEvent encode = StageEvent.start(Metrics.ENCODE, outL, "png");
             ImageIO.write(left,  "PNG", new File(outL));
+            encode.image(left).bytes(new File(outL).length()).finish();
+            encode = StageEvent.start(Metrics.ENCODE, outR, "png");
             ImageIO.write(right, "PNG", new File(outR));
+            encode.image(right).bytes(new File(outR).length()).finish();
             System.out.println("Saved [1]: " + outL + "  (" + left.getWidth()  + "×" + left.getHeight()  + ")");
             System.out.println("Saved [2]: " + outR + "  (" + right.getWidth() + "×" + right.getHeight() + ")");
         } else {
@@ -206,9 +230,13 @@ public class ImageCropApp {
             int[] rectS = rect(rowBandsAll, colBandsAll, H, W);
             printRect("Map", rectS);
             BufferedImage output = crop(img, rectS);
+            transform.image(img).finish();
+            StageEvent encode = StageEvent.start(Metrics.ENCODE, outputPath, "png");
             ImageIO.write(output, "PNG", new File(outputPath));
+            encode.image(output).bytes(new File(outputPath).length()).finish();
             System.out.println("Saved: " + outputPath + "  (" + output.getWidth() + "×" + output.getHeight() + ")");
         }
+        Metrics.file(format, true);
     }
 
     // ── Geometry helpers ─────────────────────────────────────────────────────
@@ -265,8 +293,10 @@ public class ImageCropApp {
      * JVM versions (e.g. JDK 21.0.1) apply during ImageIO.read(), shifting
      * pixel values and breaking the orange threshold checks.
      * Forces result into plain TYPE_INT_RGB so values match the raw file bytes.
+     * The pixels are decoded into a pooled raster (RasterPool); close the
+     * lease when done with the image.
      */
-    static BufferedImage readRaw(File file) throws Exception {
+    static RasterPool.Lease readRaw(File file) throws Exception {
         try (javax.imageio.stream.ImageInputStream iis =
                      ImageIO.createImageInputStream(file)) {
             java.util.Iterator<javax.imageio.ImageReader> readers =
@@ -276,29 +306,33 @@ public class ImageCropApp {
             javax.imageio.ImageReader reader = readers.next();
             reader.setInput(iis, true, true); // ignoreMetadata=true skips ICC
 
+            RasterPool.Lease lease = RasterPool.lease(reader.getWidth(0), reader.getHeight(0),
+                    BufferedImage.TYPE_INT_RGB, false);
             javax.imageio.ImageReadParam param = reader.getDefaultReadParam();
-            param.setDestinationType(
-                    javax.imageio.ImageTypeSpecifier.createFromBufferedImageType(
-                            BufferedImage.TYPE_INT_RGB));
+            param.setDestination(lease.image());
 
-            BufferedImage raw;
             try {
-                raw = reader.read(0, param);
+                reader.read(0, param);
             } catch (Exception e) {
-                raw = reader.read(0); // fallback if decoder ignores dest type
-            }
-            reader.dispose();
-
-            // Ensure TYPE_INT_RGB (some decoders ignore the hint above)
-            if (raw.getType() != BufferedImage.TYPE_INT_RGB) {
-                BufferedImage dst = new BufferedImage(
-                        raw.getWidth(), raw.getHeight(), BufferedImage.TYPE_INT_RGB);
-                java.awt.Graphics2D g = dst.createGraphics();
-                g.drawImage(raw, 0, 0, null);
-                g.dispose();
-                raw = dst;
+                // fallback if decoder rejects the destination: draw into it.
+                // drawImage leaves transparent or undrawn pixels as they are,
+                // so take a cleared buffer instead of the previous file's pixels
+                lease.close();
+                lease = RasterPool.lease(reader.getWidth(0), reader.getHeight(0),
+                        BufferedImage.TYPE_INT_RGB, true);
+                try {
+                    BufferedImage raw = reader.read(0);
+                    java.awt.Graphics2D g = lease.image().createGraphics();
+                    g.drawImage(raw, 0, 0, null);
+                    g.dispose();
+                } catch (Exception fallback) {
+                    lease.close();
+                    throw fallback;
+                }
+            } finally {
+                reader.dispose();
             }
-            return raw;
+            return lease;
         }
     }
 
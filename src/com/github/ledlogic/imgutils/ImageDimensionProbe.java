@@ -0,0 +1,153 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * ImageDimensionProbe - image width and height without decoding pixels
+ *
+ * PNG dimensions come from the IHDR chunk, which the format requires to be
+ * the first chunk, so only the first 24 bytes are read. JPEG dimensions come
+ * from the first SOFn marker; the markers before it are skipped by their
+ * length fields, so EXIF and ICC blocks are never read into memory. Any other
+ * format, or a header that does not parse, falls back to
+ * ImageReader.getWidth/getHeight, which also stops at the header.
+ *
+ * probeAll runs one virtual thread per file, so on a slow synced or network
+ * drive the wait for each file's first bytes overlaps with the others.
+ *
+ * Usage:
+ *   Dimension d = ImageDimensionProbe.probe(file);
+ *   List<Dimension> dims = ImageDimensionProbe.probeAll(files);  // null where unreadable
+ */
+public class ImageDimensionProbe {
+
+    private static final byte[] PNG_SIGNATURE = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+
+    /**
+     * Returns the width and height of {@code file} from its header.
+     *
+     * @throws IOException If the file cannot be read or has no readable header
+     */
+    public static Dimension probe(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 8192))) {
+            byte[] head = new byte[8];
+            in.readFully(head, 0, 2);
+
+            if ((head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8) {
+                Dimension d = jpegDimensions(in);
+                if (d != null) return d;
+            } else {
+                in.readFully(head, 2, 6);
+                if (Arrays.equals(head, PNG_SIGNATURE)) {
+                    Dimension d = pngDimensions(in);
+                    if (d != null) return d;
+                }
+            }
+        } catch (EOFException e) {
+            // truncated header, let ImageIO decide
+        }
+        return readerDimensions(file);
+    }
+
+    /**
+     * Probes every file concurrently on virtual threads. The result is in the
+     * same order as {@code files}, with null for files that could not be
+     * probed (the error is printed).
+     */
+    public static List<Dimension> probeAll(List<File> files) throws InterruptedException {
+        List<Dimension> result = new ArrayList<>(files.size());
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Dimension>> futures = new ArrayList<>(files.size());
+            for (File file : files) {
+                futures.add(pool.submit(() -> probe(file)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    result.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    System.err.println("Could not read dimensions of " + files.get(i) + ": " + e.getCause());
+                    result.add(null);
+                }
+            }
+        }
+        return result;
+    }
+
+    // ── PNG ──
+
+    private static Dimension pngDimensions(DataInputStream in) throws IOException {
+        in.readInt(); // IHDR length
+        if (in.readInt() != 0x49484452) return null; // "IHDR"
+        int width = in.readInt();
+        int height = in.readInt();
+        return width > 0 && height > 0 ? new Dimension(width, height) : null;
+    }
+
+    // ── JPEG ──
+
+    private static Dimension jpegDimensions(DataInputStream in) throws IOException {
+        while (true) {
+            int b = in.readUnsignedByte();
+            if (b != 0xFF) return null;
+
+            int marker = in.readUnsignedByte();
+            while (marker == 0xFF) marker = in.readUnsignedByte(); // fill bytes
+
+            // Standalone markers carry no length
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) continue;
+            if (marker == 0xD9 || marker == 0xDA) return null; // EOI / SOS before any frame
+
+            int length = in.readUnsignedShort();
+            if (length < 2) return null;
+
+            // SOF0..SOF15, except DHT (C4), JPG (C8) and DAC (CC)
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                in.readUnsignedByte(); // sample precision
+                int height = in.readUnsignedShort();
+                int width = in.readUnsignedShort();
+                // height 0 means it is defined later by a DNL marker
+                return width > 0 && height > 0 ? new Dimension(width, height) : null;
+            }
+            in.skipNBytes(length - 2);
+        }
+    }
+
+    // ── fallback ──
+
+    private static Dimension readerDimensions(File file) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            if (iis == null) throw new IOException("Cannot open " + file);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) throw new IOException("No ImageIO reader for " + file);
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -5,15 +5,19 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import com.github.ledlogic.imgutils.FileDiscoveryService.Format;
+
 public class ImageGridderApp {
 	
-	private static PngFilenameFilter pngFilter = new PngFilenameFilter();
+	// render PNG pages with ContactSheetCompositor instead of HTML
+	private static final boolean RASTER_OUTPUT = false;
 	
 	public static void main(String[] args) throws IOException, InterruptedException {
+		args = Metrics.init("ImageGridderApp", args);
 		
 		// input folders - add or remove folders as needed
 		String[] inputFolderList = {
@@ -27,12 +31,9 @@ public class ImageGridderApp {
 		for (String inputFolder : inputFolderList) {
 			File inputFolderFile = new File(inputFolder);
 
-			File[] files1 = inputFolderFile.listFiles(pngFilter);
-			if (files1 != null) {
-				for (File file: files1) {
-					if (file.getName().startsWith("monster-09")) {
-						files.add(file);
-					}
+			for (File file: FileDiscoveryService.files(inputFolderFile, Format.PNG)) {
+				if (file.getName().startsWith("monster-09")) {
+					files.add(file);
 				}
 			}
 		}
@@ -43,54 +44,71 @@ public class ImageGridderApp {
 		// use the first folder as the output location
 		String attackFolder = inputFolderList[0];
 
-		// generate html page
-		List<String> html = new ArrayList<String>();
-		html.add("<html>");
-		html.add("<head><style>");
-		html.add("  * { page-break-inside: avoid; page-break-before: avoid; page-break-after: avoid; }");
-		html.add("  body { margin: 0; padding: 0; }");
-		html.add("</style></head>");
-		html.add("<body>");
-
-		// 1in x 1in section (96px at 96 DPI) - loop twice
+		// section sizes: 1in x 1in (96px at 96 DPI) and 2in x 2in (192px at 96 DPI)
 		int dim1 = 96;
-		for (int pass = 0; pass < 2; pass++) {
-			addImageGrid(html, files, dim1);
-			html.add("<div style=\"clear: both; margin-bottom: 0.25in;\"></div>");
-		}
+		int dim2 = 192;
 
-		// 2in x 2in section (192px at 96 DPI) - monster files only, loop twice
+		// 2in x 2in section is monster files only
 		List<File> monsterFiles = new ArrayList<File>();
 		for (File file : files) {
 			if (file.getName().startsWith("monster")) {
 				monsterFiles.add(file);
 			}
 		}
-		int dim2 = 192;
-		for (int pass = 0; pass < 2; pass++) {
-			addImageGrid(html, monsterFiles, dim2);
-			html.add("<div style=\"clear: both; margin-bottom: 0.25in;\"></div>");
+
+		// print-ready PNG pages instead of an HTML page and a browser print
+		if (RASTER_OUTPUT) {
+			List<ContactSheetCompositor.Section> sections = new ArrayList<ContactSheetCompositor.Section>();
+			sections.add(new ContactSheetCompositor.Section(files, dim1, 2, true, true, false));
+			sections.add(new ContactSheetCompositor.Section(monsterFiles, dim2, 2, true, true, false));
+			new ContactSheetCompositor(300, 8.5, 11.0, 0.5, "png", Runtime.getRuntime().availableProcessors())
+				.render(sections, new File(attackFolder), "index-grid");
+			return;
 		}
 
-		html.add("</body>");
-		html.add("</html>");
-		
+		// print-size thumbnails, cached beside the page
+		ThumbnailCache thumbnailCache = new ThumbnailCache(new File(attackFolder, ".thumbs"));
+
+		Map<File, File> thumbs1 = thumbnailCache.thumbnails(files, dim1);
+		Map<File, File> thumbs2 = thumbnailCache.thumbnails(monsterFiles, dim2);
+
+		// generate html page, streamed straight to disk
 		File outFile = new File(attackFolder + "\\index-grid.html");
-		FileUtils.write(outFile, StringUtils.join(html, "\n"), "UTF-8");
+		try (HtmlGridRenderer html = new HtmlGridRenderer(outFile)) {
+			html.css("  * { page-break-inside: avoid; page-break-before: avoid; page-break-after: avoid; }");
+			html.css("  body { margin: 0; padding: 0; }");
+			html.css("  .cell { position: relative; border: 1px solid #ccc; float: left; overflow: hidden; }");
+			html.css("  .cell img { width: 100%; height: 100%; object-fit: cover; display: block; }");
+			html.css("  .cell span { position: absolute; bottom: 0; left: 0; right: 0; font-family: Bahnschrift; font-size: 10px; font-weight: bold; background: #fff; text-align: center; }");
+			html.css("  .d" + dim1 + " { width: " + dim1 + "px; height: " + dim1 + "px; }");
+			html.css("  .d" + dim2 + " { width: " + dim2 + "px; height: " + dim2 + "px; }");
+			html.css("  .section-end { clear: both; margin-bottom: 0.25in; }");
+			html.beginBody(null);
+
+			// 1in x 1in section - loop twice
+			for (int pass = 0; pass < 2; pass++) {
+				addImageGrid(html, files, thumbs1, dim1);
+				html.div("section-end");
+			}
+
+			// 2in x 2in section - loop twice
+			for (int pass = 0; pass < 2; pass++) {
+				addImageGrid(html, monsterFiles, thumbs2, dim2);
+				html.div("section-end");
+			}
+		}
 		
 		String[] cmd = { "\"C:\\Program Files\\Google\\Chrome\\Application\\chrome.exe\" \"file:///" + outFile + "\"" };
 		Process proc = Runtime.getRuntime().exec(cmd);
 	}
 
-	private static void addImageGrid(List<String> html, List<File> files, int dim) {
+	private static void addImageGrid(HtmlGridRenderer html, List<File> files, Map<File, File> thumbs, int dim) throws IOException {
+		String cssClass = "cell d" + dim;
 		for (File file: files) {
 			String name = file.getName();
 			String truncName = StringUtils.substringBefore(name, ".");
-			String srcPath = file.getAbsolutePath().replace("\\", "/");
-			html.add("<div style=\"position: relative; width: " + dim + "px; height: " + dim + "px; border: 1px solid #ccc; float: left; overflow: hidden;\">");
-			html.add("<img src=\"file:///" + srcPath + "\" alt=\"" + truncName + "\" title=\"" + truncName + "\" style=\"width: 100%; height: 100%; object-fit: cover; display: block;\" />");
-			html.add("<span style=\"position: absolute; bottom: 0; left: 0; right: 0; font-family: Bahnschrift; font-size: 10px; font-weight: bold; background: #fff; text-align: center;\">" + truncName + "</span>");
-			html.add("</div>");
+			String src = ThumbnailCache.htmlSrc(thumbs.get(file));
+			html.cell(cssClass, src, truncName, truncName);
 		}
 	}
 }
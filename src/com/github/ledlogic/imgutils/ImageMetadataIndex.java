@@ -0,0 +1,303 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ImageMetadataIndex - persistent, incremental metadata for a folder of images
+ *
+ * Keeps one entry per image: name, size, last-modified time, width, height,
+ * SHA-1 of the content and mean color. The index is stored beside the
+ * images in a compact binary file; {@link #update} compares the current
+ * listing against it and re-probes only new files and files whose size or
+ * mtime changed, and drops entries for files that are gone. Unchanged
+ * images are not opened at all, so an update costs in proportion to the
+ * number of changes.
+ *
+ * Changed files are probed on virtual threads: dimensions come from the
+ * header (ImageDimensionProbe), the hash from one streaming read, and the
+ * mean color from a heavily subsampled decode.
+ *
+ * Usage:
+ *   ImageMetadataIndex index = ImageMetadataIndex.load(new File(folder, "index.bin"));
+ *   if (index.update(files)) {
+ *       index.save();
+ *       index.writeJson(new File(folder, "index.json"));
+ *   }
+ */
+public class ImageMetadataIndex {
+
+    private static final int MAGIC = 0x494D4958; // "IMIX"
+    private static final int VERSION = 1;
+
+    /** Target size of the subsampled decode used for the mean color. */
+    private static final int MEAN_COLOR_PX = 32;
+
+    /**
+     * One indexed image
+     */
+    public static class Entry {
+        public final String name;
+        public final long size;
+        public final long lastModified;
+        public final int width;
+        public final int height;
+        public final byte[] sha1;
+        public final int meanRgb;
+
+        Entry(String name, long size, long lastModified, int width, int height, byte[] sha1, int meanRgb) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.width = width;
+            this.height = height;
+            this.sha1 = sha1;
+            this.meanRgb = meanRgb;
+        }
+
+        public String sha1Hex() {
+            StringBuilder sb = new StringBuilder(40);
+            for (byte b : sha1) sb.append(String.format("%02x", b));
+            return sb.toString();
+        }
+
+        boolean matches(File file) {
+            return size == file.length() && lastModified == file.lastModified();
+        }
+    }
+
+    private final File indexFile;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    private ImageMetadataIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Loads the index from {@code indexFile}, or starts an empty one if the
+     * file is missing or unreadable.
+     */
+    public static ImageMetadataIndex load(File indexFile) {
+        ImageMetadataIndex index = new ImageMetadataIndex(indexFile);
+        if (!indexFile.exists()) return index;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Ignoring index with unknown format: " + indexFile);
+                return index;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                int width = in.readInt();
+                int height = in.readInt();
+                byte[] sha1 = new byte[20];
+                in.readFully(sha1);
+                int meanRgb = in.readInt();
+                index.entries.put(name, new Entry(name, size, lastModified, width, height, sha1, meanRgb));
+            }
+        } catch (IOException e) {
+            System.err.println("Rebuilding unreadable index " + indexFile + ": " + e.getMessage());
+            index.entries.clear();
+        }
+        return index;
+    }
+
+    /**
+     * Brings the index in line with {@code files}: probes new and changed
+     * files and removes entries whose file is no longer listed. Files that
+     * cannot be probed are left out and reported.
+     *
+     * @return true if any entry was added, replaced or removed
+     */
+    public boolean update(Collection<File> files) throws InterruptedException {
+        Map<String, File> current = new TreeMap<>();
+        for (File file : files) current.put(file.getName(), file);
+
+        int removed = 0;
+        for (var it = entries.keySet().iterator(); it.hasNext();) {
+            if (!current.containsKey(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+
+        List<File> changed = new ArrayList<>();
+        for (File file : current.values()) {
+            Entry entry = entries.get(file.getName());
+            if (entry == null || !entry.matches(file)) changed.add(file);
+        }
+
+        int failed = 0;
+        if (!changed.isEmpty()) {
+            try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Entry>> futures = new ArrayList<>(changed.size());
+                for (File file : changed) {
+                    futures.add(pool.submit(() -> probe(file)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    String format = Metrics.format(changed.get(i).getName());
+                    try {
+                        Entry entry = futures.get(i).get();
+                        entries.put(entry.name, entry);
+                        Metrics.file(format, true);
+                    } catch (ExecutionException e) {
+                        System.err.println("Could not index " + changed.get(i) + ": " + e.getCause());
+                        Metrics.file(format, false);
+                        entries.remove(changed.get(i).getName());
+                        failed++;
+                    }
+                }
+            }
+        }
+
+        System.out.println("Index: " + entries.size() + " entries, " + (changed.size() - failed)
+            + " probed, " + removed + " removed, " + failed + " failed");
+        return !changed.isEmpty() || removed > 0;
+    }
+
+    /** Entries in name order. */
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Writes the binary index, through a temp file so an interrupted save
+     * never leaves a truncated index behind.
+     */
+    public void save() throws IOException {
+        long t = System.nanoTime();
+        File tmp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry e : entries.values()) {
+                out.writeUTF(e.name);
+                out.writeLong(e.size);
+                out.writeLong(e.lastModified);
+                out.writeInt(e.width);
+                out.writeInt(e.height);
+                out.write(e.sha1);
+                out.writeInt(e.meanRgb);
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Metrics.stage(Metrics.WRITE, Metrics.format(indexFile.getName()), t);
+        Metrics.bytesWritten(Metrics.format(indexFile.getName()), indexFile.length());
+    }
+
+    /**
+     * Writes the geomorph assembler's index.json: one
+     * { "name", "width", "height" } object per entry, in name order.
+     */
+    public void writeJson(File outFile) throws IOException {
+        long t = System.nanoTime();
+        try (Writer json = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+            json.write("[");
+            int cnt = 0;
+            for (Entry e : entries.values()) {
+                if (cnt++ > 0) {
+                    json.write("\n,");
+                }
+                json.write("\n{ \"name\": \"" + e.name + "\", \"width\": " + e.width + ",\"height\": " + e.height + "}");
+            }
+            json.write("\n]");
+        }
+        Metrics.stage(Metrics.WRITE, "json", t);
+        Metrics.bytesWritten("json", outFile.length());
+    }
+
+    // ── probing ──
+
+    /**
+     * Header probe and hash are timed as reads, the mean colour as a decode
+     * (inside readSubsampled) and a transform.
+     */
+    private static Entry probe(File file) throws IOException {
+        // size and mtime first, so a file replaced mid-probe is picked up next run
+        long size = file.length();
+        long lastModified = file.lastModified();
+        String format = Metrics.format(file.getName());
+
+        long t = System.nanoTime();
+        Dimension dim = ImageDimensionProbe.probe(file);
+        t = Metrics.stage(Metrics.READ, format, t);
+        byte[] sha1 = sha1(file);
+        Metrics.stage(Metrics.READ, format, t);
+        Metrics.bytesRead(format, size);
+
+        BufferedImage img = ThumbnailCache.readSubsampled(file, MEAN_COLOR_PX);
+        t = System.nanoTime();
+        int meanRgb = meanRgb(img);
+        Metrics.stage(Metrics.TRANSFORM, format, t);
+        return new Entry(file.getName(), size, lastModified, dim.width, dim.height, sha1, meanRgb);
+    }
+
+    private static byte[] sha1(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static int meanRgb(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        int[] row = new int[w];
+        long r = 0, g = 0, b = 0;
+        for (int y = 0; y < h; y++) {
+            img.getRGB(0, y, w, 1, row, 0, w);
+            for (int argb : row) {
+                r += (argb >> 16) & 0xFF;
+                g += (argb >> 8) & 0xFF;
+                b += argb & 0xFF;
+            }
+        }
+        long n = (long) w * h;
+        return (int) (r / n) << 16 | (int) (g / n) << 8 | (int) (b / n);
+    }
+}
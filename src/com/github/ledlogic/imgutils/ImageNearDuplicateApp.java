@@ -0,0 +1,201 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Reports clusters of near-duplicate images: the same art saved as PNG and
+ * JPG, resized, or re-exported. The companion to ImageCopyRemoverApp, which
+ * only catches byte-identical files.
+ *
+ * Every image gets a 64-bit dHash (PerceptualHashCache, cached between runs
+ * by path, size and mtime). Distinct hashes go into a BK-tree, each one is
+ * queried for neighbours within the Hamming radius, and neighbours are
+ * joined into clusters with union-find, so there is no all-pairs
+ * comparison. Nothing is deleted; clusters are printed for review.
+ *
+ * Usage:
+ *   java ImageNearDuplicateApp <directory> [--recursive] [--radius N] [--threads N] [--cache FILE]
+ *
+ * Flags:
+ *   --recursive  Walk sub-directories (default: top-level only).
+ *   --radius     Maximum Hamming distance between near duplicates (default: 6 of 64 bits).
+ *   --threads    Decode threads for new hashes (default: available cores).
+ *   --cache      Hash cache file (default: <directory>/.phash-cache).
+ */
+public class ImageNearDuplicateApp {
+
+    // Extensions ImageIO can decode
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of(
+        ".jpg", ".jpeg", ".png", ".gif", ".bmp", ".tiff", ".tif", ".wbmp"
+    );
+
+    private static final int DEFAULT_RADIUS = 6;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        args = Metrics.init("ImageNearDuplicateApp", args);
+
+        if (args.length == 0) {
+            System.err.println("Usage: java ImageNearDuplicateApp <directory> [--recursive] [--radius N] [--threads N] [--cache FILE]");
+            System.exit(1);
+        }
+
+        Path targetDir  = Paths.get(args[0]);
+        boolean recursive = hasFlag(args, "--recursive");
+        int radius        = Integer.parseInt(flagValue(args, "--radius", String.valueOf(DEFAULT_RADIUS)));
+        int threads       = Integer.parseInt(flagValue(args, "--threads",
+                                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        File cacheFile    = new File(flagValue(args, "--cache",
+                                targetDir.resolve(".phash-cache").toString()));
+
+        if (!Files.isDirectory(targetDir)) {
+            System.err.println("ERROR: Not a directory: " + targetDir);
+            System.exit(1);
+        }
+
+        System.out.println("=== ImageNearDuplicateApp ===");
+        System.out.printf("Directory  : %s%n", targetDir.toAbsolutePath());
+        System.out.printf("Recursive  : %s%n", recursive);
+        System.out.printf("Radius     : %d%n", radius);
+        System.out.printf("Cache      : %s%n%n", cacheFile);
+
+        List<File> images = listImages(targetDir, recursive);
+        System.out.println("Found " + images.size() + " image(s)");
+
+        PerceptualHashCache cache = PerceptualHashCache.load(cacheFile);
+        Map<File, Long> hashes = cache.hashes(images, threads);
+        cache.save();
+
+        long start = System.nanoTime();
+        List<List<File>> clusters = cluster(images, hashes, radius);
+        System.out.println(String.format("Clustered in %.1f ms%n", (System.nanoTime() - start) / 1e6));
+
+        if (clusters.isEmpty()) {
+            System.out.println("No near duplicates found.");
+            return;
+        }
+
+        int files = 0;
+        for (List<File> cluster : clusters) {
+            System.out.println("Cluster of " + cluster.size() + ":");
+            for (File file : cluster) {
+                System.out.printf("  %016x  %s%n", hashes.get(file), file);
+            }
+            files += cluster.size();
+        }
+        System.out.println();
+        System.out.printf("Done. %d cluster(s), %d file(s).%n", clusters.size(), files);
+    }
+
+    /**
+     * Groups files whose hashes are within {@code radius} of each other,
+     * directly or through a chain of neighbours. Returns clusters of two or
+     * more, largest first.
+     */
+    static List<List<File>> cluster(List<File> files, Map<File, Long> hashes, int radius) {
+        // Identical hashes share one tree node
+        Map<Long, List<File>> byHash = new LinkedHashMap<>();
+        for (File file : files) {
+            Long hash = hashes.get(file);
+            if (hash != null) byHash.computeIfAbsent(hash, k -> new ArrayList<>()).add(file);
+        }
+        long[] distinct = new long[byHash.size()];
+        List<List<File>> members = new ArrayList<>(byHash.values());
+        int n = 0;
+        for (long hash : byHash.keySet()) distinct[n++] = hash;
+
+        BkTree tree = new BkTree();
+        for (int i = 0; i < distinct.length; i++) tree.add(distinct[i], i);
+
+        // The tree is read-only now, so the queries can run in parallel
+        int[][] neighbours = new int[distinct.length][];
+        IntStream.range(0, distinct.length).parallel().forEach(i -> {
+            List<Integer> found = new ArrayList<>();
+            tree.query(distinct[i], radius, id -> { if (id > i) found.add(id); });
+            neighbours[i] = found.stream().mapToInt(Integer::intValue).toArray();
+        });
+
+        int[] parent = new int[distinct.length];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+        for (int i = 0; i < distinct.length; i++) {
+            for (int j : neighbours[i]) union(parent, i, j);
+        }
+
+        Map<Integer, List<File>> byRoot = new LinkedHashMap<>();
+        for (int i = 0; i < distinct.length; i++) {
+            byRoot.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).addAll(members.get(i));
+        }
+        List<List<File>> clusters = new ArrayList<>();
+        for (List<File> cluster : byRoot.values()) {
+            if (cluster.size() > 1) clusters.add(cluster);
+        }
+        clusters.sort(Comparator.comparingInt((List<File> c) -> c.size()).reversed());
+        return clusters;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a), rb = find(parent, b);
+        if (ra != rb) parent[Math.max(ra, rb)] = Math.min(ra, rb);
+    }
+
+    private static List<File> listImages(Path dir, boolean recursive) throws IOException {
+        List<File> images = new ArrayList<>();
+        if (recursive) {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (isImage(file)) images.add(file.toFile());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    System.err.println("Could not access: " + file + " — " + exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } else {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path entry : stream) {
+                    if (Files.isRegularFile(entry) && isImage(entry)) images.add(entry.toFile());
+                }
+            }
+        }
+        return images;
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && IMAGE_EXTENSIONS.contains(name.substring(dot).toLowerCase());
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) if (arg.equalsIgnoreCase(flag)) return true;
+        return false;
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
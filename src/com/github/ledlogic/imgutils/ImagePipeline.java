@@ -0,0 +1,245 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * ImagePipeline - one decode, a chain of operations, one encode
+ *
+ * Steps are either per-pixel operators ({@link PixelOp}: a function of one
+ * ARGB value, such as grayscale or recolor) or whole-image stages
+ * ({@link Stage}: resize, crop, circle cut-out). Adjacent pixel operators
+ * are fused as they are added, so "gray, recolor" is a single pass over the
+ * raster that applies both to each pixel while it is in a register, rather
+ * than two walks over the whole image.
+ *
+ * Pixel passes run in place on the int[] behind a TYPE_INT_ARGB raster,
+ * without getRGB/setRGB. The image is converted to that type at most once,
+ * before the first pass.
+ *
+ * WebP and HEIC inputs are decoded by dwebp / magick writing PNG to a pipe,
+ * so nothing is written to disk between steps.
+ *
+ * Usage:
+ *   ImagePipeline p = new ImagePipeline().grayscale().recolorBlack(0xFF0000).resize(0.5f);
+ *   p.run(inFile, outFile);     // format from the output extension
+ *   System.out.println(p);      // e.g. "[gray+recolor:FF0000] -> resize:0.5"
+ */
+public class ImagePipeline {
+
+    /**
+     * A per-pixel operator on packed ARGB values
+     */
+    public interface PixelOp {
+        int apply(int argb);
+
+        default PixelOp andThen(PixelOp next) {
+            return argb -> next.apply(apply(argb));
+        }
+    }
+
+    /**
+     * A whole-image step, which may return a new image or modify its input
+     */
+    public interface Stage {
+        BufferedImage apply(BufferedImage img) throws IOException;
+    }
+
+    /** A run of fused pixel operators */
+    private static final class PixelPass implements Stage {
+        PixelOp op;
+        final List<String> names = new ArrayList<>();
+
+        @Override
+        public BufferedImage apply(BufferedImage img) {
+            BufferedImage argb = toIntArgb(img);
+            int[] px = ((DataBufferInt) argb.getRaster().getDataBuffer()).getData();
+            PixelOp f = op;
+            for (int i = 0; i < px.length; i++) {
+                px[i] = f.apply(px[i]);
+            }
+            return argb;
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    // ── building ──
+
+    /**
+     * Adds a per-pixel operator, fusing it into the previous step when that
+     * is also a pixel pass
+     */
+    public ImagePipeline pixel(String name, PixelOp op) {
+        Stage last = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+        if (last instanceof PixelPass) {
+            PixelPass pass = (PixelPass) last;
+            pass.op = pass.op.andThen(op);
+            pass.names.add(name);
+            names.set(names.size() - 1, "[" + String.join("+", pass.names) + "]");
+        } else {
+            PixelPass pass = new PixelPass();
+            pass.op = op;
+            pass.names.add(name);
+            stages.add(pass);
+            names.add("[" + name + "]");
+        }
+        return this;
+    }
+
+    /**
+     * Adds a whole-image stage
+     */
+    public ImagePipeline stage(String name, Stage stage) {
+        stages.add(stage);
+        names.add(name);
+        return this;
+    }
+
+    /** r, g, b averaged (GrayScalerService) */
+    public ImagePipeline grayscale() {
+        return pixel("gray", GrayScalerService::gray);
+    }
+
+    /** Near-black pixels painted {@code rgb}, alpha kept (ImageColorApp) */
+    public ImagePipeline recolorBlack(int rgb) {
+        int color = rgb & 0xFFFFFF;
+        return pixel(String.format("recolor:%06X", color),
+            argb -> ImageColorApp.isNearBlack(argb) ? (argb & 0xFF000000) | color : argb);
+    }
+
+    /** Area-averaged scale by {@code factor} (ResizerService) */
+    public ImagePipeline resize(float factor) {
+        return stage("resize:" + factor, img -> ResizerService.scale(img, factor,
+            img.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB));
+    }
+
+    /** The rectangle x, y, w, h, clipped to the image */
+    public ImagePipeline crop(int x, int y, int w, int h) {
+        return stage("crop:" + x + "," + y + "," + w + "," + h, img -> {
+            int cx = Math.max(0, Math.min(x, img.getWidth() - 1));
+            int cy = Math.max(0, Math.min(y, img.getHeight() - 1));
+            int cw = Math.max(1, Math.min(w, img.getWidth() - cx));
+            int ch = Math.max(1, Math.min(h, img.getHeight() - cy));
+            return img.getSubimage(cx, cy, cw, ch);
+        });
+    }
+
+    /** The detected planet disc, transparent outside (ImageCircleCutter) */
+    public ImagePipeline circle() {
+        return stage("circle", img -> {
+            ImageCircleCutter.Circle c = ImageCircleCutter.detectCircle(img);
+            return ImageCircleCutter.createCircularMask(img, c);
+        });
+    }
+
+    /** Number of passes the chain makes over the image */
+    public int passes() {
+        return stages.size();
+    }
+
+    // ── running ──
+
+    /**
+     * Runs every step on {@code img}; pixel passes may modify it in place
+     */
+    public BufferedImage apply(BufferedImage img) throws IOException {
+        for (Stage stage : stages) {
+            img = stage.apply(img);
+        }
+        return img;
+    }
+
+    /**
+     * Decodes {@code in}, runs the chain and encodes to {@code out}, in the
+     * format of its extension (png or jpg).
+     */
+    public void run(File in, File out) throws IOException {
+        String format = Metrics.format(in.getName());
+        long t = System.nanoTime();
+        BufferedImage img = decode(in);
+        t = Metrics.stage(Metrics.DECODE, format, t);
+        img = apply(img);
+        t = Metrics.stage(Metrics.TRANSFORM, format, t);
+        encode(img, out);
+        Metrics.stage(Metrics.ENCODE, Metrics.format(out.getName()), t);
+        Metrics.file(format, true);
+    }
+
+    /**
+     * Reads any ImageIO format, plus WebP (dwebp) and HEIC (magick) through
+     * a pipe.
+     */
+    public static BufferedImage decode(File in) throws IOException {
+        String lower = in.getName().toLowerCase(Locale.ROOT);
+        BufferedImage img;
+        if (lower.endsWith(".webp")) {
+            img = decodeExternal(in, "dwebp", in.getPath(), "-o", "-");
+        } else if (lower.endsWith(".heic") || lower.endsWith(".heif")) {
+            img = decodeExternal(in, "magick", in.getPath(), "png:-");
+        } else {
+            img = ImageIO.read(in);
+        }
+        if (img == null) throw new IOException("Unreadable image: " + in);
+        return img;
+    }
+
+    private static BufferedImage decodeExternal(File in, String... cmd) throws IOException {
+        Process proc = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        BufferedImage img;
+        try (InputStream png = proc.getInputStream()) {
+            img = ImageIO.read(png);
+            png.transferTo(OutputStream.nullOutputStream());  // let the tool finish writing
+        }
+        try {
+            int exit = proc.waitFor();
+            if (exit != 0) throw new IOException(cmd[0] + " exited with " + exit + " for " + in);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding " + in, e);
+        }
+        return img;
+    }
+
+    /**
+     * Writes {@code img} as PNG, or as JPEG (quality 90, alpha flattened
+     * over white) for .jpg / .jpeg.
+     */
+    public static void encode(BufferedImage img, File out) throws IOException {
+        String lower = out.getName().toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            SliceViewerApp.writeJpeg(img, out.toPath(), 0.90f, Color.WHITE);
+            return;
+        }
+        File parent = out.getAbsoluteFile().getParentFile();
+        if (parent != null) Files.createDirectories(parent.toPath());
+        if (!ImageIO.write(img, "png", out)) throw new IOException("No PNG writer for " + out);
+    }
+
+    static BufferedImage toIntArgb(BufferedImage img) {
+        if (img.getType() == BufferedImage.TYPE_INT_ARGB) return img;
+        BufferedImage dst = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = dst.createGraphics();
+        g.drawImage(img, 0, 0, null);
+        g.dispose();
+        return dst;
+    }
+
+    @Override
+    public String toString() {
+        return names.isEmpty() ? "(no steps)" : String.join(" -> ", names);
+    }
+}
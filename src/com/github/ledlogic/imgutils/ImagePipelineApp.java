@@ -0,0 +1,224 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.ledlogic.imgutils.FileDiscoveryService.Format;
+
+/**
+ * ImagePipelineApp - runs a chain of image operations with one decode and
+ * one encode per file
+ *
+ * Replaces running WebpConverterApp, GrayscalerApp, ResizerApp and
+ * ImageColorApp one after another, each of which reads and writes the
+ * whole image. Adjacent per-pixel steps (gray, recolor) share a single pass
+ * over the pixels; see ImagePipeline.
+ *
+ * Steps, comma-separated and applied in order:
+ *   gray              average r, g, b
+ *   recolor:RRGGBB    paint near-black pixels the given color
+ *   resize:F          scale by F (e.g. 0.5, 4)
+ *   crop:X;Y;W;H      keep a rectangle (';' because ',' separates steps)
+ *   circle            cut out the detected planet disc
+ *
+ * Inputs are png, jpg, webp or heic files, or folders of them. Originals
+ * are never deleted or overwritten: --out may not be the input folder, and
+ * inputs that share a stem (a.png, a.jpg) get numbered outputs (a.png,
+ * a-2.png) instead of replacing each other's.
+ *
+ * Usage:
+ *   java ImagePipelineApp <file|dir> --steps STEPS [--out DIR] [--format png|jpg] [--threads N]
+ *
+ * Example:
+ *   java ImagePipelineApp "G:\My Drive\Games\npc-images" --steps gray,recolor:3A7BD5,resize:0.5
+ *     -> G:\My Drive\Games\npc-images\pipeline\*.png
+ */
+public class ImagePipelineApp {
+
+    public static void main(String[] args) throws Exception {
+        args = Metrics.init("ImagePipelineApp", args);
+        // ── Argument handling ──────────────────────────────────────────────
+        String steps = flagValue(args, "--steps", null);
+        if (args.length < 1 || args[0].startsWith("--") || steps == null) {
+            System.err.println("Usage: java ImagePipelineApp <file|dir> --steps STEPS [--out DIR] [--format png|jpg] [--threads N]");
+            System.err.println("  steps: gray, recolor:RRGGBB, resize:F, crop:X;Y;W;H, circle");
+            System.exit(1);
+        }
+
+        File input = new File(args[0]);
+        if (!input.exists()) {
+            System.err.println("Error: path not found: " + args[0]);
+            System.exit(1);
+        }
+        String format = flagValue(args, "--format", "png").toLowerCase(Locale.ROOT);
+        if (!format.equals("png") && !format.equals("jpg")) {
+            System.err.println("Error: --format must be png or jpg");
+            System.exit(1);
+        }
+        int threads = Integer.parseInt(flagValue(args, "--threads",
+                          String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        ImagePipeline pipeline;
+        try {
+            pipeline = parseSteps(steps);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        List<File> files = new ArrayList<>();
+        File defaultOut;
+        if (input.isDirectory()) {
+            files.addAll(FileDiscoveryService.files(input, Format.PNG, Format.JPEG, Format.WEBP, Format.HEIC));
+            defaultOut = new File(input, "pipeline");
+        } else {
+            files.add(input);
+            defaultOut = input.getAbsoluteFile().getParentFile();
+        }
+        File outDir = new File(flagValue(args, "--out", defaultOut.getPath()));
+        if (input.isDirectory() && outDir.getCanonicalFile().equals(input.getCanonicalFile())) {
+            System.err.println("Error: --out must not be the input folder; the outputs would replace the originals");
+            System.exit(1);
+        }
+        boolean sameDir = outDir.getAbsoluteFile().equals(input.getAbsoluteFile().getParentFile());
+        // never overwrite a single-file input in its own folder
+        String suffix = sameDir && !input.isDirectory() ? "-out" : "";
+        Map<File, File> outputs = outputs(files, outDir, suffix, format);
+
+        System.out.println("Pipeline: " + pipeline + " (" + pipeline.passes() + " pass(es) per image)");
+        System.out.println("Processing " + files.size() + " file(s) -> " + outDir.getPath());
+
+        // ── Run ────────────────────────────────────────────────────────────
+        long start = System.nanoTime();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (File file : files) {
+                File out = outputs.get(file);
+                futures.add(pool.submit(() -> {
+                    try {
+                        long t0 = System.nanoTime();
+                        pipeline.run(file, out);
+                        done.incrementAndGet();
+                        System.out.printf("  %-30s -> %s (%d ms)%n", file.getName(), out.getName(),
+                            (System.nanoTime() - t0) / 1_000_000);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        System.err.println("  FAILED: " + file.getName() + " (" + e.getMessage() + ")");
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    System.err.println("Unexpected error: " + e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.printf("%nDone. %d file(s) in %.2f s, %d failed.%n",
+            done.get(), (System.nanoTime() - start) / 1e9, failed.get());
+    }
+
+    /**
+     * Picks an output file in {@code outDir} for each input, named after its
+     * stem. A name already taken by an earlier input, or by an input that
+     * lives in {@code outDir}, gets a counter (a-2.png, a-3.png). Names are
+     * compared case-insensitively, as on Windows and macOS.
+     */
+    static Map<File, File> outputs(List<File> files, File outDir, String suffix, String format) throws IOException {
+        File dir = outDir.getCanonicalFile();
+        Set<String> used = new HashSet<>();
+        for (File file : files) {
+            if (dir.equals(file.getCanonicalFile().getParentFile())) used.add(file.getName().toLowerCase(Locale.ROOT));
+        }
+        Map<File, File> outputs = new LinkedHashMap<>();
+        for (File file : files) {
+            String base = stem(file.getName()) + suffix;
+            String name = base + "." + format;
+            for (int n = 2; !used.add(name.toLowerCase(Locale.ROOT)); n++) {
+                name = base + "-" + n + "." + format;
+            }
+            outputs.put(file, new File(outDir, name));
+        }
+        return outputs;
+    }
+
+    static ImagePipeline parseSteps(String steps) {
+        ImagePipeline pipeline = new ImagePipeline();
+        for (String step : steps.split(",")) {
+            String s = step.trim();
+            if (s.isEmpty()) continue;
+            String name = s.contains(":") ? s.substring(0, s.indexOf(':')) : s;
+            String arg = s.contains(":") ? s.substring(s.indexOf(':') + 1) : "";
+            switch (name.toLowerCase(Locale.ROOT)) {
+                case "gray":
+                case "grayscale":
+                    pipeline.grayscale();
+                    break;
+                case "recolor":
+                    String hex = arg.replaceFirst("^#", "");
+                    if (!hex.matches("[0-9A-Fa-f]{6}")) throw new IllegalArgumentException("recolor needs 6 hex digits: " + s);
+                    pipeline.recolorBlack(Integer.parseInt(hex, 16));
+                    break;
+                case "resize":
+                    try {
+                        float factor = Float.parseFloat(arg);
+                        if (!(factor > 0)) throw new NumberFormatException();
+                        pipeline.resize(factor);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("resize needs a positive factor: " + s);
+                    }
+                    break;
+                case "crop":
+                    String[] r = arg.split(";");
+                    if (r.length != 4) throw new IllegalArgumentException("crop needs X;Y;W;H: " + s);
+                    try {
+                        pipeline.crop(Integer.parseInt(r[0].trim()), Integer.parseInt(r[1].trim()),
+                                      Integer.parseInt(r[2].trim()), Integer.parseInt(r[3].trim()));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("crop needs integers X;Y;W;H: " + s);
+                    }
+                    break;
+                case "circle":
+                    pipeline.circle();
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown step: " + s);
+            }
+        }
+        if (pipeline.passes() == 0) throw new IllegalArgumentException("no steps given");
+        return pipeline;
+    }
+
+    private static String stem(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
@@ -1,7 +1,13 @@
 package com.github.ledlogic.imgutils;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -11,7 +17,13 @@ import java.util.regex.Pattern;
  *   1. Removes the given prefix from all matching filenames.
  *   2. Renames any PDF files matching "MonthYY.pdf" or "MonthYYYY.pdf" to "YYYY-MM.pdf".
  *
- * Usage: ImagePrefixRemoverAndDateOrdererApp <folder> <prefix>
+ * Both passes are planned by RenameEngine from one listing per folder, so
+ * renames whose targets are freed by other renames (chains and swaps) are
+ * ordered rather than skipped. Every move is recorded in a journal in the
+ * folder (rename-journal-<timestamp>.tsv) that --undo replays backwards.
+ *
+ * Usage: ImagePrefixRemoverAndDateOrdererApp <folder> <prefix> [--recursive] [--dry-run] [--threads N]
+ *        ImagePrefixRemoverAndDateOrdererApp --undo <journal>
  */
 public class ImagePrefixRemoverAndDateOrdererApp {
 
@@ -47,131 +59,122 @@ public class ImagePrefixRemoverAndDateOrdererApp {
     private static final Pattern MONTH_YEAR_PATTERN =
         Pattern.compile("^([A-Za-z]+)(\\d{2}|\\d{4})\\.pdf$", Pattern.CASE_INSENSITIVE);
 
-    public static void main(String[] args) {
-        if (args.length != 2) {
-            System.err.println("Usage: ImagePrefixRemoverAndDateOrdererApp <folder> <prefix>");
+    public static void main(String[] args) throws IOException, InterruptedException {
+        args = Metrics.init("ImagePrefixRemoverAndDateOrdererApp", args);
+        int threads = Integer.parseInt(flagValue(args, "--threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        if (args.length >= 2 && args[0].equals("--undo")) {
+            RenameEngine.undo(Paths.get(args[1]), threads);
+            return;
+        }
+
+        if (args.length < 2 || args[0].startsWith("--") || args[1].startsWith("--")) {
+            System.err.println("Usage: ImagePrefixRemoverAndDateOrdererApp <folder> <prefix> [--recursive] [--dry-run] [--threads N]");
+            System.err.println("       ImagePrefixRemoverAndDateOrdererApp --undo <journal>");
             System.exit(1);
         }
 
         String folderPath = args[0];
         String prefix     = args[1];
+        boolean recursive = hasFlag(args, "--recursive");
+        boolean dryRun    = hasFlag(args, "--dry-run");
 
-        File folder = new File(folderPath);
-        if (!folder.exists() || !folder.isDirectory()) {
+        Path folder = Paths.get(folderPath);
+        if (!Files.isDirectory(folder)) {
             System.err.println("Error: Not a valid directory: " + folderPath);
             System.exit(1);
         }
 
         System.out.println("=== Pass 1: Remove prefix \"" + prefix + "\" ===");
-        removePrefixes(folder, prefix);
+        System.out.println("=== Pass 2: Rename month-year PDFs to YYYY-MM.pdf ===");
 
-        System.out.println("\n=== Pass 2: Rename month-year PDFs to YYYY-MM.pdf ===");
-        renameMonthYear(folder);
-    }
+        // Both passes are planned together from one listing per directory
+        RenameEngine engine = new RenameEngine(name -> renameMonthYear(removePrefix(name, prefix)), threads);
+        Map<Path, List<RenameEngine.Step>> plan = engine.plan(folder, recursive);
 
-    private static void removePrefixes(File folder, String prefix) {
-        File[] files = folder.listFiles(f -> f.isFile() && f.getName().startsWith(prefix));
+        int moves = 0;
+        for (List<RenameEngine.Step> steps : plan.values()) moves += steps.size();
+        System.out.println("Planned " + moves + " move(s) in " + plan.size() + " folder(s)");
 
-        if (files == null || files.length == 0) {
-            System.out.println("No files found with prefix \"" + prefix + "\".");
+        if (dryRun) {
+            for (Map.Entry<Path, List<RenameEngine.Step>> e : plan.entrySet()) {
+                for (RenameEngine.Step step : e.getValue()) {
+                    System.out.println("Would rename: " + e.getKey().resolve(step.from) + " -> " + step.to);
+                }
+            }
             return;
         }
-
-        int renamed = 0, skipped = 0, failed = 0;
-
-        for (File file : files) {
-            String oldName = file.getName();
-            String newName = oldName.substring(prefix.length());
-
-            if (newName.isEmpty()) {
-                System.err.println("Skipping \"" + oldName + "\": result would be an empty filename.");
-                skipped++;
-                continue;
-            }
-
-            File newFile = new File(folder, newName);
-            if (newFile.exists()) {
-                System.err.println("Skipping \"" + oldName + "\": target \"" + newName + "\" already exists.");
-                skipped++;
-                continue;
-            }
-
-            if (file.renameTo(newFile)) {
-                System.out.println("Renamed: " + oldName + " -> " + newName);
-                renamed++;
-            } else {
-                System.err.println("Failed to rename: " + oldName);
-                failed++;
-            }
+        if (plan.isEmpty()) {
+            engine.printSummary();
+            return;
         }
 
-        printSummary(renamed, skipped, failed);
+        Path journal = folder.resolve("rename-journal-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".tsv");
+        engine.apply(plan, journal);
+        engine.printSummary();
+        System.out.println("Undo with: ImagePrefixRemoverAndDateOrdererApp --undo \"" + journal.toAbsolutePath() + "\"");
     }
 
-    private static void renameMonthYear(File folder) {
-        File[] files = folder.listFiles(f -> f.isFile()
-                && f.getName().toLowerCase().endsWith(".pdf"));
-
-        if (files == null || files.length == 0) {
-            System.out.println("No PDF files found.");
-            return;
+    /**
+     * Pass 1: the name without {@code prefix}, or the name unchanged if it
+     * does not start with it or nothing would be left.
+     */
+    static String removePrefix(String name, String prefix) {
+        if (!name.startsWith(prefix)) return name;
+
+        String newName = name.substring(prefix.length());
+        if (newName.isEmpty()) {
+            System.err.println("Skipping \"" + name + "\": result would be an empty filename.");
+            return name;
         }
+        return newName;
+    }
 
-        int renamed = 0, skipped = 0, failed = 0;
-
-        for (File file : files) {
-            String name = file.getName();
-            Matcher m = MONTH_YEAR_PATTERN.matcher(name);
-
-            if (!m.matches()) {
-                System.out.println("Skipping (no match): " + name);
-                skipped++;
-                continue;
-            }
-
-            String monthToken = m.group(1).toLowerCase();
-            String yearToken  = m.group(2);
-
-            String month = MONTH_MAP.get(monthToken);
-            if (month == null) {
-                System.out.println("Skipping (unknown month \"" + m.group(1) + "\"): " + name);
-                skipped++;
-                continue;
-            }
-
-            // Expand 2-digit year: 00-29 -> 2000s, 30-99 -> 1900s
-            String year;
-            if (yearToken.length() == 2) {
-                int y = Integer.parseInt(yearToken);
-                year = (y <= 29 ? "20" : "19") + yearToken;
-            } else {
-                year = yearToken;
-            }
+    /**
+     * Pass 2: "MonthYY.pdf" or "MonthYYYY.pdf" as "YYYY-MM.pdf"; any other
+     * name unchanged.
+     */
+    static String renameMonthYear(String name) {
+        if (!name.toLowerCase().endsWith(".pdf")) return name;
+
+        Matcher m = MONTH_YEAR_PATTERN.matcher(name);
+        if (!m.matches()) {
+            System.out.println("Skipping (no match): " + name);
+            return name;
+        }
 
-            String newName = year + "-" + month + ".pdf";
-            File newFile = new File(folder, newName);
+        String monthToken = m.group(1).toLowerCase();
+        String yearToken  = m.group(2);
 
-            if (newFile.exists()) {
-                System.err.println("Skipping \"" + name + "\": target \"" + newName + "\" already exists.");
-                skipped++;
-                continue;
-            }
+        String month = MONTH_MAP.get(monthToken);
+        if (month == null) {
+            System.out.println("Skipping (unknown month \"" + m.group(1) + "\"): " + name);
+            return name;
+        }
 
-            if (file.renameTo(newFile)) {
-                System.out.println("Renamed: " + name + " -> " + newName);
-                renamed++;
-            } else {
-                System.err.println("Failed to rename: " + name);
-                failed++;
-            }
+        // Expand 2-digit year: 00-29 -> 2000s, 30-99 -> 1900s
+        String year;
+        if (yearToken.length() == 2) {
+            int y = Integer.parseInt(yearToken);
+            year = (y <= 29 ? "20" : "19") + yearToken;
+        } else {
+            year = yearToken;
         }
 
-        printSummary(renamed, skipped, failed);
+        return year + "-" + month + ".pdf";
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) if (arg.equalsIgnoreCase(flag)) return true;
+        return false;
     }
 
-    private static void printSummary(int renamed, int skipped, int failed) {
-        System.out.println("Done. Renamed: " + renamed
-                + ", Skipped: " + skipped
-                + ", Failed: " + failed);
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
     }
-}
\ No newline at end of file
+}
@@ -1,22 +1,31 @@
 package com.github.ledlogic.imgutils;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 
 /**
@@ -25,13 +34,34 @@ import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
  * This class handles:
  * 1. Splitting a wide panoramic image into multiple 8.5-inch wide segments
  * 2. Creating a PDF document with one slice per page for printing
+ * 
+ * splitToPDF does both in one pass: each slice is encoded once in memory and
+ * embedded directly, optionally also writing the same bytes as a slice file.
  */
 public class ImageSplitter {
     
     private static final double DEFAULT_IMAGE_WIDTH_INCHES = 71.111;
     private static final double SEGMENT_WIDTH_INCHES = 7.5;
     
+    // Keep the -slice-NN.jpg files beside the PDF
+    private static final boolean WRITE_SLICE_FILES = true;
+    // Embed slices losslessly (Flate) instead of as maximum-quality JPEG
+    private static final boolean LOSSLESS = false;
+    
+    // Use portrait letter size (8.5" x 11" at 72 DPI) with 0.5 inch margins
+    private static final PDRectangle PAGE_SIZE = new PDRectangle(612, 792);
+    private static final float PAGE_MARGIN = 36;
+    
+    // Mapped tiles of the decoded source kept resident (page cache, not heap)
+    private static final long TILE_CACHE_BYTES = 64L << 20;
+    
+    // Keep embedded images in a PDFBox temp file rather than in heap
+    private static final boolean STREAMING_PDF = true;
+    // Save every N pages to a part file and merge at the end (0 = save once)
+    private static final int PAGES_PER_PART = 0;
+    
     public static void main(String[] args) {
+        args = Metrics.init("ImageSplitter", args);
         try {
             // Input file path
             String inputPath = "G:\\My Drive\\Games\\BGC\\2026\\architecture\\stone-arch-crop.jpg";
@@ -42,25 +72,23 @@ public class ImageSplitter {
                 return;
             }
             
-            // Step 1: Split the image into slices
-            System.out.println("=== Step 1: Splitting Image ===");
-            List<File> sliceFiles = splitImage(inputFile, DEFAULT_IMAGE_WIDTH_INCHES, SEGMENT_WIDTH_INCHES);
-            
-            if (sliceFiles.isEmpty()) {
-                System.err.println("No slices were created!");
-                return;
-            }
-            
-            System.out.println("\n=== Step 2: Creating PDF ===");
-            // Step 2: Create PDF from slices
             String inputDir = inputFile.getParent();
             String baseFileName = inputFile.getName().substring(0, inputFile.getName().lastIndexOf('.'));
             String outputPdf = inputDir + File.separator + baseFileName + "-slices.pdf";
             
-            createPDF(sliceFiles, outputPdf);
+            // Split the image and embed each slice as it is encoded
+            System.out.println("=== Splitting Image to PDF ===");
+            int slices = splitToPDF(inputFile, DEFAULT_IMAGE_WIDTH_INCHES, SEGMENT_WIDTH_INCHES,
+                outputPdf, WRITE_SLICE_FILES, LOSSLESS, Runtime.getRuntime().availableProcessors());
+            
+            if (slices == 0) {
+                System.err.println("No slices were created!");
+                return;
+            }
             
             System.out.println("\n=== Complete ===");
-            System.out.println("Created " + sliceFiles.size() + " slice images");
+            System.out.println("Created " + slices + " slices"
+                + (WRITE_SLICE_FILES ? " (slice images written)" : ""));
             System.out.println("Created PDF: " + outputPdf);
             
         } catch (IOException e) {
@@ -70,7 +98,8 @@ public class ImageSplitter {
     }
     
     /**
-     * Split an image into segments of specified width in inches
+     * Split an image into segments of specified width in inches, using one
+     * worker thread per available processor
      * 
      * @param inputFile The image file to split
      * @param widthInches Total width of the image in inches
@@ -78,15 +107,220 @@ public class ImageSplitter {
      * @return List of created slice files
      * @throws IOException If there's an error reading or writing files
      */
-    public static List<File> splitImage(File inputFile, double widthInches, double segmentWidthInches) 
+    public static List<File> splitImage(File inputFile, double widthInches, double segmentWidthInches)
             throws IOException {
+        return splitImage(inputFile, widthInches, segmentWidthInches,
+            Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Split an image into segments of specified width in inches
+     * 
+     * The source is decoded once, in one sequential pass, into a temporary
+     * memory-mapped tile store (see {@link #importSource}); each segment is
+     * then copied out of the store and encoded on a worker thread. The
+     * decoded panorama is never on the heap, so peak memory is about
+     * {@code threads} slices however wide the source is.
+     * 
+     * @param inputFile The image file to split
+     * @param widthInches Total width of the image in inches
+     * @param segmentWidthInches Width of each segment in inches
+     * @param threads Number of slices decoded and encoded concurrently
+     * @return List of created slice files, in slice order
+     * @throws IOException If there's an error reading or writing files
+     */
+    public static List<File> splitImage(File inputFile, double widthInches, double segmentWidthInches,
+            int threads) throws IOException {
         
-        List<File> sliceFiles = new ArrayList<>();
+        TiledImage source = importSource(inputFile);
+        try {
+            List<Rectangle> segments = planSegments(source.width(), source.height(), widthInches, segmentWidthInches);
+            double actualDPI = segments.isEmpty() ? 0 : sourceDPI(segments, widthInches);
+            
+            // Copy out, encode and save each segment on the worker pool
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize(threads, segments.size()));
+            List<Future<File>> futures = new ArrayList<>();
+            
+            for (int i = 0; i < segments.size(); i++) {
+                Rectangle region = segments.get(i);
+                File outputFile = sliceFile(inputFile, i, "jpg");
+                
+                futures.add(pool.submit(() -> {
+                    StageEvent transform = StageEvent.start(Metrics.TRANSFORM, inputFile.getPath(), 
+                        Metrics.format(inputFile.getName()));
+                    BufferedImage segment = source.toBufferedImage(region);
+                    transform.image(segment).finish();
+                    
+                    // Save with lossless JPEG (maximum quality)
+                    StageEvent encode = StageEvent.start(Metrics.ENCODE, outputFile.getPath(), "jpg");
+                    saveJPEGWithMaxQuality(segment, outputFile);
+                    encode.image(segment).bytes(outputFile.length()).finish();
+                    Metrics.bytesWritten("jpg", outputFile.length());
+                    
+                    printSaved(outputFile, region.width, actualDPI);
+                    return outputFile;
+                }));
+            }
+            
+            pool.shutdown();
+            List<File> slices = awaitAll(futures);
+            Metrics.file(Metrics.format(inputFile.getName()), true);
+            return slices;
+        } finally {
+            closeSource(source);
+        }
+    }
+    
+    /**
+     * Split an image and write the slices straight into a PDF, one per page,
+     * using the default PDF assembly settings
+     * 
+     * @param inputFile The image file to split
+     * @param widthInches Total width of the image in inches
+     * @param segmentWidthInches Width of each segment in inches
+     * @param outputPath Path where the PDF should be saved
+     * @param writeSliceFiles Also write each encoded slice beside the input
+     * @param lossless Embed Flate-compressed pixels instead of JPEG
+     * @param threads Number of slices decoded and encoded concurrently
+     * @return Number of slices (pages) written
+     * @throws IOException If there's an error reading the image or writing the PDF
+     */
+    public static int splitToPDF(File inputFile, double widthInches, double segmentWidthInches,
+            String outputPath, boolean writeSliceFiles, boolean lossless, int threads) throws IOException {
+        return splitToPDF(inputFile, widthInches, segmentWidthInches, outputPath, writeSliceFiles,
+            lossless, threads, STREAMING_PDF, PAGES_PER_PART);
+    }
+    
+    /**
+     * Split an image and write the slices straight into a PDF, one per page
+     * 
+     * The source is decoded once into a temporary tile store (see
+     * {@link #importSource}), and each slice is copied out of it and encoded
+     * exactly once, in memory, on a worker thread. JPEG slices are embedded
+     * as-is with JPEGFactory (no re-encode); lossless slices go through
+     * LosslessFactory. Only page assembly runs on the calling thread, in
+     * slice order.
+     * 
+     * At most two slices per worker are in flight at once, so with streaming
+     * assembly the heap stays proportional to one slice per worker, however
+     * wide the source is and however many pages the PDF has.
+     * 
+     * @param inputFile The image file to split
+     * @param widthInches Total width of the image in inches
+     * @param segmentWidthInches Width of each segment in inches
+     * @param outputPath Path where the PDF should be saved
+     * @param writeSliceFiles Also write each encoded slice beside the input
+     * @param lossless Embed Flate-compressed pixels instead of JPEG
+     * @param threads Number of slices decoded and encoded concurrently
+     * @param streaming Keep embedded images in a temp file instead of heap
+     * @param pagesPerPart Write pages incrementally in parts of this size (0 = off)
+     * @return Number of slices (pages) written
+     * @throws IOException If there's an error reading the image or writing the PDF
+     */
+    public static int splitToPDF(File inputFile, double widthInches, double segmentWidthInches,
+            String outputPath, boolean writeSliceFiles, boolean lossless, int threads,
+            boolean streaming, int pagesPerPart) throws IOException {
         
-        // Read the image
-        BufferedImage sourceImage = ImageIO.read(inputFile);
-        int fullWidth = sourceImage.getWidth();
-        int fullHeight = sourceImage.getHeight();
+        TiledImage source = importSource(inputFile);
+        try {
+            List<Rectangle> segments = planSegments(source.width(), source.height(), widthInches, segmentWidthInches);
+            if (segments.isEmpty()) {
+                return 0;
+            }
+            double actualDPI = sourceDPI(segments, widthInches);
+            
+            // Encode segments on the worker pool, a bounded window ahead of assembly
+            int poolSize = poolSize(threads, segments.size());
+            int window = poolSize * 2;
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+            List<Future<EncodedSlice>> futures = new ArrayList<>();
+            
+            try (StreamingPdfAssembler assembler = 
+                    new StreamingPdfAssembler(outputPath, streaming, pagesPerPart)) {
+                for (int i = 0; i < segments.size(); i++) {
+                    while (futures.size() < segments.size() && futures.size() < i + window) {
+                        int index = futures.size();
+                        futures.add(pool.submit(() -> encodeSlice(source, segments.get(index), 
+                            sliceFile(inputFile, index, lossless ? "png" : "jpg"), 
+                            writeSliceFiles, lossless, actualDPI)));
+                    }
+                
+                    // Assemble pages serially, in order, as slices complete
+                    EncodedSlice slice = await(futures.get(i));
+                    futures.set(i, null); // let the slice go once embedded
+                
+                    // JPEG slices are embedded as-is; lossless ones are compressed here
+                    long t = System.nanoTime();
+                    assembler.addImagePage(document -> slice.jpeg != null
+                        ? JPEGFactory.createFromByteArray(document, slice.jpeg)
+                        : LosslessFactory.createFromImage(document, slice.image), 
+                        PAGE_SIZE, PAGE_MARGIN);
+                    Metrics.stage(slice.jpeg != null ? Metrics.WRITE : Metrics.ENCODE, "pdf", t);
+                }
+            
+                long t = System.nanoTime();
+                assembler.finish();
+                Metrics.stage(Metrics.WRITE, "pdf", t);
+                Metrics.bytesWritten("pdf", new File(outputPath).length());
+            } finally {
+                pool.shutdownNow();
+            }
+            Metrics.file(Metrics.format(inputFile.getName()), true);
+            return segments.size();
+        } finally {
+            closeSource(source);
+        }
+    }
+    
+    /**
+     * Copy one segment out of the decoded source and encode it for
+     * embedding, optionally writing the encoded slice to disk as well
+     */
+    private static EncodedSlice encodeSlice(TiledImage source, Rectangle region, File outputFile,
+            boolean writeSliceFile, boolean lossless, double actualDPI) throws IOException {
+        StageEvent transform = StageEvent.start(Metrics.TRANSFORM, outputFile.getPath(), 
+            Metrics.format(outputFile.getName()));
+        BufferedImage segment = source.toBufferedImage(region);
+        transform.image(segment).finish();
+        
+        EncodedSlice slice;
+        if (lossless) {
+            // LosslessFactory compresses during embedding
+            slice = new EncodedSlice(null, segment);
+            if (writeSliceFile) {
+                StageEvent encode = StageEvent.start(Metrics.ENCODE, outputFile.getPath(), "png");
+                ImageIO.write(segment, "png", outputFile);
+                encode.image(segment).bytes(outputFile.length()).finish();
+                Metrics.bytesWritten("png", outputFile.length());
+            }
+        } else {
+            StageEvent encode = StageEvent.start(Metrics.ENCODE, outputFile.getPath(), "jpg");
+            slice = new EncodedSlice(encodeJPEGWithMaxQuality(segment), null);
+            encode.image(segment).bytes(slice.jpeg.length).finish();
+            if (writeSliceFile) {
+                long t = System.nanoTime();
+                Files.write(outputFile.toPath(), slice.jpeg);
+                Metrics.stage(Metrics.WRITE, "jpg", t);
+                Metrics.bytesWritten("jpg", slice.jpeg.length);
+            }
+        }
+        if (writeSliceFile) {
+            printSaved(outputFile, region.width, actualDPI);
+        }
+        return slice;
+    }
+    
+    /**
+     * Work out the slice rectangles for an image of the given size
+     * 
+     * @param fullWidth Width of the image in pixels
+     * @param fullHeight Height of the image in pixels
+     * @param widthInches Total width of the image in inches
+     * @param segmentWidthInches Width of each segment in inches
+     * @return Source regions, left to right
+     */
+    private static List<Rectangle> planSegments(int fullWidth, int fullHeight, double widthInches,
+            double segmentWidthInches) {
         
         System.out.println("Source image dimensions: " + fullWidth + "x" + fullHeight);
         
@@ -106,35 +340,159 @@ public class ImageSplitter {
         System.out.println("Full segments: " + numFullSegments);
         System.out.println("Remaining width: " + remainingWidth + " pixels");
         
-        // Get input file directory and name
-        String inputDir = inputFile.getParent();
-        String inputFileName = inputFile.getName();
-        String baseFileName = inputFileName.substring(0, inputFileName.lastIndexOf('.'));
-        
-        // Split and save images
+        List<Rectangle> segments = new ArrayList<>();
         for (int i = 0; i < totalSegments; i++) {
             int xStart = i * segmentWidthPixels;
-            int width = (i == totalSegments - 1 && remainingWidth > 0) 
-                ? remainingWidth 
+            int width = (i == totalSegments - 1 && remainingWidth > 0)
+                ? remainingWidth
                 : segmentWidthPixels;
-            
-            // Extract sub-image
-            BufferedImage segment = sourceImage.getSubimage(xStart, 0, width, fullHeight);
-            
-            // Output filename with slice numbering (zero-padded to 2 digits)
-            String outputPath = inputDir + File.separator + baseFileName 
-                + String.format("-slice-%02d.jpg", i + 1);
-            File outputFile = new File(outputPath);
-            
-            // Save with lossless JPEG (maximum quality)
-            saveJPEGWithMaxQuality(segment, outputFile);
-            sliceFiles.add(outputFile);
-            
-            System.out.println("Saved: " + outputPath + " (width: " + width + " pixels, " 
-                + String.format("%.2f", width / actualDPI) + " inches)");
+            segments.add(new Rectangle(xStart, 0, width, fullHeight));
+        }
+        return segments;
+    }
+    
+    private static double sourceDPI(List<Rectangle> segments, double widthInches) {
+        Rectangle last = segments.get(segments.size() - 1);
+        return (last.x + last.width) / widthInches;
+    }
+    
+    private static int poolSize(int threads, int tasks) {
+        return Math.max(1, Math.min(threads, tasks));
+    }
+    
+    /**
+     * Output filename with slice numbering (zero-padded to 2 digits)
+     */
+    private static File sliceFile(File inputFile, int index, String extension) {
+        String inputDir = inputFile.getParent();
+        String inputFileName = inputFile.getName();
+        String baseFileName = inputFileName.substring(0, inputFileName.lastIndexOf('.'));
+        return new File(inputDir + File.separator + baseFileName
+            + String.format("-slice-%02d.%s", index + 1, extension));
+    }
+    
+    private static void printSaved(File outputFile, int width, double actualDPI) {
+        System.out.println("Saved: " + outputFile.getPath() + " (width: " + width + " pixels, "
+            + String.format("%.2f", width / actualDPI) + " inches)");
+    }
+    
+    /**
+     * Decode an image into a temporary tile store, in one sequential pass
+     * 
+     * Slices are full-height columns, so decoding each by source region
+     * would decode every row of the source once per slice, and decoding it
+     * into a BufferedImage would put the whole panorama on the heap. The
+     * store is memory-mapped from a temp file, so neither happens; the temp
+     * file takes 4 bytes per pixel of disk until {@link #closeSource}.
+     * Timed as the decode stage; a file that fails is counted as failed.
+     * 
+     * @param file The image file
+     * @return The decoded image, in a store to be closed with closeSource
+     * @throws IOException If the file cannot be read or has no ImageIO reader
+     */
+    static TiledImage importSource(File file) throws IOException {
+        String format = Metrics.format(file.getName());
+        File store = File.createTempFile("split-", ".tiles");
+        StageEvent decode = StageEvent.start(Metrics.DECODE, file.getPath(), format);
+        try {
+            TiledImage source = TiledImage.importImage(file, store, TiledImage.DEFAULT_TILE, TILE_CACHE_BYTES);
+            decode.bytes(file.length()).finish();
+            Metrics.bytesRead(format, file.length());
+            return source;
+        } catch (IOException | RuntimeException e) {
+            Metrics.file(format, false);
+            TiledImage.deleteStore(store);
+            throw e;
+        }
+    }
+    
+    /**
+     * Close a store from importSource and delete its temp file
+     */
+    private static void closeSource(TiledImage source) throws IOException {
+        try {
+            source.close();
+        } finally {
+            TiledImage.deleteStore(source.store());
+        }
+    }
+    
+    /**
+     * Decode only the given region of an image
+     * 
+     * Each call opens its own stream and reader, so regions can be decoded
+     * concurrently. Readers for sequential formats (PNG) stream past the rows
+     * outside the region without keeping them, so memory stays proportional
+     * to the region either way.
+     * 
+     * @param file The image file
+     * @param region The source region to decode
+     * @return A BufferedImage of exactly the region size
+     * @throws IOException If the file cannot be read
+     */
+    static BufferedImage readRegion(File file, Rectangle region) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = openReader(iis, file);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+    
+    static ImageReader openReader(ImageInputStream iis, File file) throws IOException {
+        if (iis == null) {
+            throw new IOException("Cannot open image: " + file);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("No ImageIO reader for: " + file);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(iis, true, true);
+        return reader;
+    }
+    
+    /**
+     * Wait for every future in order, rethrowing the first worker failure
+     * 
+     * @param futures Futures in result order
+     * @return The results, in the same order
+     * @throws IOException If any worker failed
+     */
+    private static <T> List<T> awaitAll(List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> f : futures) {
+                results.add(await(f));
+            }
+        } finally {
+            for (Future<T> f : futures) {
+                f.cancel(true);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Wait for one worker result, unwrapping its IOException
+     */
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while splitting image", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Slice worker failed: " + cause, cause);
         }
-        
-        return sliceFiles;
     }
     
     /**
@@ -145,6 +503,28 @@ public class ImageSplitter {
      * @throws IOException If there's an error writing the file
      */
     private static void saveJPEGWithMaxQuality(BufferedImage image, File outputFile) throws IOException {
+        // Set up output stream
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputFile)) {
+            writeJPEGWithMaxQuality(image, ios);
+        }
+    }
+    
+    /**
+     * Encode a BufferedImage as a maximum quality JPEG in memory
+     * 
+     * @param image The image to encode
+     * @return The JPEG file bytes
+     * @throws IOException If the image cannot be encoded
+     */
+    static byte[] encodeJPEGWithMaxQuality(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bytes)) {
+            writeJPEGWithMaxQuality(image, ios);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static void writeJPEGWithMaxQuality(BufferedImage image, ImageOutputStream ios) throws IOException {
         // Get JPEG writer
         Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
         if (!writers.hasNext()) {
@@ -153,8 +533,7 @@ public class ImageSplitter {
         
         ImageWriter writer = writers.next();
         
-        // Set up output stream
-        try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputFile)) {
+        try {
             writer.setOutput(ios);
             
             // Configure for maximum quality (lossless as possible for JPEG)
@@ -179,61 +558,45 @@ public class ImageSplitter {
      * @throws IOException If there's an error creating the PDF
      */
     public static void createPDF(List<File> imageFiles, String outputPath) throws IOException {
-        PDDocument document = new PDDocument();
-        
-        try {
-            // Use portrait letter size (8.5" x 11")
-            PDRectangle pageSize = new PDRectangle(612, 792); // 8.5" x 11" at 72 DPI
-            
-            // Margins (0.5 inch = 36 points)
-            float margin = 36;
-            float availableWidth = pageSize.getWidth() - (2 * margin);
-            float availableHeight = pageSize.getHeight() - (2 * margin);
-            
-            for (int i = 0; i < imageFiles.size(); i++) {
-                File imageFile = imageFiles.get(i);
+        createPDF(imageFiles, outputPath, STREAMING_PDF, PAGES_PER_PART);
+    }
+    
+    /**
+     * Create a PDF document from a list of image files
+     * 
+     * @param imageFiles List of image files to include (one per page)
+     * @param outputPath Path where the PDF should be saved
+     * @param streaming Keep embedded images in a temp file instead of heap
+     * @param pagesPerPart Write pages incrementally in parts of this size (0 = off)
+     * @throws IOException If there's an error creating the PDF
+     */
+    public static void createPDF(List<File> imageFiles, String outputPath, boolean streaming,
+            int pagesPerPart) throws IOException {
+        try (StreamingPdfAssembler assembler = 
+                new StreamingPdfAssembler(outputPath, streaming, pagesPerPart)) {
+            for (File imageFile : imageFiles) {
                 System.out.println("Processing: " + imageFile.getName());
                 
-                // Create a new page
-                PDPage page = new PDPage(pageSize);
-                document.addPage(page);
-                
                 // Load image
-                PDImageXObject image = PDImageXObject.createFromFile(
-                    imageFile.getAbsolutePath(), document);
-                
-                // Calculate scaling to fit while maintaining aspect ratio
-                float imgWidth = image.getWidth();
-                float imgHeight = image.getHeight();
-                
-                float widthScale = availableWidth / imgWidth;
-                float heightScale = availableHeight / imgHeight;
-                float scale = Math.min(widthScale, heightScale);
-                
-                float finalWidth = imgWidth * scale;
-                float finalHeight = imgHeight * scale;
-                
-                // Center the image on the page
-                float x = margin + (availableWidth - finalWidth) / 2;
-                float y = margin + (availableHeight - finalHeight) / 2;
-                
-                // Draw image on page
-                PDPageContentStream contentStream = new PDPageContentStream(
-                    document, page, PDPageContentStream.AppendMode.APPEND, true, true);
-                
-                try {
-                    contentStream.drawImage(image, x, y, finalWidth, finalHeight);
-                } finally {
-                    contentStream.close();
-                }
+                assembler.addImagePage(document -> PDImageXObject.createFromFile(
+                    imageFile.getAbsolutePath(), document), PAGE_SIZE, PAGE_MARGIN);
             }
             
-            // Save the document
-            document.save(outputPath);
-            System.out.println("PDF saved: " + outputPath);
-            
-        } finally {
-            document.close();
+            assembler.finish();
+        }
+    }
+    
+    /**
+     * One encoded slice: either finished JPEG bytes or raw pixels for
+     * lossless embedding
+     */
+    private static class EncodedSlice {
+        final byte[] jpeg;
+        final BufferedImage image;
+        
+        EncodedSlice(byte[] jpeg, BufferedImage image) {
+            this.jpeg = jpeg;
+            this.image = image;
         }
     }
 }
@@ -0,0 +1,438 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Metrics - process-wide counters and latency histograms, written to a file
+ * at exit
+ *
+ * Every tool calls {@link #init} first thing in main. That records the tool
+ * name, which tags every series, and takes "--metrics FILE" (plus an
+ * optional "--metrics-format json|prometheus") out of the arguments. When
+ * the flag is given, a shutdown hook writes all series to FILE on exit,
+ * including exits through System.exit. The format defaults to JSON, or
+ * Prometheus text for .prom and .txt files. "--jfr FILE" starts a flight
+ * recording (the JDK's "profile" settings) that is written to FILE at
+ * exit, with a {@link StageEvent} for every instrumented stage.
+ *
+ * Per-file work is timed in stages:
+ *   read       raw bytes from disk (slicer files, STL, zip entries)
+ *   decode     bytes to pixels, including the read when a decoder reads the
+ *              file itself
+ *   transform  pixel work: gray, recolor, resize, crop, masks
+ *   encode     pixels to a file, including the write; external converters
+ *              (dwebp, magick), which decode and encode in one step, count
+ *              here
+ *   write      raw bytes to disk (copies, links, extraction)
+ *
+ * {@link #stage} records the time since a start stamp and returns the
+ * current time, so consecutive stages chain with one clock read each:
+ *
+ *   long t = System.nanoTime();
+ *   BufferedImage img = ImageIO.read(in);
+ *   t = Metrics.stage(Metrics.DECODE, "png", t);
+ *   ...
+ *   ImageIO.write(img, "png", out);
+ *   Metrics.stage(Metrics.ENCODE, "png", t);
+ *   Metrics.file("png", true);
+ *
+ * Counters are LongAdders. Histograms are log-linear, HDR style: 16
+ * sub-buckets per power of two, so any value up to 2^62 ns is kept within
+ * about 6% in a fixed array of atomic counts, with no allocation or locking
+ * per record. Series are looked up by name and tags in a concurrent map;
+ * hot loops can keep the {@link Counter} or {@link Histogram} instead.
+ * Where a stage should also show up in a flight recording, time it with a
+ * StageEvent, which records here too.
+ *
+ * Usage:
+ *   public static void main(String[] args) {
+ *       args = Metrics.init("ImageColorApp", args);
+ *       ...
+ *   }
+ *   java ImageColorApp ./maps FF0000 --metrics run.json
+ *   java ImageColorApp ./maps FF0000 --metrics run.prom
+ *   java ImageColorApp ./maps FF0000 --jfr run.jfr
+ */
+public class Metrics {
+
+    public static final String READ = "read";
+    public static final String DECODE = "decode";
+    public static final String TRANSFORM = "transform";
+    public static final String ENCODE = "encode";
+    public static final String WRITE = "write";
+
+    private static final String PREFIX = "imgutils_";
+
+    private static volatile String tool = "unknown";
+    private static final long STARTED = System.currentTimeMillis();
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    // ── series ──
+
+    /**
+     * A monotonically increasing count
+     */
+    public static final class Counter {
+        final String name;
+        final String[] tags;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String[] tags) {
+            this.name = name;
+            this.tags = tags;
+        }
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long value() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * A distribution of nanosecond durations (or any non-negative longs)
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+        final String name;
+        final String[] tags;
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Histogram(String name, String[] tags) {
+            this.name = name;
+            this.tags = tags;
+        }
+
+        public void record(long value) {
+            long v = Math.max(0, value);
+            counts.incrementAndGet(index(v));
+            count.increment();
+            sum.add(v);
+            max.accumulate(v);
+        }
+
+        /** Records {@code System.nanoTime() - startNanos} */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long sum() {
+            return sum.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /** The value at quantile {@code q} (0..1), to bucket precision */
+        public long quantile(double q) {
+            long total = 0;
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return Math.min(max(), (lowerBound(i) + lowerBound(i + 1) - 1) / 2);
+            }
+            return max();
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+            return (exp - SUB_BITS + 1) * SUB + sub;
+        }
+
+        static long lowerBound(int index) {
+            if (index < SUB) return index;
+            if (index >= BUCKETS) return Long.MAX_VALUE;
+            int exp = index / SUB + SUB_BITS - 1;
+            int sub = index % SUB;
+            return (long) (SUB + sub) << (exp - SUB_BITS);
+        }
+    }
+
+    // ── setup ──
+
+    /**
+     * Names this process's tool and removes --metrics FILE,
+     * --metrics-format FORMAT and --jfr FILE from {@code args}. With
+     * --metrics, the series are written to FILE when the JVM exits; with
+     * --jfr, a flight recording is. Returns the remaining arguments.
+     */
+    public static String[] init(String toolName, String[] args) {
+        tool = toolName;
+        String file = null, format = null, jfr = null;
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("--metrics") && i + 1 < args.length) {
+                file = args[++i];
+            } else if (args[i].equalsIgnoreCase("--metrics-format") && i + 1 < args.length) {
+                format = args[++i].toLowerCase(Locale.ROOT);
+            } else if (args[i].equalsIgnoreCase("--jfr") && i + 1 < args.length) {
+                jfr = args[++i];
+            } else {
+                rest.add(args[i]);
+            }
+        }
+        if (file != null) {
+            Path out = Paths.get(file);
+            String lower = file.toLowerCase(Locale.ROOT);
+            boolean prometheus = format != null
+                ? format.startsWith("prom")
+                : lower.endsWith(".prom") || lower.endsWith(".txt");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    if (prometheus) writePrometheus(out);
+                    else writeJson(out);
+                    System.err.println("Metrics written to " + out.toAbsolutePath());
+                } catch (IOException e) {
+                    System.err.println("Could not write metrics to " + out + ": " + e.getMessage());
+                }
+            }, "metrics-export"));
+        }
+        if (jfr != null) record(Paths.get(jfr));
+        return rest.toArray(new String[0]);
+    }
+
+    /** Starts a flight recording that JFR dumps to {@code out} at exit */
+    private static void record(Path out) {
+        try {
+            Recording recording = new Recording(Configuration.getConfiguration("profile"));
+            recording.setName(tool);
+            recording.enable(StageEvent.class);
+            recording.setDestination(out);
+            recording.setDumpOnExit(true);
+            recording.start();
+            System.err.println("Flight recording to " + out.toAbsolutePath());
+        } catch (IOException | ParseException e) {
+            System.err.println("Could not start a flight recording: " + e.getMessage());
+        }
+    }
+
+    public static String tool() {
+        return tool;
+    }
+
+    // ── recording ──
+
+    /**
+     * The counter {@code name} with the tool tag and {@code tags} (key,
+     * value pairs)
+     */
+    public static Counter counter(String name, String... tags) {
+        String[] all = withTool(tags);
+        return COUNTERS.computeIfAbsent(key(name, all), k -> new Counter(name, all));
+    }
+
+    /**
+     * The histogram {@code name} with the tool tag and {@code tags} (key,
+     * value pairs)
+     */
+    public static Histogram histogram(String name, String... tags) {
+        String[] all = withTool(tags);
+        return HISTOGRAMS.computeIfAbsent(key(name, all), k -> new Histogram(name, all));
+    }
+
+    /**
+     * Records the time since {@code startNanos} for {@code stage} on files
+     * of {@code format}, and returns the current time for the next stage
+     */
+    public static long stage(String stage, String format, long startNanos) {
+        long now = System.nanoTime();
+        histogram("stage_seconds", "stage", stage, "format", format).record(now - startNanos);
+        return now;
+    }
+
+    /** Counts one processed file of {@code format}, succeeded or failed */
+    public static void file(String format, boolean ok) {
+        counter("files_total", "format", format, "result", ok ? "ok" : "failed").inc();
+    }
+
+    public static void bytesRead(String format, long bytes) {
+        counter("read_bytes_total", "format", format).add(bytes);
+    }
+
+    public static void bytesWritten(String format, long bytes) {
+        counter("written_bytes_total", "format", format).add(bytes);
+    }
+
+    /** The lower-case extension of {@code name} without the dot, or "none" */
+    public static String format(String name) {
+        int slash = Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\'));
+        int dot = name.lastIndexOf('.');
+        if (dot <= slash + 1 || dot == name.length() - 1) return "none";
+        String ext = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return ext.equals("jpeg") ? "jpg" : ext;
+    }
+
+    private static String[] withTool(String[] tags) {
+        String[] all = new String[tags.length + 2];
+        all[0] = "tool";
+        all[1] = tool;
+        System.arraycopy(tags, 0, all, 2, tags.length);
+        return all;
+    }
+
+    private static String key(String name, String[] tags) {
+        StringBuilder sb = new StringBuilder(name);
+        for (String t : tags) sb.append('\u0000').append(t);
+        return sb.toString();
+    }
+
+    // ── export ──
+
+    /**
+     * Writes every series as JSON: counters with their values, histograms
+     * with count, sum, mean, p50, p90, p99 and max in milliseconds
+     */
+    public static void writeJson(Path out) throws IOException {
+        createParent(out);
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            pw.println("{");
+            pw.println("  \"tool\": " + quote(tool) + ",");
+            pw.println("  \"startedEpochMs\": " + STARTED + ",");
+            pw.println("  \"uptimeMs\": " + (System.currentTimeMillis() - STARTED) + ",");
+            pw.println("  \"counters\": [");
+            List<Counter> counters = sorted(COUNTERS);
+            for (int i = 0; i < counters.size(); i++) {
+                Counter c = counters.get(i);
+                pw.print("    {\"name\": " + quote(PREFIX + c.name) + ", \"tags\": " + jsonTags(c.tags)
+                    + ", \"value\": " + c.value() + "}");
+                pw.println(i < counters.size() - 1 ? "," : "");
+            }
+            pw.println("  ],");
+            pw.println("  \"histograms\": [");
+            List<Histogram> histograms = sorted(HISTOGRAMS);
+            for (int i = 0; i < histograms.size(); i++) {
+                Histogram h = histograms.get(i);
+                long n = h.count();
+                pw.print("    {\"name\": " + quote(PREFIX + h.name) + ", \"tags\": " + jsonTags(h.tags)
+                    + ", \"count\": " + n
+                    + ", \"sumMs\": " + ms(h.sum())
+                    + ", \"meanMs\": " + ms(n == 0 ? 0 : h.sum() / n)
+                    + ", \"p50Ms\": " + ms(h.quantile(0.50))
+                    + ", \"p90Ms\": " + ms(h.quantile(0.90))
+                    + ", \"p99Ms\": " + ms(h.quantile(0.99))
+                    + ", \"maxMs\": " + ms(h.max()) + "}");
+                pw.println(i < histograms.size() - 1 ? "," : "");
+            }
+            pw.println("  ]");
+            pw.println("}");
+        }
+    }
+
+    /**
+     * Writes every series in the Prometheus text format: counters as
+     * counters, histograms as summaries in seconds with 0.5, 0.9 and 0.99
+     * quantiles
+     */
+    public static void writePrometheus(Path out) throws IOException {
+        createParent(out);
+        try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            String last = null;
+            for (Counter c : sorted(COUNTERS)) {
+                if (!c.name.equals(last)) pw.println("# TYPE " + PREFIX + c.name + " counter");
+                last = c.name;
+                pw.println(PREFIX + c.name + promTags(c.tags, null) + " " + c.value());
+            }
+            last = null;
+            for (Histogram h : sorted(HISTOGRAMS)) {
+                String name = PREFIX + h.name;
+                if (!h.name.equals(last)) pw.println("# TYPE " + name + " summary");
+                last = h.name;
+                for (double q : new double[] { 0.5, 0.9, 0.99 }) {
+                    pw.println(name + promTags(h.tags, String.valueOf(q)) + " " + seconds(h.quantile(q)));
+                }
+                pw.println(name + "_sum" + promTags(h.tags, null) + " " + seconds(h.sum()));
+                pw.println(name + "_count" + promTags(h.tags, null) + " " + h.count());
+            }
+        }
+    }
+
+    private static <T> List<T> sorted(Map<String, T> series) {
+        return new ArrayList<>(new ConcurrentSkipListMap<>(series).values());
+    }
+
+    private static String jsonTags(String[] tags) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i + 1 < tags.length; i += 2) {
+            if (i > 0) sb.append(", ");
+            sb.append(quote(tags[i])).append(": ").append(quote(tags[i + 1]));
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String promTags(String[] tags, String quantile) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i + 1 < tags.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(tags[i]).append("=\"").append(escapeLabel(tags[i + 1])).append('"');
+        }
+        if (quantile != null) sb.append(",quantile=\"").append(quantile).append('"');
+        return sb.append('}').toString();
+    }
+
+    private static String escapeLabel(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static void createParent(Path out) throws IOException {
+        Path parent = out.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+    }
+}
@@ -0,0 +1,205 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PerceptualHashCache - persistent 64-bit dHash fingerprints for images
+ *
+ * A dHash compares the brightness of horizontally adjacent cells on a 9 x 8
+ * grid of the image, giving 64 bits that stay almost the same when the
+ * image is resized, re-compressed or saved in another format. Similar
+ * images therefore have hashes a small Hamming distance apart.
+ *
+ * The grid only needs a tiny image, so each file is decoded with reader
+ * subsampling (ThumbnailCache.readSubsampled) and never at full resolution.
+ * Hashes are cached in a binary file keyed by absolute path, size and
+ * last-modified time; only new or changed files are decoded, in parallel.
+ *
+ * Usage:
+ *   PerceptualHashCache cache = PerceptualHashCache.load(cacheFile);
+ *   Map<File, Long> hashes = cache.hashes(files, threads);
+ *   cache.save();
+ */
+public class PerceptualHashCache {
+
+    private static final int MAGIC = 0x50484331; // "PHC1"
+
+    /** Shorter side of the subsampled decode the grid is averaged from. */
+    private static final int DECODE_PX = 32;
+
+    private static final class Entry {
+        final long size;
+        final long lastModified;
+        final long hash;
+
+        Entry(long size, long lastModified, long hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    private final File cacheFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty = false;
+
+    private PerceptualHashCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Loads the cache from {@code cacheFile}, or starts an empty one if the
+     * file is missing or unreadable.
+     */
+    public static PerceptualHashCache load(File cacheFile) {
+        PerceptualHashCache cache = new PerceptualHashCache(cacheFile);
+        if (!cacheFile.exists()) return cache;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile), 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                System.err.println("Ignoring hash cache with unknown format: " + cacheFile);
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                cache.entries.put(path, new Entry(in.readLong(), in.readLong(), in.readLong()));
+            }
+        } catch (IOException e) {
+            System.err.println("Rebuilding unreadable hash cache " + cacheFile + ": " + e.getMessage());
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the dHash of every file that could be decoded, computing
+     * missing and stale ones on {@code threads} threads. Files that fail
+     * are reported and left out.
+     */
+    public Map<File, Long> hashes(List<File> files, int threads) throws InterruptedException {
+        Map<File, Long> result = new HashMap<>(files.size() * 2);
+        List<File> missing = new ArrayList<>();
+        for (File file : files) {
+            Entry entry = entries.get(file.getAbsolutePath());
+            if (entry != null && entry.size == file.length() && entry.lastModified == file.lastModified()) {
+                result.put(file, entry.hash);
+            } else {
+                missing.add(file);
+            }
+        }
+
+        System.out.println("Hashes: " + result.size() + " cached, " + missing.size() + " to compute");
+        if (missing.isEmpty()) return result;
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, missing.size())));
+        try {
+            List<Future<Long>> futures = new ArrayList<>(missing.size());
+            for (File file : missing) {
+                futures.add(pool.submit(() -> {
+                    BufferedImage img = ThumbnailCache.readSubsampled(file, DECODE_PX);
+                    long t = System.nanoTime();
+                    long hash = dHash(img);
+                    Metrics.stage(Metrics.TRANSFORM, Metrics.format(file.getName()), t);
+                    return hash;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                File file = missing.get(i);
+                try {
+                    long hash = futures.get(i).get();
+                    result.put(file, hash);
+                    entries.put(file.getAbsolutePath(), new Entry(file.length(), file.lastModified(), hash));
+                    dirty = true;
+                    Metrics.file(Metrics.format(file.getName()), true);
+                } catch (ExecutionException e) {
+                    System.err.println("Could not hash " + file + ": " + e.getCause());
+                    Metrics.file(Metrics.format(file.getName()), false);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println(String.format("Computed %d hash(es) in %.1f s",
+            missing.size(), (System.nanoTime() - start) / 1e9));
+        return result;
+    }
+
+    /**
+     * Writes the cache if anything was added, through a temp file.
+     */
+    public void save() throws IOException {
+        if (!dirty) return;
+        long t = System.nanoTime();
+        File tmp = new File(cacheFile.getAbsoluteFile().getParentFile(), cacheFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().size);
+                out.writeLong(e.getValue().lastModified);
+                out.writeLong(e.getValue().hash);
+            }
+        }
+        Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Metrics.stage(Metrics.WRITE, Metrics.format(cacheFile.getName()), t);
+        Metrics.bytesWritten(Metrics.format(cacheFile.getName()), cacheFile.length());
+        dirty = false;
+    }
+
+    /**
+     * 64-bit difference hash: the image is box-averaged to a 9 x 8 luma grid
+     * and each bit records whether a cell is brighter than its right-hand
+     * neighbour.
+     */
+    static long dHash(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        double[] sum = new double[9 * 8];
+        int[] count = new int[9 * 8];
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            img.getRGB(0, y, w, 1, row, 0, w);
+            int gy = y * 8 / h;
+            for (int x = 0; x < w; x++) {
+                int rgb = row[x];
+                double luma = 0.299 * ((rgb >> 16) & 0xFF) + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF);
+                int cell = gy * 9 + x * 9 / w;
+                sum[cell] += luma;
+                count[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int gy = 0; gy < 8; gy++) {
+            for (int gx = 0; gx < 8; gx++) {
+                int left = gy * 9 + gx;
+                double a = count[left] > 0 ? sum[left] / count[left] : 0;
+                double b = count[left + 1] > 0 ? sum[left + 1] / count[left + 1] : 0;
+                hash = (hash << 1) | (a > b ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,278 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * PngRowReader - decodes a PNG one row at a time
+ *
+ * The reading counterpart of TiledImage.writePng: the chunks up to the
+ * first IDAT are parsed, then the IDAT data is inflated as one stream and
+ * the row filters are undone with only the current and previous rows in
+ * memory. Any image size works, including those beyond the 2^31 samples
+ * ImageIO can decode into one BufferedImage.
+ *
+ * Samples come out unpacked, one int per sample in file order (gray; gray,
+ * alpha; r, g, b; r, g, b, a; or a palette index), at the file's bit
+ * depth. Turning them into colours is left to the caller. Interlaced
+ * images are not read; check {@link #interlaced} first.
+ *
+ * Usage:
+ *   try (PngRowReader png = new PngRowReader(file)) {
+ *       int[] samples = new int[png.width() * png.bands()];
+ *       for (int y = 0; y < png.height(); y++) png.readRow(samples);
+ *   }
+ */
+final class PngRowReader implements Closeable {
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    private final DataInputStream in;
+    private int width;
+    private int height;
+    private int bitDepth;
+    private int colorType;
+    private boolean interlaced;
+    private boolean transparency;
+    private int bands;
+
+    /** Bytes to the corresponding byte of the previous pixel, for the filters */
+    private int filterStride;
+    private byte[] cur;
+    private byte[] prev;
+    private Inflater inflater;
+    private InputStream pixels;
+
+    PngRowReader(File file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        try {
+            readHeader(file);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private void readHeader(File file) throws IOException {
+        byte[] signature = new byte[SIGNATURE.length];
+        in.readFully(signature);
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (signature[i] != SIGNATURE[i]) throw new IOException("Not a PNG file: " + file);
+        }
+
+        boolean header = false;
+        while (true) {
+            int length = in.readInt();
+            String type = chunkType();
+            if (type.equals("IDAT")) {
+                if (!header) throw new IOException("IDAT before IHDR in " + file);
+                start(length);
+                return;
+            }
+            if (type.equals("IHDR")) {
+                width = in.readInt();
+                height = in.readInt();
+                bitDepth = in.readUnsignedByte();
+                colorType = in.readUnsignedByte();
+                int compression = in.readUnsignedByte();
+                int filter = in.readUnsignedByte();
+                interlaced = in.readUnsignedByte() != 0;
+                in.skipNBytes(length - 13);
+                if (width <= 0 || height <= 0 || compression != 0 || filter != 0) {
+                    throw new IOException("Bad PNG header in " + file);
+                }
+                bands = bands(colorType, bitDepth, file);
+                header = true;
+            } else {
+                if (type.equals("tRNS")) transparency = true;
+                if (type.equals("IEND")) throw new IOException("No image data in " + file);
+                in.skipNBytes(length);
+            }
+            in.skipNBytes(4); // CRC
+        }
+    }
+
+    private static int bands(int colorType, int bitDepth, File file) throws IOException {
+        int bands;
+        boolean depthOk;
+        switch (colorType) {
+            case 0:  bands = 1; depthOk = bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16; break;
+            case 3:  bands = 1; depthOk = bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8; break;
+            case 2:  bands = 3; depthOk = bitDepth == 8 || bitDepth == 16; break;
+            case 4:  bands = 2; depthOk = bitDepth == 8 || bitDepth == 16; break;
+            case 6:  bands = 4; depthOk = bitDepth == 8 || bitDepth == 16; break;
+            default: throw new IOException("Bad PNG colour type " + colorType + " in " + file);
+        }
+        if (!depthOk) throw new IOException("Bad PNG bit depth " + bitDepth + " in " + file);
+        return bands;
+    }
+
+    /** Sets up the row buffers and the inflater, positioned in the first IDAT */
+    private void start(int firstIdatLength) throws IOException {
+        long bitsPerPixel = (long) bands * bitDepth;
+        long rowBytes = (width * bitsPerPixel + 7) / 8;
+        if (rowBytes > Integer.MAX_VALUE - 8 || (long) width * bands > Integer.MAX_VALUE - 8) {
+            throw new IOException("PNG rows of " + width + " pixels are too long");
+        }
+        filterStride = (int) Math.max(1, bitsPerPixel / 8);
+        cur = new byte[(int) rowBytes];
+        prev = new byte[(int) rowBytes];
+        inflater = new Inflater();
+        pixels = new InflaterInputStream(new IdatStream(firstIdatLength), inflater, 1 << 16);
+    }
+
+    private String chunkType() throws IOException {
+        byte[] type = new byte[4];
+        in.readFully(type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int bitDepth() {
+        return bitDepth;
+    }
+
+    public int colorType() {
+        return colorType;
+    }
+
+    /** Samples per pixel */
+    public int bands() {
+        return bands;
+    }
+
+    public boolean interlaced() {
+        return interlaced;
+    }
+
+    /** True if the file has a tRNS chunk (palette alpha or a colour key) */
+    public boolean hasTransparency() {
+        return transparency;
+    }
+
+    /**
+     * Decodes the next row into {@code samples}, which must hold
+     * {@code width() * bands()} ints.
+     */
+    public void readRow(int[] samples) throws IOException {
+        if (interlaced) throw new IOException("Interlaced PNGs are not read row by row");
+        int filter = pixels.read();
+        if (filter < 0) throw new EOFException("PNG image data ends early");
+        readFully(cur);
+        unfilter(filter);
+
+        int n = width * bands;
+        if (bitDepth == 8) {
+            for (int i = 0; i < n; i++) samples[i] = cur[i] & 0xFF;
+        } else if (bitDepth == 16) {
+            for (int i = 0, o = 0; i < n; i++, o += 2) samples[i] = (cur[o] & 0xFF) << 8 | (cur[o + 1] & 0xFF);
+        } else {
+            int mask = (1 << bitDepth) - 1;
+            for (int i = 0; i < n; i++) {
+                int bit = i * bitDepth;
+                samples[i] = (cur[bit >> 3] >> (8 - bitDepth - (bit & 7))) & mask;
+            }
+        }
+
+        byte[] t = prev;
+        prev = cur;
+        cur = t;
+    }
+
+    private void readFully(byte[] row) throws IOException {
+        int done = 0;
+        while (done < row.length) {
+            int k = pixels.read(row, done, row.length - done);
+            if (k < 0) throw new EOFException("PNG image data ends early");
+            done += k;
+        }
+    }
+
+    private void unfilter(int filter) throws IOException {
+        int s = filterStride, n = cur.length;
+        switch (filter) {
+            case 0: // None
+                break;
+            case 1: // Sub
+                for (int i = s; i < n; i++) cur[i] = (byte) (cur[i] + cur[i - s]);
+                break;
+            case 2: // Up
+                for (int i = 0; i < n; i++) cur[i] = (byte) (cur[i] + prev[i]);
+                break;
+            case 3: // Average
+                for (int i = 0; i < n; i++) {
+                    int left = i >= s ? cur[i - s] & 0xFF : 0;
+                    cur[i] = (byte) (cur[i] + ((left + (prev[i] & 0xFF)) >> 1));
+                }
+                break;
+            case 4: // Paeth
+                for (int i = 0; i < n; i++) {
+                    int a = i >= s ? cur[i - s] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= s ? prev[i - s] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+                    cur[i] = (byte) (cur[i] + (pa <= pb && pa <= pc ? a : pb <= pc ? b : c));
+                }
+                break;
+            default:
+                throw new IOException("Bad PNG row filter " + filter);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) inflater.end();
+        in.close();
+    }
+
+    /** The data of consecutive IDAT chunks as one stream; ends at the first other chunk */
+    private final class IdatStream extends InputStream {
+        private int remaining;
+        private boolean done;
+
+        IdatStream(int firstLength) {
+            this.remaining = firstLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (remaining == 0) {
+                if (done) return -1;
+                in.skipNBytes(4); // CRC of the previous IDAT
+                remaining = in.readInt();
+                if (!chunkType().equals("IDAT")) {
+                    done = true;
+                    remaining = 0;
+                    return -1;
+                }
+            }
+            int k = in.read(b, off, Math.min(len, remaining));
+            if (k < 0) throw new EOFException("PNG file ends inside an IDAT chunk");
+            remaining -= k;
+            return k;
+        }
+    }
+}
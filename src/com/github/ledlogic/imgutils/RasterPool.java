@@ -0,0 +1,277 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * RasterPool - reusable int[] rasters for batch image work
+ *
+ * Folder-mode tools decode, transform and encode one full-size image after
+ * another. Without reuse every file allocates its own pixel arrays, tens of
+ * MB each, which go straight to the old generation and leave it to full GCs.
+ *
+ * The pool hands out leases on int[] buffers in power-of-two size classes
+ * (from 64K pixels), wrapped in a TYPE_INT_ARGB or TYPE_INT_RGB
+ * BufferedImage of exactly the requested size. Free buffers are kept per
+ * thread, at most {@link #PER_CLASS} per size class, so leasing takes no
+ * lock, and a worker that processes similar images reuses the same
+ * buffers. The wrapper is kept with its buffer and reused when the next
+ * lease has the same size and type.
+ *
+ * Leased pixels are not cleared unless asked; callers that overwrite every
+ * pixel (decoders, full-image loops) skip the fill.
+ *
+ * {@link #decode} reads an image straight into a leased buffer with
+ * ImageReadParam.setDestination, when the reader supports an int type.
+ *
+ * Usage:
+ *   RasterPool.Meter meter = RasterPool.Meter.start();
+ *   try (RasterPool.Lease dst = RasterPool.lease(w, h, BufferedImage.TYPE_INT_ARGB, false)) {
+ *       ... draw into dst.image(), encode it ...
+ *   }
+ *   System.out.println(meter);  // allocation, GC time and pool hit rate
+ */
+public class RasterPool {
+
+    /** Free buffers kept per size class per thread */
+    static final int PER_CLASS = 2;
+
+    private static final int MIN_CLASS = 16; // 64K pixels
+    private static final int CLASSES = 32;
+
+    private static final ColorModel ARGB = ColorModel.getRGBdefault();
+    private static final ColorModel RGB = new DirectColorModel(24, 0x00FF0000, 0x0000FF00, 0x000000FF, 0);
+
+    private static final AtomicLong LEASES = new AtomicLong();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong ALLOCATED_BYTES = new AtomicLong();
+
+    /** A pooled buffer and the last image wrapped around it */
+    private static final class Buffer {
+        final int[] data;
+        final int sizeClass;
+        BufferedImage wrapper;
+
+        Buffer(int[] data, int sizeClass) {
+            this.data = data;
+            this.sizeClass = sizeClass;
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final ThreadLocal<ArrayDeque<Buffer>[]> FREE =
+        ThreadLocal.withInitial(() -> new ArrayDeque[CLASSES]);
+
+    /**
+     * A leased image. Closing returns its buffer to the pool of the closing
+     * thread; the image must not be used afterwards.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Buffer buffer;
+        private final BufferedImage image;
+        private boolean closed;
+
+        private Lease(Buffer buffer, BufferedImage image) {
+            this.buffer = buffer;
+            this.image = image;
+        }
+
+        public BufferedImage image() {
+            return image;
+        }
+
+        /** The backing array, row-major with stride width, or null if unpooled */
+        public int[] pixels() {
+            return buffer == null ? null : buffer.data;
+        }
+
+        @Override
+        public void close() {
+            if (closed || buffer == null) return;
+            closed = true;
+            ArrayDeque<Buffer>[] free = FREE.get();
+            ArrayDeque<Buffer> list = free[buffer.sizeClass];
+            if (list == null) list = free[buffer.sizeClass] = new ArrayDeque<>(PER_CLASS);
+            if (list.size() < PER_CLASS) list.push(buffer);
+        }
+    }
+
+    /**
+     * Leases a width x height image of TYPE_INT_ARGB or TYPE_INT_RGB.
+     */
+    public static Lease lease(int width, int height, int type, boolean clear) {
+        if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("Only TYPE_INT_ARGB and TYPE_INT_RGB are pooled");
+        }
+        long pixels = (long) width * height;
+        if (width <= 0 || height <= 0 || pixels > (1 << 30)) {
+            throw new IllegalArgumentException("Bad raster size " + width + "x" + height);
+        }
+        LEASES.incrementAndGet();
+        int sizeClass = Math.max(MIN_CLASS, 64 - Long.numberOfLeadingZeros(pixels - 1));
+
+        ArrayDeque<Buffer> list = FREE.get()[sizeClass];
+        Buffer buffer = list == null ? null : list.poll();
+        if (buffer != null) {
+            HITS.incrementAndGet();
+            if (clear) Arrays.fill(buffer.data, 0, (int) pixels, 0);
+        } else {
+            buffer = new Buffer(new int[1 << sizeClass], sizeClass);
+            ALLOCATED_BYTES.addAndGet(4L << sizeClass);
+        }
+
+        BufferedImage w = buffer.wrapper;
+        if (w == null || w.getWidth() != width || w.getHeight() != height || w.getType() != type) {
+            w = wrap(buffer.data, width, height, type);
+            buffer.wrapper = w;
+        }
+        return new Lease(buffer, w);
+    }
+
+    private static BufferedImage wrap(int[] data, int width, int height, int type) {
+        boolean alpha = type == BufferedImage.TYPE_INT_ARGB;
+        int[] masks = alpha
+            ? new int[] { 0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000 }
+            : new int[] { 0x00FF0000, 0x0000FF00, 0x000000FF };
+        DataBufferInt db = new DataBufferInt(data, width * height);
+        WritableRaster raster = Raster.createPackedRaster(db, width, height, width, masks, new Point(0, 0));
+        return new BufferedImage(alpha ? ARGB : RGB, raster, false, null);
+    }
+
+    /**
+     * Decodes {@code file} into a leased int image when its reader offers
+     * TYPE_INT_ARGB or TYPE_INT_RGB, and otherwise with ImageIO.read into an
+     * unpooled lease. Returns null if no reader understands the file.
+     */
+    public static Lease decode(File file) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            if (iis == null) throw new IOException("Cannot open image: " + file);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int width = reader.getWidth(0), height = reader.getHeight(0);
+                int type = intType(reader);
+                if (type == BufferedImage.TYPE_CUSTOM || (long) width * height > (1 << 30)) {
+                    return new Lease(null, reader.read(0));
+                }
+                Lease lease = lease(width, height, type, false);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(lease.image());
+                try {
+                    reader.read(0, param);
+                } catch (IOException | RuntimeException e) {
+                    lease.close();
+                    throw e;
+                }
+                return lease;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static int intType(ImageReader reader) throws IOException {
+        int found = BufferedImage.TYPE_CUSTOM;
+        for (Iterator<ImageTypeSpecifier> it = reader.getImageTypes(0); it.hasNext();) {
+            int t = it.next().getBufferedImageType();
+            if (t == BufferedImage.TYPE_INT_ARGB) return t;
+            if (t == BufferedImage.TYPE_INT_RGB) found = t;
+        }
+        return found;
+    }
+
+    /**
+     * Wraps an image that is not pooled, so callers can treat every image
+     * as a lease.
+     */
+    public static Lease unpooled(BufferedImage image) {
+        return new Lease(null, image);
+    }
+
+    // ── reporting ──
+
+    /**
+     * Heap allocated, GC count and time, and pool hits since {@link #start}.
+     * Allocation is summed over all live threads (HotSpot's
+     * com.sun.management.ThreadMXBean).
+     */
+    public static final class Meter {
+        private final long allocated;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long leases;
+        private final long hits;
+        private final long pooledBytes;
+        private final long nanos;
+
+        private Meter() {
+            this.allocated = allocatedBytes();
+            long[] gc = gc();
+            this.gcCount = gc[0];
+            this.gcMillis = gc[1];
+            this.leases = LEASES.get();
+            this.hits = HITS.get();
+            this.pooledBytes = ALLOCATED_BYTES.get();
+            this.nanos = System.nanoTime();
+        }
+
+        public static Meter start() {
+            return new Meter();
+        }
+
+        private static long allocatedBytes() {
+            java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+                if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+                    return sun.getTotalThreadAllocatedBytes();
+                }
+            }
+            return -1;
+        }
+
+        private static long[] gc() {
+            long count = 0, millis = 0;
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, bean.getCollectionCount());
+                millis += Math.max(0, bean.getCollectionTime());
+            }
+            return new long[] { count, millis };
+        }
+
+        @Override
+        public String toString() {
+            Meter now = new Meter();
+            double seconds = (now.nanos - nanos) / 1e9;
+            long leased = now.leases - leases;
+            String alloc = allocated < 0 || now.allocated < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f MB (%.1f MB/s)",
+                (now.allocated - allocated) / 1048576.0, (now.allocated - allocated) / 1048576.0 / Math.max(seconds, 1e-9));
+            return String.format(Locale.ROOT,
+                "Allocated %s, GC %d collection(s) / %d ms, rasters leased %d, reused %d, new %.1f MB",
+                alloc, now.gcCount - gcCount, now.gcMillis - gcMillis, leased, now.hits - hits,
+                (now.pooledBytes - pooledBytes) / 1048576.0);
+        }
+    }
+}
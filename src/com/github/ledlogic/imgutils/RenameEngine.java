@@ -0,0 +1,355 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RenameEngine - plans and applies batch renames from one directory snapshot
+ *
+ * Each directory is listed exactly once (during the walk), and every rename
+ * for it is planned in memory against that snapshot:
+ *
+ *   - a target taken by a file that is not itself being renamed, or claimed
+ *     by two sources, is reported and that rename is skipped; names are
+ *     compared ignoring case, as Windows and macOS compare them
+ *   - chains (a -> b while b -> c) are ordered so each target is vacated
+ *     before it is filled
+ *   - cycles (a -> b, b -> a) are broken by moving one file to a temporary
+ *     name first and on to its target last
+ *
+ * Plans are applied directories in parallel, with moves that never replace
+ * a file: a target that appeared after planning is reported and skipped.
+ * Every completed move is appended to a journal (directory, from, to) and
+ * flushed, so {@link #undo} can reverse a run, even an interrupted one, by
+ * replaying the journal backwards.
+ *
+ * Usage:
+ *   RenameEngine engine = new RenameEngine(name -> newNameOrNull, threads);
+ *   Map<Path, List<RenameEngine.Step>> plan = engine.plan(root, recursive);
+ *   engine.apply(plan, journal);
+ *   RenameEngine.undo(journal, threads);
+ */
+public class RenameEngine {
+
+    /**
+     * Maps a file name to its new name, or null (or the same name) to leave
+     * it unchanged
+     */
+    public interface Rule {
+        String rename(String name);
+    }
+
+    /**
+     * One move within a directory
+     */
+    public static final class Step {
+        public final String from;
+        public final String to;
+
+        Step(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final String TEMP_PREFIX = ".rename-tmp-";
+
+    private final Rule rule;
+    private final int threads;
+
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger moved = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public RenameEngine(Rule rule, int threads) {
+        this.rule = rule;
+        this.threads = Math.max(1, threads);
+    }
+
+    // ── planning ──
+
+    /**
+     * Walks {@code root} (one level, or the whole tree), listing each
+     * directory once, and returns the ordered moves for every directory
+     * that has any.
+     */
+    public Map<Path, List<Step>> plan(Path root, boolean recursive) throws IOException {
+        // directory -> every name in it, folded; directory -> regular file names
+        Map<Path, Set<String>> occupied = new LinkedHashMap<>();
+        Map<Path, List<String>> files = new LinkedHashMap<>();
+
+        int maxDepth = recursive ? Integer.MAX_VALUE : 1;
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                occupied.computeIfAbsent(dir, k -> new HashSet<>());
+                files.computeIfAbsent(dir, k -> new ArrayList<>());
+                if (!dir.equals(root)) occupied.get(dir.getParent()).add(fold(dir.getFileName().toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                Path dir = file.getParent();
+                String name = file.getFileName().toString();
+                occupied.computeIfAbsent(dir, k -> new HashSet<>()).add(fold(name));
+                if (attrs.isRegularFile()) files.computeIfAbsent(dir, k -> new ArrayList<>()).add(name);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                System.err.println("Cannot access: " + file + " — " + exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Map<Path, List<Step>> plans = new LinkedHashMap<>();
+        for (Map.Entry<Path, List<String>> e : files.entrySet()) {
+            List<String> names = e.getValue();
+            names.sort(null);
+            List<Step> steps = planDirectory(e.getKey(), names, occupied.get(e.getKey()));
+            if (!steps.isEmpty()) plans.put(e.getKey(), steps);
+        }
+        return plans;
+    }
+
+    private List<Step> planDirectory(Path dir, List<String> names, Set<String> occupied) {
+        // wanted renames, first claim on a target wins
+        Map<String, String> moves = new LinkedHashMap<>();
+        Map<String, String> claimedBy = new HashMap<>();
+        // folded source name -> source
+        Map<String, String> sources = new HashMap<>();
+        for (String name : names) {
+            String target = rule.rename(name);
+            if (target == null || target.equals(name)) continue;
+            String other = claimedBy.putIfAbsent(fold(target), name);
+            if (other != null) {
+                System.err.println("Skipping \"" + name + "\": target \"" + target + "\" is also the target of \"" + other + "\".");
+                skipped.incrementAndGet();
+                continue;
+            }
+            other = sources.putIfAbsent(fold(name), name);
+            if (other != null) {
+                System.err.println("Skipping \"" + name + "\" in " + dir + ": its name differs from \"" + other + "\" only in case.");
+                skipped.incrementAndGet();
+                continue;
+            }
+            moves.put(name, target);
+        }
+
+        // targets held by a file that stays put block their move, and so on up the chain
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var it = moves.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, String> m = it.next();
+                String target = fold(m.getValue());
+                if (occupied.contains(target) && !sources.containsKey(target)) {
+                    System.err.println("Skipping \"" + m.getKey() + "\" in " + dir + ": target \"" + m.getValue() + "\" already exists.");
+                    skipped.incrementAndGet();
+                    sources.remove(fold(m.getKey()));
+                    it.remove();
+                    changed = true;
+                }
+            }
+        }
+
+        // order: a move is ready once its target is not a pending source
+        Map<String, String> sourceByTarget = new HashMap<>();
+        for (Map.Entry<String, String> m : moves.entrySet()) sourceByTarget.put(fold(m.getValue()), m.getKey());
+
+        List<Step> steps = new ArrayList<>(moves.size() + 4);
+        Map<String, String> pending = new LinkedHashMap<>(moves);
+        Deque<String> ready = new ArrayDeque<>();
+        for (Map.Entry<String, String> m : moves.entrySet()) {
+            if (!sources.containsKey(fold(m.getValue()))) ready.add(m.getKey());
+        }
+
+        int temp = 0;
+        while (!pending.isEmpty()) {
+            if (ready.isEmpty()) {
+                // only cycles remain (including renames that change only case):
+                // park one member under a temporary name
+                String src = pending.keySet().iterator().next();
+                String tmp;
+                do {
+                    tmp = TEMP_PREFIX + (temp++) + "-" + src;
+                } while (occupied.contains(fold(tmp)));
+                occupied.add(fold(tmp));
+                steps.add(new Step(src, tmp));
+                String target = pending.remove(src);
+                pending.put(tmp, target);
+                sourceByTarget.put(fold(target), tmp);
+                String waiting = sourceByTarget.get(fold(src));
+                if (waiting != null) ready.add(waiting);
+                continue;
+            }
+
+            String src = ready.poll();
+            String target = pending.remove(src);
+            steps.add(new Step(src, target));
+            // src is now free: the move that targets it can go
+            String waiting = sourceByTarget.get(fold(src));
+            if (waiting != null && pending.containsKey(waiting)) ready.add(waiting);
+        }
+        return steps;
+    }
+
+    /**
+     * The name as a case-insensitive file system (Windows, macOS) compares
+     * it, so names that differ only in case count as the same file
+     */
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // ── applying ──
+
+    /**
+     * Applies the plan, directories in parallel, appending each completed
+     * move to {@code journal}. A failed move stops its directory, since
+     * later moves may depend on it; other directories carry on.
+     */
+    public void apply(Map<Path, List<Step>> plan, Path journal) throws IOException, InterruptedException {
+        try (BufferedWriter out = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            runParallel(plan, (dir, step) -> {
+                move(dir.resolve(step.from), dir.resolve(step.to));
+                synchronized (out) {
+                    out.write(dir.toAbsolutePath() + "\t" + step.from + "\t" + step.to + "\n");
+                    out.flush();
+                }
+                if (!step.to.startsWith(TEMP_PREFIX)) {
+                    System.out.println("Renamed: " + dir.resolve(step.from) + " -> " + step.to);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reverses every move recorded in {@code journal}, newest first, then
+     * renames the journal to *.undone so it is not replayed twice.
+     */
+    public static void undo(Path journal, int threads) throws IOException, InterruptedException {
+        Map<Path, List<Step>> reverse = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            String[] parts = lines.get(i).split("\t");
+            if (parts.length != 3) continue;
+            reverse.computeIfAbsent(Paths.get(parts[0]), k -> new ArrayList<>()).add(new Step(parts[2], parts[1]));
+        }
+
+        RenameEngine engine = new RenameEngine(name -> null, threads);
+        engine.runParallel(reverse, (dir, step) -> {
+            move(dir.resolve(step.from), dir.resolve(step.to));
+            if (!step.from.startsWith(TEMP_PREFIX)) {
+                System.out.println("Restored: " + dir.resolve(step.to));
+            }
+        });
+        Files.move(journal, journal.resolveSibling(journal.getFileName() + ".undone"), StandardCopyOption.REPLACE_EXISTING);
+        engine.printSummary();
+    }
+
+    private interface StepAction {
+        void run(Path dir, Step step) throws IOException;
+    }
+
+    private void runParallel(Map<Path, List<Step>> plan, StepAction action) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, plan.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<Path, List<Step>> e : plan.entrySet()) {
+                Path dir = e.getKey();
+                List<Step> steps = e.getValue();
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < steps.size(); i++) {
+                        Step step = steps.get(i);
+                        String format = Metrics.format(step.from);
+                        long t = System.nanoTime();
+                        try {
+                            action.run(dir, step);
+                            Metrics.stage(Metrics.WRITE, format, t);
+                            Metrics.file(format, true);
+                            moved.incrementAndGet();
+                        } catch (FileAlreadyExistsException ex) {
+                            // appeared since planning: leave both files as they are
+                            System.err.println("Skipping " + dir.resolve(step.from) + " -> " + step.to
+                                + ": target already exists.");
+                            skipped.incrementAndGet();
+                        } catch (IOException ex) {
+                            System.err.println("Failed to rename " + dir.resolve(step.from) + " -> " + step.to
+                                + ": " + ex + " (" + (steps.size() - i - 1) + " later rename(s) in this folder not attempted)");
+                            Metrics.file(format, false);
+                            failed.addAndGet(steps.size() - i);
+                            return;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException ex) {
+                    System.err.println("Unexpected rename error: " + ex.getCause());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Renames {@code from} to {@code to}, never replacing an existing file.
+     * ATOMIC_MOVE would replace one, and the plan's snapshot may be stale,
+     * so this is a plain move. Within one directory that is still a single
+     * rename, and on Windows it fails, without replacing, on any case
+     * variant of the target.
+     */
+    private static void move(Path from, Path to) throws IOException {
+        if (Files.exists(to, LinkOption.NOFOLLOW_LINKS)) throw new FileAlreadyExistsException(to.toString());
+        Files.move(from, to);
+    }
+
+    /**
+     * Number of renames skipped, while planning or because the target
+     * appeared before the move
+     */
+    public int skippedCount() {
+        return skipped.get();
+    }
+
+    public void printSummary() {
+        System.out.println("Done. Moves: " + moved.get()
+                + ", Skipped: " + skipped.get()
+                + ", Failed: " + failed.get());
+    }
+}
@@ -4,12 +4,14 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+
+import com.github.ledlogic.imgutils.FileDiscoveryService.Format;
 
 public class ResizerApp {
 	
-	private static JpgFilenameFilter jpgFilter = new JpgFilenameFilter();
-	
 	public static void main(String[] args) throws IOException, InterruptedException {
+		args = Metrics.init("ResizerApp", args);
 		String attackFolder = "G:\\My Drive\\Games\\Traveller\\Traveller Art\\Gals\\temp";
 		String outputFolder = "G:\\My Drive\\Games\\Traveller\\Traveller Art\\Gals\\temp";
 		File attackFolderFile = new File(attackFolder);
@@ -19,7 +21,7 @@ public class ResizerApp {
 			outputFolderFile.mkdirs();
 		}
 		
-		File[] jpgFiles = attackFolderFile.listFiles(jpgFilter);
+		List<File> jpgFiles = FileDiscoveryService.files(attackFolderFile, Format.JPEG);
 
 		String pattern = "yyyyMMddHHmm";
 		SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
@@ -13,27 +13,45 @@ public class ResizerService {
 	public static void convertWebFile(String inPath, String outPath, float scaleFactor) throws IOException, InterruptedException {
         BufferedImage img = null;
 		File inFile = new File(inPath);
+		String format = Metrics.format(inPath);
+		StageEvent decode = StageEvent.start(Metrics.DECODE, inPath, format);
         try{
             img = ImageIO.read(inFile);
         } catch(IOException e){
             System.out.println(e);
         }
+		decode.image(img).bytes(inFile.length()).finish();
 
-        int width = img.getWidth();
-        int height = img.getHeight();
-        
-        int targetWidth = Math.round(width * scaleFactor);
-        int targetHeight = Math.round(height * scaleFactor);
-        
-        Image scaledImage = img.getScaledInstance(targetWidth, targetHeight, Image.SCALE_SMOOTH);
-        BufferedImage outputImg = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-        outputImg.getGraphics().drawImage(scaledImage, 0, 0, null);
+		StageEvent transform = StageEvent.start(Metrics.TRANSFORM, inPath, format);
+        BufferedImage outputImg = scale(img, scaleFactor, BufferedImage.TYPE_INT_RGB);
+		transform.image(outputImg).finish();
         
         try{
             File outFile = new File(outPath);
+            StageEvent encode = StageEvent.start(Metrics.ENCODE, outPath, "jpg");
             ImageIO.write(outputImg, "jpg", outFile);
+            encode.image(outputImg).bytes(outFile.length()).finish();
+            Metrics.file(format, true);
         } catch(IOException e){
             System.out.println(e);
+            Metrics.file(format, false);
         }
 	}
+
+	/**
+	 * Scales {@code img} by {@code scaleFactor} with area-averaging into a new
+	 * image of the given BufferedImage type
+	 */
+	static BufferedImage scale(BufferedImage img, float scaleFactor, int type) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        
+        int targetWidth = Math.max(1, Math.round(width * scaleFactor));
+        int targetHeight = Math.max(1, Math.round(height * scaleFactor));
+        
+        Image scaledImage = img.getScaledInstance(targetWidth, targetHeight, Image.SCALE_SMOOTH);
+        BufferedImage outputImg = new BufferedImage(targetWidth, targetHeight, type);
+        outputImg.getGraphics().drawImage(scaledImage, 0, 0, null);
+        return outputImg;
+	}
 }
\ No newline at end of file
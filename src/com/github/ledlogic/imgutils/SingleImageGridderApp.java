@@ -2,15 +2,32 @@ package com.github.ledlogic.imgutils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 
 public class SingleImageGridderApp {
 	
+	// render PNG pages with ContactSheetCompositor instead of HTML
+	private static final boolean RASTER_OUTPUT = false;
+	
+	// write a PDF with PDFBox instead of HTML; no browser needed
+	private static final boolean PDF_OUTPUT = false;
+	
+	// page size for all outputs: letter, a4 or legal
+	private static final String PAGE_SIZE = "letter";
+	
+	// number of identical pages in the PDF output
+	private static final int PDF_PAGES = 1;
+	
 	public static void main(String[] args) throws IOException, InterruptedException {
+		args = Metrics.init("SingleImageGridderApp", args);
 		
 		// Single image file path
 		String attackFile = "G:\\My Drive\\Games\\Spaceballs\\the-shwartz.png";
@@ -30,8 +47,9 @@ public class SingleImageGridderApp {
 		float imageWidthInches = 1.1f;
 		float imageHeightInches = 1.1f;
 		
-		float pageWidthInches = 8.5f;
-		float pageHeightInches = 11.0f;
+		float[] pageInches = pageSizeInches(PAGE_SIZE);
+		float pageWidthInches = pageInches[0];
+		float pageHeightInches = pageInches[1];
 		
 		// Add margins (0.5 inch on each side)
 		float marginInches = 0.5f;
@@ -52,79 +70,87 @@ public class SingleImageGridderApp {
 		System.out.println("Total images per page: " + (cols * rows));
 		System.out.println("Image size: " + imageWidthPx + "px x " + imageHeightPx + "px");
 		
-		// Generate HTML page with print styles
-		List<String> html = new ArrayList<String>();
-		html.add("<!DOCTYPE html>");
-		html.add("<html>");
-		html.add("<head>");
-		html.add("<meta charset=\"UTF-8\">");
-		html.add("<title>Image Grid - " + truncName + "</title>");
-		html.add("<style>");
-		html.add("@page {");
-		html.add("  size: letter portrait;");
-		html.add("  margin: " + marginInches + "in;");
-		html.add("}");
-		html.add("body {");
-		html.add("  margin: 0;");
-		html.add("  padding: 0;");
-		html.add("  font-family: Arial, sans-serif;");
-		html.add("}");
-		html.add(".page {");
-		html.add("  width: " + pageWidthPx + "px;");
-		html.add("  height: " + pageHeightPx + "px;");
-		html.add("  padding: " + marginPx + "px;");
-		html.add("  box-sizing: border-box;");
-		html.add("  page-break-after: always;");
-		html.add("}");
-		html.add(".grid-container {");
-		html.add("  display: grid;");
-		html.add("  grid-template-columns: repeat(" + cols + ", " + imageWidthPx + "px);");
-		html.add("  grid-template-rows: repeat(" + rows + ", " + imageHeightPx + "px);");
-		html.add("  gap: 0;");
-		html.add("}");
-		html.add(".grid-item {");
-		html.add("  width: " + imageWidthPx + "px;");
-		html.add("  height: " + imageHeightPx + "px;");
-		html.add("  border: 1px solid #ccc;");
-		html.add("  box-sizing: border-box;");
-		html.add("  overflow: hidden;");
-		html.add("}");
-		html.add(".grid-item img {");
-		html.add("  width: 100%;");
-		html.add("  height: 100%;");
-		html.add("  object-fit: contain;");
-		html.add("}");
-		html.add("@media print {");
-		html.add("  .grid-item {");
-		html.add("    border: 1px solid #000;");
-		html.add("    -webkit-print-color-adjust: exact;");
-		html.add("    print-color-adjust: exact;");
-		html.add("  }");
-		html.add("}");
-		html.add("</style>");
-		html.add("</head>");
-		html.add("<body>");
-		
-		// Create one page with grid
-		html.add("<div class=\"page\">");
-		html.add("<div class=\"grid-container\">");
-		
-		int totalImages = cols * rows;
-		for (int i = 0; i < totalImages; i++) {
-			html.add("<div class=\"grid-item\">");
-			html.add("<img src=\"" + name + "\" alt=\"" + truncName + "\" />");
-			html.add("</div>");
+		// print-ready PNG page instead of an HTML page and a browser print
+		if (RASTER_OUTPUT) {
+			ContactSheetCompositor.Section section = new ContactSheetCompositor.Section(
+				List.of(imageFile), imageWidthInches * 96f, 1, false, false, true);
+			new ContactSheetCompositor(300, pageWidthInches, pageHeightInches, marginInches, "png", Runtime.getRuntime().availableProcessors())
+				.render(List.of(section), imageFile.getParentFile(), "image-grid-" + truncName);
+			return;
 		}
 		
-		html.add("</div>"); // close grid-container
-		html.add("</div>"); // close page
+		// print-size thumbnail, referenced by every cell
+		ThumbnailCache thumbnailCache = new ThumbnailCache(new File(imageFile.getParentFile(), ".thumbs"));
+		File thumb = thumbnailCache.thumbnails(List.of(imageFile), Math.max(imageWidthPx, imageHeightPx)).get(imageFile);
+		String src = ThumbnailCache.htmlSrc(thumb);
 		
-		html.add("</body>");
-		html.add("</html>");
+		// PDF with the thumbnail embedded once and drawn in every cell
+		if (PDF_OUTPUT) {
+			File pdfFile = new File(imageFile.getParentFile(), "image-grid-" + truncName + ".pdf");
+			writePdfGrid(thumb, pdfFile, pageWidthInches, pageHeightInches, marginInches,
+				imageWidthInches, imageHeightInches, cols, rows, PDF_PAGES);
+			return;
+		}
 		
+		// Generate HTML page with print styles, streamed straight to disk
 		// Save to same directory as the image
 		File outFile = new File(imageFile.getParent() + "\\image-grid-" + truncName + ".html");
-		FileUtils.write(outFile, StringUtils.join(html, "\n"), "UTF-8");
+		try (HtmlGridRenderer html = new HtmlGridRenderer(outFile)) {
+			html.css("@page {");
+			html.css("  size: " + PAGE_SIZE + " portrait;");
+			html.css("  margin: " + marginInches + "in;");
+			html.css("}");
+			html.css("body {");
+			html.css("  margin: 0;");
+			html.css("  padding: 0;");
+			html.css("  font-family: Arial, sans-serif;");
+			html.css("}");
+			html.css(".page {");
+			html.css("  width: " + pageWidthPx + "px;");
+			html.css("  height: " + pageHeightPx + "px;");
+			html.css("  padding: " + marginPx + "px;");
+			html.css("  box-sizing: border-box;");
+			html.css("  page-break-after: always;");
+			html.css("}");
+			html.css(".grid-container {");
+			html.css("  display: grid;");
+			html.css("  grid-template-columns: repeat(" + cols + ", " + imageWidthPx + "px);");
+			html.css("  grid-template-rows: repeat(" + rows + ", " + imageHeightPx + "px);");
+			html.css("  gap: 0;");
+			html.css("}");
+			html.css(".grid-item {");
+			html.css("  width: " + imageWidthPx + "px;");
+			html.css("  height: " + imageHeightPx + "px;");
+			html.css("  border: 1px solid #ccc;");
+			html.css("  box-sizing: border-box;");
+			html.css("  overflow: hidden;");
+			html.css("}");
+			html.css(".grid-item img {");
+			html.css("  width: 100%;");
+			html.css("  height: 100%;");
+			html.css("  object-fit: contain;");
+			html.css("}");
+			html.css("@media print {");
+			html.css("  .grid-item {");
+			html.css("    border: 1px solid #000;");
+			html.css("    -webkit-print-color-adjust: exact;");
+			html.css("    print-color-adjust: exact;");
+			html.css("  }");
+			html.css("}");
+			html.beginBody("Image Grid - " + truncName);
+			
+			// Create one page with grid
+			html.openDiv("page");
+			html.openDiv("grid-container");
+			
+			int totalImages = cols * rows;
+			for (int i = 0; i < totalImages; i++) {
+				html.cell("grid-item", src, truncName, null);
+			}
+			
+			html.closeDiv(); // close grid-container
+			html.closeDiv(); // close page
+		}
 		
 		System.out.println("HTML file created: " + outFile.getAbsolutePath());
 		
@@ -132,4 +158,84 @@ public class SingleImageGridderApp {
 		String[] cmd = { "\"C:\\Program Files\\Google\\Chrome\\Application\\chrome.exe\" \"file:///" + outFile.getAbsolutePath() + "\"" };
 		Process proc = Runtime.getRuntime().exec(cmd);
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Page width and height in inches for a named page size (letter, a4, legal)
+	 */
+	static float[] pageSizeInches(String pageSize) {
+		switch (pageSize.toLowerCase()) {
+			case "letter": return new float[] { 8.5f, 11.0f };
+			case "a4": return new float[] { 210f / 25.4f, 297f / 25.4f };
+			case "legal": return new float[] { 8.5f, 14.0f };
+			default: throw new IllegalArgumentException("Unknown page size: " + pageSize);
+		}
+	}
+	
+	/**
+	 * Writes the grid as a PDF. The image is embedded once as a single image
+	 * XObject, the grid is drawn into one content stream and every page
+	 * references that same stream, so file size and generation time barely
+	 * change with the number of copies.
+	 * Cells use the same margin and cell maths as the HTML page: a 1px
+	 * (0.75pt) border and the image fitted inside it (object-fit: contain).
+	 */
+	static void writePdfGrid(File image, File pdfFile, float pageWidthInches, float pageHeightInches,
+			float marginInches, float imageWidthInches, float imageHeightInches,
+			int cols, int rows, int pages) throws IOException {
+		long start = System.nanoTime();
+		
+		PDRectangle pageSize = new PDRectangle(pageWidthInches * 72f, pageHeightInches * 72f);
+		float margin = marginInches * 72f;
+		float cellW = imageWidthInches * 72f;
+		float cellH = imageHeightInches * 72f;
+		float border = 0.75f;
+		
+		try (PDDocument document = new PDDocument()) {
+			// Embedded once; JPEG data is copied as-is rather than re-encoded
+			PDImageXObject xobject = PDImageXObject.createFromFileByContent(image, document);
+			
+			// Fit the image inside the cell border, centered
+			float innerW = cellW - 2 * border;
+			float innerH = cellH - 2 * border;
+			float scale = Math.min(innerW / xobject.getWidth(), innerH / xobject.getHeight());
+			float drawW = xobject.getWidth() * scale;
+			float drawH = xobject.getHeight() * scale;
+			float offsetX = border + (innerW - drawW) / 2;
+			float offsetY = border + (innerH - drawH) / 2;
+			
+			// Draw the grid once on the first page
+			PDPage first = new PDPage(pageSize);
+			document.addPage(first);
+			try (PDPageContentStream cs = new PDPageContentStream(document, first)) {
+				cs.setLineWidth(border);
+				for (int r = 0; r < rows; r++) {
+					// PDF y runs up from the bottom of the page
+					float y = pageSize.getHeight() - margin - (r + 1) * cellH;
+					for (int c = 0; c < cols; c++) {
+						float x = margin + c * cellW;
+						cs.drawImage(xobject, x + offsetX, y + offsetY, drawW, drawH);
+						cs.addRect(x + border / 2, y + border / 2, cellW - border, cellH - border);
+					}
+				}
+				cs.stroke();
+			}
+			
+			// Further pages share the first page's content stream and resources
+			PDStream content = first.getContentStreams().next();
+			for (int p = 1; p < pages; p++) {
+				PDPage page = new PDPage(pageSize);
+				page.setContents(content);
+				page.setResources(first.getResources());
+				document.addPage(page);
+			}
+			
+			document.save(pdfFile);
+		}
+		Metrics.stage(Metrics.ENCODE, "pdf", start);
+		Metrics.bytesWritten("pdf", pdfFile.length());
+		
+		System.out.println(String.format("PDF file created: %s (%d page(s), %d cells, %.1f KB, %.1f ms)",
+			pdfFile.getAbsolutePath(), pages, pages * cols * rows,
+			pdfFile.length() / 1024.0, (System.nanoTime() - start) / 1e6));
+	}
+}
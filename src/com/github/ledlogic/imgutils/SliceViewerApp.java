@@ -25,6 +25,8 @@ import java.util.concurrent.atomic.*;
  *                             .pm7 .pm7m .pwmb .pwms .pwmx .pwmo .pws .pw0
  *                             .pwx .dlp .dl2p .pwsq .pwc
  *   Lychee Slicer:            .lys
+ *   STL mesh:                 .stl (rendered with StlThumbnailRenderer; skipped
+ *                             when a slicer file with the same stem exists)
  *
  * Usage:
  *   java SliceViewerApp [options] <file|dir> [<file|dir> ...]
@@ -146,6 +148,7 @@ public class SliceViewerApp {
     // =========================================================================
 
     public static void main(String[] args) {
+        args = Metrics.init("SliceViewerApp", args);
         new SliceViewerApp().run(args);
     }
 
@@ -320,8 +323,15 @@ public class SliceViewerApp {
         String name  = src.getFileName().toString();
         String lower = name.toLowerCase();
 
-        boolean matched = SLICER_EXTS.stream().anyMatch(lower::endsWith);
-        if (!matched) return;
+        boolean stl = lower.endsWith(".stl");
+        if (!isPreviewSource(lower)) return;
+
+        // A sliced file's embedded preview wins over rendering its source STL
+        if (stl && hasSlicerSibling(src)) {
+            if (verbose) System.out.println(
+                "  PREF  " + src.getFileName() + "  (skipped — sliced file with the same name exists)");
+            return;
+        }
 
         // Prefer .lys over any Anycubic binary with the same stem.
         // The .lys preview is a full 512x512 PNG; the .pm4n preview is a
@@ -350,8 +360,14 @@ public class SliceViewerApp {
         }
 
         try {
+            String format = Metrics.format(name);
+            StageEvent decode = StageEvent.start(Metrics.DECODE, src.toString(), format);
             BufferedImage preview = loadPreview(src.toFile());
+            decode.image(preview).bytes(Files.size(src)).finish();
+            StageEvent encode = StageEvent.start(Metrics.ENCODE, jpegPath.toString(), "jpg");
             writeJpeg(preview, jpegPath);
+            encode.image(preview).bytes(Files.size(jpegPath)).finish();
+            Metrics.file(format, true);
             exported.incrementAndGet();
             System.out.println("  OK    " + src.getFileName() + "  ->  " + jpegPath);
             if (htmlOutput != null) {
@@ -364,10 +380,35 @@ public class SliceViewerApp {
             }
         } catch (IOException e) {
             errors.incrementAndGet();
+            Metrics.file(Metrics.format(name), false);
             err("  FAIL  " + src + ": " + e.getMessage());
         }
     }
 
+    /**
+     * True if a preview can be extracted from (or rendered for) a file with
+     * this lower-case name.
+     */
+    static boolean isPreviewSource(String lower) {
+        return lower.endsWith(".stl") || SLICER_EXTS.stream().anyMatch(lower::endsWith);
+    }
+
+    private static boolean hasSlicerSibling(Path src) {
+        String name = src.getFileName().toString();
+        String stem = name.substring(0, name.lastIndexOf('.'));
+        Path parent = src.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> siblings = Files.newDirectoryStream(parent,
+                p -> p.getFileName().toString().regionMatches(true, 0, stem + ".", 0, stem.length() + 1))) {
+            for (Path sibling : siblings) {
+                String lower = sibling.getFileName().toString().toLowerCase();
+                if (SLICER_EXTS.stream().anyMatch(lower::endsWith)) return true;
+            }
+        } catch (IOException e) {
+            // unreadable directory: render the STL anyway
+        }
+        return false;
+    }
+
     private Path resolveOutputPath(Path src, String name) {
         int dot = name.lastIndexOf('.');
         String stem     = (dot > 0) ? name.substring(0, dot) : name;
@@ -384,8 +425,16 @@ public class SliceViewerApp {
     // =========================================================================
 
     private void writeJpeg(BufferedImage img, Path dest) throws IOException {
-        // Flatten to RGB using bgColor if the image has alpha
-        img = flattenToRgb(img, bgColor);
+        writeJpeg(img, dest, jpegQuality, bgColor);
+    }
+
+    /**
+     * Write {@code img} as a JPEG at the given quality (0-1), flattening any
+     * alpha over {@code bg}. Creates the parent directory if needed.
+     */
+    static void writeJpeg(BufferedImage img, Path dest, float quality, Color bg) throws IOException {
+        // Flatten to RGB using bg if the image has alpha
+        img = flattenToRgb(img, bg);
 
         Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
         if (!writers.hasNext()) throw new IOException("No JPEG ImageWriter available");
@@ -393,7 +442,7 @@ public class SliceViewerApp {
 
         ImageWriteParam param = writer.getDefaultWriteParam();
         param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionQuality(jpegQuality);
+        param.setCompressionQuality(quality);
 
         Path parent = dest.getParent();
         if (parent != null) Files.createDirectories(parent);
@@ -433,6 +482,7 @@ public class SliceViewerApp {
         String name = file.getName().toLowerCase();
         if (isAnycubicExt(name)) return parseAnycubicFile(file);
         if (name.endsWith(".lys")) return parseLycheeFile(file);
+        if (name.endsWith(".stl")) return StlThumbnailRenderer.renderPreview(file.toPath());
         // Unknown extension — try both parsers
         try { return parseAnycubicFile(file); } catch (IOException ignored) {}
         try { return parseLycheeFile(file);   } catch (IOException ignored) {}
@@ -769,6 +819,7 @@ public class SliceViewerApp {
             "  .pm4n .pm4u .pm3n .pm3 .pm3m .pm3r .pm5 .pm5s .pm7 .pm7m\n" +
             "  .pwmb .pwms .pwmx .pwmo .pws .pw0 .pwx .dlp .dl2p .pwsq .pwc\n" +
             "  .lys\n" +
+            "  .stl  (rendered isometric preview, unless a sliced file shares its name)\n" +
             "\n" +
             "Output: <source-stem>.preview.jpg in the same directory as the source file,\n" +
             "         or in --output-dir if specified.\n" +
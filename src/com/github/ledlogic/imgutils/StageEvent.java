@@ -0,0 +1,105 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.image.BufferedImage;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * StageEvent - a JFR event for one stage of processing one file
+ *
+ * Spans the same stages as {@link Metrics} (read, decode, transform,
+ * encode, write) and carries the file, its format, the image dimensions
+ * and the bytes read or written. In a flight recording, a slow file shows
+ * up as one long event next to the GC, allocation and thread data for the
+ * same time window. The histograms in Metrics tell you that a slow file
+ * exists, and the events tell you which file it was.
+ *
+ * {@link #finish} also records the stage in Metrics, so an instrumented
+ * stage shows up in both without being timed twice:
+ *
+ *   StageEvent decode = StageEvent.start(Metrics.DECODE, file.getPath(), "png");
+ *   BufferedImage img = ImageIO.read(file);
+ *   decode.image(img).bytes(file.length()).finish();
+ *
+ * While no recording is running, JFR disables the event: begin() and
+ * commit() do nothing, and the remaining cost is a plain object that
+ * escape analysis usually removes.
+ *
+ * Usage:
+ *   java ImageCropApp ./maps --jfr crop.jfr
+ *   jfr print --events com.github.ledlogic.imgutils.Stage crop.jfr
+ *   jfr summary crop.jfr          (or open it in JDK Mission Control)
+ */
+@Name("com.github.ledlogic.imgutils.Stage")
+@Label("Processing Stage")
+@Category({ "imgutils" })
+@Description("One stage of processing one file")
+@StackTrace(false)
+public class StageEvent extends Event {
+
+    @Label("Tool")
+    String tool;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Path")
+    String path;
+
+    @Label("Format")
+    String format;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /** Not recorded: the start stamp handed to Metrics */
+    private transient long startNanos;
+
+    /** Begins timing {@code stage} on the file at {@code path} */
+    public static StageEvent start(String stage, String path, String format) {
+        StageEvent e = new StageEvent();
+        e.tool = Metrics.tool();
+        e.stage = stage;
+        e.path = path;
+        e.format = format;
+        e.startNanos = System.nanoTime();
+        e.begin();
+        return e;
+    }
+
+    /** Records the dimensions of {@code img}, if there is one */
+    public StageEvent image(BufferedImage img) {
+        if (img != null) {
+            width = img.getWidth();
+            height = img.getHeight();
+        }
+        return this;
+    }
+
+    public StageEvent bytes(long bytes) {
+        this.bytes = bytes;
+        return this;
+    }
+
+    /**
+     * Ends the stage: records it in Metrics and commits the event when a
+     * recording wants it
+     */
+    public void finish() {
+        Metrics.stage(stage, format, startNanos);
+        commit();
+    }
+}
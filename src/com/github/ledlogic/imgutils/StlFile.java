@@ -0,0 +1,267 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * StlFile - streams the triangles of a binary or ASCII STL file
+ *
+ * Binary STL is an 80-byte header, a little-endian triangle count and one
+ * 50-byte record per triangle (normal, three vertices, attribute word). The
+ * records are memory-mapped in chunks and each chunk is handed to its own
+ * {@link TriangleVisitor} on a worker thread, reading the floats straight
+ * out of the mapping; no object is created per triangle.
+ *
+ * ASCII STL ("solid ... facet ... vertex x y z ... endsolid") has no fixed
+ * record size, so it is parsed line by line on the calling thread into a
+ * single visitor.
+ *
+ * A file is ASCII when it starts with "solid" and its first kilobyte is
+ * text holding "facet" or "endsolid"; many binary exporters also start the
+ * header with "solid", but their counts and floats are not text. Anything
+ * else is binary if the header's count fits in the file (84 + 50 * count
+ * bytes or more; some exporters append data after the records). A count
+ * of 0 in a file with records is taken to be unwritten, and the whole
+ * records present are read instead. A file that fits neither is an error,
+ * never an empty mesh.
+ *
+ * Usage:
+ *   List<MeshStats> parts = StlFile.scan(path, threads, MeshStats::new);
+ *   MeshStats stats = MeshStats.merge(parts);
+ */
+public class StlFile {
+
+    static final int HEADER_BYTES = 84;
+    static final int RECORD_BYTES = 50;
+
+    /** Triangles per mapped chunk (about 64 MB) */
+    private static final int CHUNK_TRIANGLES = (64 * 1024 * 1024) / RECORD_BYTES;
+
+    /**
+     * Receives the three vertices of each triangle. The facet normal is not
+     * passed on; it is unreliable in practice and recomputed where needed.
+     */
+    public interface TriangleVisitor {
+        void triangle(float ax, float ay, float az,
+                      float bx, float by, float bz,
+                      float cx, float cy, float cz);
+    }
+
+    /** Bytes looked at to tell ASCII from binary */
+    private static final int SNIFF_BYTES = 1024;
+
+    /**
+     * Returns the number of triangle records to read from a binary STL, or
+     * -1 if the file is ASCII STL. Throws if the file is neither.
+     */
+    public static long binaryTriangleCount(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, SNIFF_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && ch.read(head, head.position()) > 0) {
+                // read the whole sniff window
+            }
+            if (isAscii(head.array(), head.position())) return -1;
+            if (size < HEADER_BYTES) {
+                throw new IOException("Not an STL file (" + size + " bytes, not ASCII STL): " + file);
+            }
+            long declared = Integer.toUnsignedLong(head.getInt(80));
+            long available = (size - HEADER_BYTES) / RECORD_BYTES;
+            if (declared == 0) return available;
+            if (declared > available) {
+                throw new IOException("Not an STL file: header declares " + declared + " triangles, "
+                    + size + " bytes hold at most " + available + ": " + file);
+            }
+            return declared;
+        }
+    }
+
+    /**
+     * True if {@code head} starts with "solid" (after any whitespace) and is
+     * plain text that names a facet or ends the solid
+     */
+    static boolean isAscii(byte[] head, int length) {
+        int start = 0;
+        while (start < length && Character.isWhitespace(head[start])) start++;
+        if (length - start < 5 || !new String(head, start, 5, StandardCharsets.US_ASCII).equalsIgnoreCase("solid")) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            int b = head[i] & 0xFF;
+            if (b >= 0x7F || (b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f')) return false;
+        }
+        String text = new String(head, start, length - start, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+        return text.contains("facet") || text.contains("endsolid");
+    }
+
+    /**
+     * Streams every triangle of {@code file} through visitors made by
+     * {@code factory}. Binary files are split into mapped chunks visited in
+     * parallel on {@code threads} threads, one visitor per chunk; ASCII
+     * files use a single visitor. Returns the visitors in file order, for
+     * the caller to merge.
+     */
+    public static <V extends TriangleVisitor> List<V> scan(Path file, int threads, Supplier<V> factory)
+            throws IOException {
+        long count = binaryTriangleCount(file);
+        if (count < 0) {
+            V visitor = factory.get();
+            scanAscii(file, visitor);
+            return List.of(visitor);
+        }
+        if (count == 0) return List.of(factory.get());
+
+        List<V> visitors = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long first = 0; first < count; first += CHUNK_TRIANGLES) {
+                int n = (int) Math.min(CHUNK_TRIANGLES, count - first);
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + first * RECORD_BYTES, (long) n * RECORD_BYTES);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                V visitor = factory.get();
+                visitors.add(visitor);
+                futures.add(pool.submit(() -> visitRecords(map, n, visitor)));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Could not read " + file + ": " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        } finally {
+            pool.shutdown();
+        }
+        return visitors;
+    }
+
+    /**
+     * Visits {@code n} binary records starting at position 0 of {@code map}.
+     */
+    static void visitRecords(ByteBuffer map, int n, TriangleVisitor visitor) {
+        for (int i = 0, p = 12; i < n; i++, p += RECORD_BYTES) {
+            // skip the 12-byte normal; vertices follow
+            visitor.triangle(
+                map.getFloat(p),      map.getFloat(p + 4),  map.getFloat(p + 8),
+                map.getFloat(p + 12), map.getFloat(p + 16), map.getFloat(p + 20),
+                map.getFloat(p + 24), map.getFloat(p + 28), map.getFloat(p + 32));
+        }
+    }
+
+    private static void scanAscii(Path file, TriangleVisitor visitor) throws IOException {
+        float[] v = new float[9];
+        int k = 0;
+        long facets = 0, triangles = 0;
+        try (InputStream in = Files.newInputStream(file);
+             BufferedReader reader = new BufferedReader(
+                 new InputStreamReader(in, StandardCharsets.US_ASCII), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("facet")) facets++;
+                if (!line.startsWith("vertex")) continue;
+
+                String[] parts = line.split("\\s+");
+                if (parts.length < 4) throw new IOException("Bad vertex line in " + file + ": " + line);
+                try {
+                    v[k++] = Float.parseFloat(parts[1]);
+                    v[k++] = Float.parseFloat(parts[2]);
+                    v[k++] = Float.parseFloat(parts[3]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad vertex line in " + file + ": " + line);
+                }
+                if (k == 9) {
+                    visitor.triangle(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8]);
+                    triangles++;
+                    k = 0;
+                }
+            }
+        }
+        if (k != 0 || triangles < facets) {
+            throw new IOException("Not a valid ASCII STL file: " + facets + " facets but "
+                + triangles + " complete triangles: " + file);
+        }
+    }
+
+    // ── statistics ──
+
+    /**
+     * Triangle count, bounding box, surface area and enclosed volume. The
+     * volume is the sum of signed tetrahedra against the origin, so it is
+     * exact for closed meshes whatever their position.
+     */
+    public static class MeshStats implements TriangleVisitor {
+        public long triangles;
+        public double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        public double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        public double area;
+        private double signedVolume;
+
+        @Override
+        public void triangle(float ax, float ay, float az,
+                             float bx, float by, float bz,
+                             float cx, float cy, float cz) {
+            triangles++;
+            minX = Math.min(minX, Math.min(ax, Math.min(bx, cx)));
+            minY = Math.min(minY, Math.min(ay, Math.min(by, cy)));
+            minZ = Math.min(minZ, Math.min(az, Math.min(bz, cz)));
+            maxX = Math.max(maxX, Math.max(ax, Math.max(bx, cx)));
+            maxY = Math.max(maxY, Math.max(ay, Math.max(by, cy)));
+            maxZ = Math.max(maxZ, Math.max(az, Math.max(bz, cz)));
+
+            double ux = bx - ax, uy = by - ay, uz = bz - az;
+            double vx = cx - ax, vy = cy - ay, vz = cz - az;
+            double nx = uy * vz - uz * vy;
+            double ny = uz * vx - ux * vz;
+            double nz = ux * vy - uy * vx;
+            area += 0.5 * Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+            // a . (b x c) / 6
+            signedVolume += (ax * ((double) by * cz - (double) bz * cy)
+                           - ay * ((double) bx * cz - (double) bz * cx)
+                           + az * ((double) bx * cy - (double) by * cx)) / 6.0;
+        }
+
+        /** Enclosed volume, in cubic model units */
+        public double volume() {
+            return Math.abs(signedVolume);
+        }
+
+        public static MeshStats merge(List<MeshStats> parts) {
+            MeshStats total = new MeshStats();
+            for (MeshStats p : parts) {
+                total.triangles += p.triangles;
+                total.minX = Math.min(total.minX, p.minX);
+                total.minY = Math.min(total.minY, p.minY);
+                total.minZ = Math.min(total.minZ, p.minZ);
+                total.maxX = Math.max(total.maxX, p.maxX);
+                total.maxY = Math.max(total.maxY, p.maxY);
+                total.maxZ = Math.max(total.maxZ, p.maxZ);
+                total.area += p.area;
+                total.signedVolume += p.signedVolume;
+            }
+            return total;
+        }
+    }
+}
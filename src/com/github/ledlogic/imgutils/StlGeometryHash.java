@@ -0,0 +1,99 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * StlGeometryHash - identifies an STL mesh by its geometry alone
+ *
+ * Two files hash the same when they hold the same set of triangles, however
+ * they are stored: binary or ASCII, any header or solid name, any triangle
+ * order, any vertex order within a triangle, and any normals or attribute
+ * bytes.
+ *
+ * Each vertex coordinate is quantized to 1/1000 of a model unit (1 µm for
+ * millimetre models), which absorbs the rounding of ASCII exports. The
+ * three vertices are sorted, mixed into two independent 64-bit hashes, and
+ * the per-triangle hashes are summed. Addition is commutative, so the
+ * mapped chunks of a binary file can be hashed in parallel and merged in
+ * any order.
+ *
+ * A file with no triangles has no hash: empty meshes carry no geometry to
+ * compare, and calling them all the same part would make every empty or
+ * placeholder file a duplicate of the first one.
+ *
+ * Usage:
+ *   String hash = StlGeometryHash.of(path, threads);
+ */
+public class StlGeometryHash implements StlFile.TriangleVisitor {
+
+    private static final double QUANTUM = 1000.0;
+
+    private long triangles;
+    private long sumA;
+    private long sumB;
+
+    /**
+     * Geometry hash of {@code file}: the triangle count and two 64-bit sums,
+     * as 48 hex digits. Returns null if the file holds no triangles, and
+     * throws if it is not an STL file.
+     */
+    public static String of(Path file, int threads) throws IOException {
+        List<StlGeometryHash> parts = StlFile.scan(file, threads, StlGeometryHash::new);
+        long triangles = 0, a = 0, b = 0;
+        for (StlGeometryHash p : parts) {
+            triangles += p.triangles;
+            a += p.sumA;
+            b += p.sumB;
+        }
+        if (triangles == 0) return null;
+        return String.format("%016x%016x%016x", triangles, a, b);
+    }
+
+    @Override
+    public void triangle(float ax, float ay, float az,
+                         float bx, float by, float bz,
+                         float cx, float cy, float cz) {
+        long x0 = q(ax), y0 = q(ay), z0 = q(az);
+        long x1 = q(bx), y1 = q(by), z1 = q(bz);
+        long x2 = q(cx), y2 = q(cy), z2 = q(cz);
+
+        // sort the three vertices lexicographically (three compare-swaps)
+        if (less(x1, y1, z1, x0, y0, z0)) {
+            long t; t = x0; x0 = x1; x1 = t; t = y0; y0 = y1; y1 = t; t = z0; z0 = z1; z1 = t;
+        }
+        if (less(x2, y2, z2, x1, y1, z1)) {
+            long t; t = x1; x1 = x2; x2 = t; t = y1; y1 = y2; y2 = t; t = z1; z1 = z2; z2 = t;
+            if (less(x1, y1, z1, x0, y0, z0)) {
+                t = x0; x0 = x1; x1 = t; t = y0; y0 = y1; y1 = t; t = z0; z0 = z1; z1 = t;
+            }
+        }
+
+        long h = 0x9E3779B97F4A7C15L;
+        h = mix(h ^ x0); h = mix(h ^ y0); h = mix(h ^ z0);
+        h = mix(h ^ x1); h = mix(h ^ y1); h = mix(h ^ z1);
+        h = mix(h ^ x2); h = mix(h ^ y2); h = mix(h ^ z2);
+
+        triangles++;
+        sumA += h;
+        sumB += mix(h ^ 0xD6E8FEB86659FD93L);
+    }
+
+    private static long q(float v) {
+        return Math.round(v * QUANTUM);
+    }
+
+    private static boolean less(long ax, long ay, long az, long bx, long by, long bz) {
+        if (ax != bx) return ax < bx;
+        if (ay != by) return ay < by;
+        return az < bz;
+    }
+
+    /** SplitMix64 finalizer */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
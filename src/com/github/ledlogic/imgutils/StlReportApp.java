@@ -0,0 +1,196 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * StlReport - mesh statistics for every STL file in a tree
+ *
+ * For each *.stl file writes the triangle count, bounding box, surface area
+ * and enclosed volume, as CSV or JSON. Binary files are read through
+ * memory-mapped chunks reduced in parallel (see StlFile); ASCII files are
+ * parsed line by line.
+ *
+ * volume_ml assumes the model is in millimetres (1 mL = 1000 mm³), as for
+ * slicer exports, which makes it a direct resin estimate for solid prints.
+ *
+ * Usage:
+ *   java StlReport <dir|file> [--format csv|json] [--out FILE] [--threads N]
+ *
+ * Example:
+ *   java StlReport "C:\Users\Jeff\Desktop\SUP_Files" --format csv --out sup-report.csv
+ */
+public class StlReportApp {
+
+    private static final String[] COLUMNS = {
+        "path", "format", "triangles",
+        "min_x", "min_y", "min_z", "max_x", "max_y", "max_z",
+        "area", "volume", "volume_ml"
+    };
+
+    public static void main(String[] args) throws IOException {
+        args = Metrics.init("StlReportApp", args);
+        // ── Argument handling ──────────────────────────────────────────────
+        if (args.length < 1) {
+            System.out.println("Usage: java StlReport <dir|file> [--format csv|json] [--out FILE] [--threads N]");
+            System.exit(1);
+        }
+
+        Path source   = Paths.get(args[0]);
+        String format = flagValue(args, "--format", "csv").toLowerCase();
+        String out    = flagValue(args, "--out", null);
+        int threads   = Integer.parseInt(flagValue(args, "--threads",
+                            String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        if (!format.equals("csv") && !format.equals("json")) {
+            System.err.println("ERROR: --format must be csv or json");
+            System.exit(1);
+        }
+        if (!Files.exists(source)) {
+            System.err.println("ERROR: Not found: " + source.toAbsolutePath());
+            System.exit(1);
+        }
+
+        List<Path> files = findStlFiles(source);
+        System.err.println("Found " + files.size() + " STL file(s) under " + source.toAbsolutePath());
+
+        // ── Report ────────────────────────────────────────────────────────
+        long start = System.nanoTime();
+        long bytes = 0;
+        int failed = 0;
+
+        Writer writer = (out == null)
+            ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+            : Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8);
+        try (PrintWriter pw = new PrintWriter(writer)) {
+            if (format.equals("csv")) {
+                pw.println(String.join(",", COLUMNS));
+            } else {
+                pw.println("[");
+            }
+
+            int rows = 0;
+            for (Path file : files) {
+                StlFile.MeshStats stats;
+                boolean binary;
+                try {
+                    long t0 = System.nanoTime();
+                    binary = StlFile.binaryTriangleCount(file) >= 0;
+                    stats = StlFile.MeshStats.merge(StlFile.scan(file, threads, StlFile.MeshStats::new));
+                    long size = Files.size(file);
+                    bytes += size;
+                    Metrics.stage(Metrics.READ, "stl", t0);
+                    Metrics.bytesRead("stl", size);
+                    Metrics.file("stl", true);
+                    System.err.println(String.format(Locale.ROOT, "  %s: %,d triangles, %.1f MB/s",
+                        file.getFileName(), stats.triangles, size / 1048576.0 / ((System.nanoTime() - t0) / 1e9)));
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("  FAILED: " + file + " (" + e.getMessage() + ")");
+                    Metrics.file("stl", false);
+                    failed++;
+                    continue;
+                }
+
+                String[] values = row(file, binary, stats);
+                if (format.equals("csv")) {
+                    values[0] = csv(values[0]);
+                    pw.println(String.join(",", values));
+                } else {
+                    if (rows > 0) pw.println(",");
+                    pw.print(json(values));
+                }
+                rows++;
+            }
+
+            if (format.equals("json")) {
+                if (rows > 0) pw.println();
+                pw.println("]");
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.println(String.format(Locale.ROOT, "Done! %d file(s), %.1f MB in %.2f s (%.1f MB/s), %d failed%s",
+            files.size() - failed, bytes / 1048576.0, seconds, bytes / 1048576.0 / seconds, failed,
+            out == null ? "" : " -> " + Paths.get(out).toAbsolutePath()));
+    }
+
+    private static String[] row(Path file, boolean binary, StlFile.MeshStats s) {
+        boolean empty = s.triangles == 0;
+        return new String[] {
+            file.toString(),
+            binary ? "binary" : "ascii",
+            String.valueOf(s.triangles),
+            num(empty ? 0 : s.minX), num(empty ? 0 : s.minY), num(empty ? 0 : s.minZ),
+            num(empty ? 0 : s.maxX), num(empty ? 0 : s.maxY), num(empty ? 0 : s.maxZ),
+            num(s.area), num(s.volume()), num(s.volume() / 1000.0)
+        };
+    }
+
+    private static String json(String[] values) {
+        StringBuilder sb = new StringBuilder("  {");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append('"').append(COLUMNS[i]).append("\": ");
+            if (i < 2) {
+                sb.append('"').append(values[i].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            } else {
+                sb.append(values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String csv(String value) {
+        if (value.contains(",") || value.contains("\"")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private static String num(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static List<Path> findStlFiles(Path source) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isRegularFile(source)) {
+            files.add(source);
+            return files;
+        }
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().toLowerCase().endsWith(".stl")) files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                System.err.println("Could not read: " + file + " (" + exc.getMessage() + ")");
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(null);
+        return files;
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
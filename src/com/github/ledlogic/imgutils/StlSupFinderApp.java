@@ -1,6 +1,7 @@
 package com.github.ledlogic.imgutils;
 
 import java.io.IOException;
+import java.nio.file.FileSystemException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -9,25 +10,68 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * StlSupFinder - Recursively scans a directory for *.stl files
  * whose filename contains "SUP" (case-insensitive) and copies
  * them all to a single output folder.
  *
+ * The walk only finds files and picks their output names; the transfers run
+ * on a bounded worker pool, so large files copy in parallel while the walk
+ * continues, and the walk waits when the queue is full. In hardlink and
+ * reflink modes no data is copied at all when source and output share a
+ * filesystem; a file that cannot be linked falls back to a plain copy.
+ *
+ * Output names are resolved against an in-memory set, seeded by one listing
+ * of the output folder, instead of probing the disk for each collision.
+ *
+ * With --dedupe, each file's geometry hash (StlGeometryHash) is computed on
+ * the worker before its transfer. The first file with a given mesh is
+ * transferred as usual; later ones with the same mesh, under any name or in
+ * ASCII instead of binary, are skipped or hard-linked to the first copy.
+ * Files that hold no triangles or cannot be parsed are never duplicates of
+ * anything: they are reported and collected as they are.
+ *
  * Usage:
- *   java StlSupFinder <sourceDir> <outputDir>
+ *   java StlSupFinder <sourceDir> <outputDir> [--mode copy|hardlink|reflink] [--threads N]
+ *                     [--dedupe skip|link]
+ *
+ * Modes:
+ *   copy      Copy the file (default).
+ *   hardlink  Create a hard link; same filesystem only.
+ *   reflink   Copy-on-write clone via "cp --reflink=always" (btrfs, XFS, APFS...).
+ *
+ * Dedupe:
+ *   skip      Leave out files whose mesh was already collected in this run.
+ *   link      Hard-link them to the first copy instead (copy if that fails).
  *
  * Example:
  *   java StlSupFinder "C:\Users\Jeff\Desktop\STL TEMP\June24" "C:\Users\Jeff\Desktop\SUP_Files"
  */
 public class StlSupFinderApp {
 
+    /** Default transfer threads; copies are disk-bound, so a few are enough */
+    private static final int DEFAULT_THREADS = 4;
+
     public static void main(String[] args) {
+        args = Metrics.init("StlSupFinderApp", args);
         // ── Argument handling ──────────────────────────────────────────────
         if (args.length < 2) {
-            System.out.println("Usage: java StlSupFinder <sourceDir> <outputDir>");
+            System.out.println("Usage: java StlSupFinder <sourceDir> <outputDir> [--mode copy|hardlink|reflink] [--threads N] [--dedupe skip|link]");
             System.out.println("Example:");
             System.out.println("  java StlSupFinder \"C:\\Users\\Jeff\\Desktop\\STL TEMP\\June24\" \"C:\\Users\\Jeff\\Desktop\\SUP_Files\"");
             System.exit(1);
@@ -35,6 +79,18 @@ public class StlSupFinderApp {
 
         Path sourceDir = Paths.get(args[0]);
         Path outputDir = Paths.get(args[1]);
+        String mode    = flagValue(args, "--mode", "copy").toLowerCase();
+        int threads    = Integer.parseInt(flagValue(args, "--threads", String.valueOf(DEFAULT_THREADS)));
+        String dedupe  = flagValue(args, "--dedupe", "off").toLowerCase();
+
+        if (!mode.equals("copy") && !mode.equals("hardlink") && !mode.equals("reflink")) {
+            System.err.println("ERROR: --mode must be copy, hardlink or reflink");
+            System.exit(1);
+        }
+        if (!dedupe.equals("off") && !dedupe.equals("skip") && !dedupe.equals("link")) {
+            System.err.println("ERROR: --dedupe must be skip or link");
+            System.exit(1);
+        }
 
         // ── Validate source directory ──────────────────────────────────────
         if (!Files.exists(sourceDir) || !Files.isDirectory(sourceDir)) {
@@ -44,9 +100,15 @@ public class StlSupFinderApp {
         }
 
         // ── Create output directory if needed ─────────────────────────────
+        Set<String> usedNames = new HashSet<>();
         try {
             Files.createDirectories(outputDir);
             System.out.println("Output folder: " + outputDir.toAbsolutePath());
+
+            // One listing of the output folder; collisions are resolved in memory
+            try (Stream<Path> existing = Files.list(outputDir)) {
+                existing.forEach(p -> usedNames.add(nameKey(p.getFileName().toString())));
+            }
         } catch (IOException e) {
             System.err.println("ERROR: Could not create output directory: " + e.getMessage());
             System.exit(1);
@@ -54,12 +116,21 @@ public class StlSupFinderApp {
 
         System.out.println("Scanning:      " + sourceDir.toAbsolutePath());
         System.out.println("Looking for:   *.stl files containing \"SUP\" in the name");
+        System.out.println("Mode:          " + mode + " (" + threads + " thread(s))"
+            + (dedupe.equals("off") ? "" : ", dedupe " + dedupe));
         System.out.println("─".repeat(60));
 
-        // ── Walk the directory tree ────────────────────────────────────────
+        // ── Transfer pool: bounded queue, the walker runs overflow itself ──
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        long start = System.nanoTime();
         List<Path> found = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        Transfers transfers = new Transfers();
+        Map<String, CompletableFuture<Path>> meshes = new ConcurrentHashMap<>();
 
+        // ── Walk the directory tree ────────────────────────────────────────
         try {
             Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>() {
 
@@ -75,17 +146,23 @@ public class StlSupFinderApp {
                         System.out.println("  FOUND: " + file);
 
                         // Build destination path; handle duplicate filenames
-                        Path dest = outputDir.resolve(name);
-                        if (Files.exists(dest)) {
-                            dest = uniquePath(outputDir, name);
+                        Path dest = uniquePath(outputDir, name, usedNames);
+                        if (!dest.getFileName().toString().equals(name)) {
                             System.out.println("         (renamed to avoid collision: " + dest.getFileName() + ")");
                         }
 
-                        try {
-                            Files.copy(file, dest, StandardCopyOption.REPLACE_EXISTING);
-                        } catch (IOException e) {
-                            errors.add("Copy failed for " + file + ": " + e.getMessage());
-                        }
+                        long size = attrs.size();
+                        pool.execute(() -> {
+                            try {
+                                if (dedupe.equals("off")) {
+                                    transfer(file, dest, mode, size, transfers);
+                                } else {
+                                    transferUnique(file, dest, mode, dedupe, size, meshes, transfers, errors);
+                                }
+                            } catch (IOException e) {
+                                errors.add("Copy failed for " + file + ": " + e.getMessage());
+                            }
+                        });
                     }
                     return FileVisitResult.CONTINUE;
                 }
@@ -99,12 +176,29 @@ public class StlSupFinderApp {
         } catch (IOException e) {
             System.err.println("ERROR during directory walk: " + e.getMessage());
             System.exit(1);
+        } finally {
+            pool.shutdown();
+        }
+
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errors.add("Interrupted while waiting for transfers");
         }
 
         // ── Summary ───────────────────────────────────────────────────────
         System.out.println("─".repeat(60));
-        System.out.println("Done! " + found.size() + " SUP file(s) copied to:");
+        System.out.println("Done! " + found.size() + " SUP file(s) collected in:");
         System.out.println("  " + outputDir.toAbsolutePath());
+        System.out.println(String.format("  %d copied (%.1f MB), %d hard-linked, %d reflinked in %.1f s",
+            transfers.copied.get(), transfers.copiedBytes.get() / 1048576.0,
+            transfers.linked.get(), transfers.reflinked.get(), (System.nanoTime() - start) / 1e9));
+        if (!dedupe.equals("off")) {
+            System.out.println(String.format("  %d duplicate mesh(es) %s, %.1f MB not copied",
+                transfers.duplicates.get(), dedupe.equals("skip") ? "skipped" : "linked",
+                transfers.duplicateBytes.get() / 1048576.0));
+        }
 
         if (!errors.isEmpty()) {
             System.out.println("\nWarnings / errors encountered:");
@@ -113,21 +207,164 @@ public class StlSupFinderApp {
     }
 
     /**
-     * If a file named "foo_SUP.stl" already exists in dest dir,
-     * returns "foo_SUP_2.stl", "foo_SUP_3.stl", etc.
+     * Counts of completed transfers, updated by the worker threads
      */
-    private static Path uniquePath(Path dir, String filename) {
+    static class Transfers {
+        final AtomicInteger copied = new AtomicInteger();
+        final AtomicInteger linked = new AtomicInteger();
+        final AtomicInteger reflinked = new AtomicInteger();
+        final AtomicLong copiedBytes = new AtomicLong();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final AtomicLong duplicateBytes = new AtomicLong();
+    }
+
+    /**
+     * Transfers {@code src} unless a file with the same geometry was already
+     * collected in this run, in which case it is skipped or hard-linked to
+     * that first copy. The first file of each mesh registers a future that
+     * completes once its own transfer is done; duplicates wait on it before
+     * linking. Since it is registered by the task that is already running
+     * the transfer, the wait never depends on a queued task. A file with no
+     * triangles, or one that is not valid STL, is reported in {@code errors}
+     * and transferred without dedupe.
+     */
+    static void transferUnique(Path src, Path dest, String mode, String dedupe, long size,
+            Map<String, CompletableFuture<Path>> meshes, Transfers transfers, List<String> errors)
+            throws IOException {
+        String hash;
+        try {
+            hash = StlGeometryHash.of(src, 1);
+        } catch (IOException | RuntimeException e) {
+            errors.add("Could not hash " + src + " (" + e.getMessage() + "), collected without dedupe");
+            transfer(src, dest, mode, size, transfers);
+            return;
+        }
+        if (hash == null) {
+            errors.add("No triangles in " + src + ", collected without dedupe");
+            transfer(src, dest, mode, size, transfers);
+            return;
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> first = meshes.putIfAbsent(hash, mine);
+        if (first == null) {
+            try {
+                transfer(src, dest, mode, size, transfers);
+                mine.complete(dest);
+            } catch (IOException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            }
+            return;
+        }
+
+        Path original;
+        try {
+            original = first.join();
+        } catch (CompletionException e) {
+            // the first copy failed; collect this one in its place
+            transfer(src, dest, mode, size, transfers);
+            return;
+        }
+
+        transfers.duplicates.incrementAndGet();
+        transfers.duplicateBytes.addAndGet(size);
+        if (dedupe.equals("skip")) {
+            System.out.println("  SKIP:  " + src + " (same mesh as " + original.getFileName() + ")");
+            return;
+        }
+        try {
+            Files.createLink(dest, original);
+            System.out.println("  LINK:  " + dest.getFileName() + " -> " + original.getFileName());
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Puts {@code src} at {@code dest} using the given mode, falling back to
+     * a copy when a link or clone is not possible.
+     */
+    private static void transfer(Path src, Path dest, String mode, long size, Transfers transfers) throws IOException {
+        long t = System.nanoTime();
+        if (mode.equals("hardlink")) {
+            try {
+                Files.createLink(dest, src);
+                transfers.linked.incrementAndGet();
+                Metrics.stage(Metrics.WRITE, "stl", t);
+                return;
+            } catch (FileSystemException | UnsupportedOperationException e) {
+                // different filesystem or no link support: copy instead
+            }
+        } else if (mode.equals("reflink")) {
+            if (reflink(src, dest)) {
+                transfers.reflinked.incrementAndGet();
+                Metrics.stage(Metrics.WRITE, "stl", t);
+                return;
+            }
+        }
+        Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING);
+        transfers.copied.incrementAndGet();
+        transfers.copiedBytes.addAndGet(size);
+        Metrics.stage(Metrics.WRITE, "stl", t);
+        Metrics.bytesWritten("stl", size);
+    }
+
+    /**
+     * Clones {@code src} to {@code dest} with "cp --reflink=always", which
+     * shares the data blocks instead of copying them. Returns false if cp is
+     * unavailable or the filesystem cannot clone.
+     */
+    private static boolean reflink(Path src, Path dest) {
+        try {
+            Process proc = new ProcessBuilder("cp", "--reflink=always", src.toString(), dest.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            if (proc.waitFor() == 0) return true;
+            Files.deleteIfExists(dest);
+            return false;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * If a file named "foo_SUP.stl" has already been used in the output dir,
+     * returns "foo_SUP_2.stl", "foo_SUP_3.stl", etc. The chosen name is
+     * added to {@code usedNames}. Names are compared case-insensitively, as
+     * on Windows.
+     */
+    private static Path uniquePath(Path dir, String filename, Set<String> usedNames) {
+        if (usedNames.add(nameKey(filename))) {
+            return dir.resolve(filename);
+        }
+
         int dot = filename.lastIndexOf('.');
         String base = (dot >= 0) ? filename.substring(0, dot) : filename;
         String ext  = (dot >= 0) ? filename.substring(dot)    : "";
 
         int counter = 2;
-        Path candidate;
+        String candidate;
         do {
-            candidate = dir.resolve(base + "_" + counter + ext);
+            candidate = base + "_" + counter + ext;
             counter++;
-        } while (Files.exists(candidate));
+        } while (!usedNames.add(nameKey(candidate)));
+
+        return dir.resolve(candidate);
+    }
 
-        return candidate;
+    private static String nameKey(String filename) {
+        return filename.toLowerCase();
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
     }
-}
\ No newline at end of file
+}
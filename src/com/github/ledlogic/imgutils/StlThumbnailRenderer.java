@@ -0,0 +1,330 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * StlThumbnailRenderer - headless, CPU-only preview images for STL files
+ *
+ * Renders a mesh with an orthographic camera (isometric, top or front), a
+ * z-buffer and two-sided Lambert shading; STL winding and normals are too
+ * often wrong to trust for back-face culling or lighting.
+ *
+ * Rendering is two passes over the file, both streamed from the memory-mapped
+ * triangle records by StlFile:
+ *
+ *   1. bounds  - MeshStats gives the bounding box, which fixes the projection
+ *   2. binning - each mapped chunk projects its triangles and appends them
+ *                (as flat floats) to per-tile bins for the 64 x 64 screen
+ *                tiles they overlap
+ *
+ * The tiles are then rasterized in parallel, one task per tile with its own
+ * z-buffer, writing straight into the shared pixel array; tiles never
+ * overlap, so no locking is needed. The image is rendered at twice the
+ * output size and box-filtered down for smooth edges.
+ *
+ * Usage:
+ *   BufferedImage img = new StlThumbnailRenderer(512, 512, View.ISO, threads).render(path);
+ */
+public class StlThumbnailRenderer {
+
+    public enum View { ISO, TOP, FRONT }
+
+    private static final int TILE = 64;
+    private static final int SUPERSAMPLE = 2;
+
+    /** Floats per binned triangle: three projected vertices and a shade */
+    private static final int STRIDE = 10;
+
+    private static final int BACKGROUND = 0x202020;
+    private static final int BASE_R = 0xB4, BASE_G = 0xC8, BASE_B = 0xDC;
+
+    private final int width;
+    private final int height;
+    private final View view;
+    private final int threads;
+
+    public StlThumbnailRenderer(int width, int height, View view, int threads) {
+        this.width = width;
+        this.height = height;
+        this.view = view;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Default preview for SliceViewerApp: 512 x 512 isometric on all cores
+     */
+    static BufferedImage renderPreview(Path stl) throws IOException {
+        return new StlThumbnailRenderer(512, 512, View.ISO, Runtime.getRuntime().availableProcessors()).render(stl);
+    }
+
+    public BufferedImage render(Path stl) throws IOException {
+        long start = System.nanoTime();
+        int w = width * SUPERSAMPLE, h = height * SUPERSAMPLE;
+
+        StlFile.MeshStats bounds = StlFile.MeshStats.merge(StlFile.scan(stl, threads, StlFile.MeshStats::new));
+        if (bounds.triangles == 0) throw new IOException("No triangles in " + stl);
+
+        Camera cam = new Camera(view, bounds, w, h);
+        int tilesX = (w + TILE - 1) / TILE, tilesY = (h + TILE - 1) / TILE;
+        List<Binner> chunks = StlFile.scan(stl, threads, () -> new Binner(cam, tilesX, tilesY, w, h));
+
+        int[] pixels = new int[w * h];
+        Arrays.fill(pixels, BACKGROUND);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int ty = 0; ty < tilesY; ty++) {
+                for (int tx = 0; tx < tilesX; tx++) {
+                    int tile = ty * tilesX + tx;
+                    int x0 = tx * TILE, y0 = ty * TILE;
+                    futures.add(pool.submit(() -> rasterizeTile(chunks, tile, x0, y0,
+                        Math.min(TILE, w - x0), Math.min(TILE, h - y0), pixels, w)));
+                }
+            }
+            for (Future<?> f : futures) f.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Rendering failed for " + stl + ": " + e.getCause(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering " + stl, e);
+        } finally {
+            pool.shutdown();
+        }
+
+        BufferedImage out = downsample(pixels, w, h);
+        System.out.println(String.format("  STL   %s: %,d triangles rendered in %.1f ms",
+            stl.getFileName(), bounds.triangles, (System.nanoTime() - start) / 1e6));
+        return out;
+    }
+
+    // ── camera ──
+
+    /**
+     * Orthographic camera fitted to the mesh bounds. Screen x runs right,
+     * screen y down, depth away from the viewer.
+     */
+    private static final class Camera {
+        final double rx, ry, rz;   // right
+        final double ux, uy, uz;   // up
+        final double fx, fy, fz;   // forward (into the screen)
+        final double lx, ly, lz;   // light direction, towards the viewer
+        final double scale, offX, offY;
+
+        Camera(View view, StlFile.MeshStats b, int w, int h) {
+            double[] f, up;
+            switch (view) {
+                case TOP:   f = new double[] { 0, 0, -1 };  up = new double[] { 0, 1, 0 }; break;
+                case FRONT: f = new double[] { 0, 1, 0 };   up = new double[] { 0, 0, 1 }; break;
+                default:    f = new double[] { -1, 1, -1 }; up = new double[] { 0, 0, 1 }; break;
+            }
+            normalize(f);
+            double[] r = cross(f, up);
+            normalize(r);
+            double[] u = cross(r, f);
+            fx = f[0]; fy = f[1]; fz = f[2];
+            rx = r[0]; ry = r[1]; rz = r[2];
+            ux = u[0]; uy = u[1]; uz = u[2];
+
+            // light from over the viewer's left shoulder
+            double[] l = { -f[0] - 0.4 * r[0] + 0.5 * u[0], -f[1] - 0.4 * r[1] + 0.5 * u[1], -f[2] - 0.4 * r[2] + 0.5 * u[2] };
+            normalize(l);
+            lx = l[0]; ly = l[1]; lz = l[2];
+
+            // fit the projected bounding box, with a 5% margin
+            double minS = Double.MAX_VALUE, maxS = -Double.MAX_VALUE, minU = Double.MAX_VALUE, maxU = -Double.MAX_VALUE;
+            for (int i = 0; i < 8; i++) {
+                double x = (i & 1) == 0 ? b.minX : b.maxX;
+                double y = (i & 2) == 0 ? b.minY : b.maxY;
+                double z = (i & 4) == 0 ? b.minZ : b.maxZ;
+                double s = x * rx + y * ry + z * rz;
+                double v = x * ux + y * uy + z * uz;
+                minS = Math.min(minS, s); maxS = Math.max(maxS, s);
+                minU = Math.min(minU, v); maxU = Math.max(maxU, v);
+            }
+            double spanS = Math.max(maxS - minS, 1e-9), spanU = Math.max(maxU - minU, 1e-9);
+            scale = 0.9 * Math.min(w / spanS, h / spanU);
+            offX = (w - spanS * scale) / 2 - minS * scale;
+            offY = (h - spanU * scale) / 2 + maxU * scale;
+        }
+
+        private static double[] cross(double[] a, double[] b) {
+            return new double[] { a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0] };
+        }
+
+        private static void normalize(double[] v) {
+            double len = Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+            v[0] /= len; v[1] /= len; v[2] /= len;
+        }
+    }
+
+    // ── binning ──
+
+    /**
+     * Projects the triangles of one mapped chunk and appends each to the
+     * bins of the tiles its screen bounding box overlaps.
+     */
+    private static final class Binner implements StlFile.TriangleVisitor {
+        private final Camera cam;
+        private final int tilesX, tilesY, w, h;
+        final float[][] bins;
+        final int[] sizes;
+
+        Binner(Camera cam, int tilesX, int tilesY, int w, int h) {
+            this.cam = cam;
+            this.tilesX = tilesX;
+            this.tilesY = tilesY;
+            this.w = w;
+            this.h = h;
+            this.bins = new float[tilesX * tilesY][];
+            this.sizes = new int[tilesX * tilesY];
+        }
+
+        @Override
+        public void triangle(float ax, float ay, float az,
+                             float bx, float by, float bz,
+                             float cx, float cy, float cz) {
+            Camera c = cam;
+            float sx0 = (float) (c.offX + (ax * c.rx + ay * c.ry + az * c.rz) * c.scale);
+            float sy0 = (float) (c.offY - (ax * c.ux + ay * c.uy + az * c.uz) * c.scale);
+            float sx1 = (float) (c.offX + (bx * c.rx + by * c.ry + bz * c.rz) * c.scale);
+            float sy1 = (float) (c.offY - (bx * c.ux + by * c.uy + bz * c.uz) * c.scale);
+            float sx2 = (float) (c.offX + (cx * c.rx + cy * c.ry + cz * c.rz) * c.scale);
+            float sy2 = (float) (c.offY - (cx * c.ux + cy * c.uy + cz * c.uz) * c.scale);
+
+            // zero screen area: edge-on or degenerate, never covers a pixel center reliably
+            float area = (sx1 - sx0) * (sy2 - sy0) - (sy1 - sy0) * (sx2 - sx0);
+            if (area == 0f) return;
+
+            int minX = Math.max(0, (int) Math.floor(Math.min(sx0, Math.min(sx1, sx2))));
+            int maxX = Math.min(w - 1, (int) Math.ceil(Math.max(sx0, Math.max(sx1, sx2))));
+            int minY = Math.max(0, (int) Math.floor(Math.min(sy0, Math.min(sy1, sy2))));
+            int maxY = Math.min(h - 1, (int) Math.ceil(Math.max(sy0, Math.max(sy1, sy2))));
+            if (minX > maxX || minY > maxY) return;
+
+            float d0 = (float) (ax * c.fx + ay * c.fy + az * c.fz);
+            float d1 = (float) (bx * c.fx + by * c.fy + bz * c.fz);
+            float d2 = (float) (cx * c.fx + cy * c.fy + cz * c.fz);
+
+            // two-sided Lambert
+            double ux = bx - ax, uy = by - ay, uz = bz - az;
+            double vx = cx - ax, vy = cy - ay, vz = cz - az;
+            double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+            double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            float shade = len == 0 ? 0.25f
+                : (float) (0.25 + 0.75 * Math.abs(nx * c.lx + ny * c.ly + nz * c.lz) / len);
+
+            for (int ty = minY / TILE; ty <= maxY / TILE; ty++) {
+                for (int tx = minX / TILE; tx <= maxX / TILE; tx++) {
+                    int tile = ty * tilesX + tx;
+                    float[] bin = bins[tile];
+                    int n = sizes[tile];
+                    if (bin == null) {
+                        bin = bins[tile] = new float[STRIDE * 64];
+                    } else if (n + STRIDE > bin.length) {
+                        bin = bins[tile] = Arrays.copyOf(bin, bin.length * 2);
+                    }
+                    bin[n] = sx0; bin[n + 1] = sy0; bin[n + 2] = d0;
+                    bin[n + 3] = sx1; bin[n + 4] = sy1; bin[n + 5] = d1;
+                    bin[n + 6] = sx2; bin[n + 7] = sy2; bin[n + 8] = d2;
+                    bin[n + 9] = shade;
+                    sizes[tile] = n + STRIDE;
+                }
+            }
+        }
+    }
+
+    // ── rasterization ──
+
+    private static void rasterizeTile(List<Binner> chunks, int tile, int x0, int y0, int tw, int th,
+            int[] pixels, int stride) {
+        float[] depth = null;
+
+        for (Binner chunk : chunks) {
+            float[] bin = chunk.bins[tile];
+            int size = chunk.sizes[tile];
+            for (int i = 0; i < size; i += STRIDE) {
+                float ax = bin[i], ay = bin[i + 1], az = bin[i + 2];
+                float bx = bin[i + 3], by = bin[i + 4], bz = bin[i + 5];
+                float cx = bin[i + 6], cy = bin[i + 7], cz = bin[i + 8];
+
+                float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+                if (area == 0f) continue;
+                float inv = 1f / area;
+
+                int minX = Math.max(x0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+                int maxX = Math.min(x0 + tw - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+                int minY = Math.max(y0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+                int maxY = Math.min(y0 + th - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+                if (minX > maxX || minY > maxY) continue;
+
+                if (depth == null) {
+                    depth = new float[tw * th];
+                    Arrays.fill(depth, Float.POSITIVE_INFINITY);
+                }
+                int color = shadeColor(bin[i + 9]);
+
+                for (int y = minY; y <= maxY; y++) {
+                    float py = y + 0.5f;
+                    for (int x = minX; x <= maxX; x++) {
+                        float px = x + 0.5f;
+                        // barycentric weights, normalized by the signed area so either winding works
+                        float w0 = ((bx - px) * (cy - py) - (by - py) * (cx - px)) * inv;
+                        float w1 = ((cx - px) * (ay - py) - (cy - py) * (ax - px)) * inv;
+                        float w2 = 1f - w0 - w1;
+                        if (w0 < 0 || w1 < 0 || w2 < 0) continue;
+
+                        float z = w0 * az + w1 * bz + w2 * cz;
+                        int di = (y - y0) * tw + (x - x0);
+                        if (z < depth[di]) {
+                            depth[di] = z;
+                            pixels[y * stride + x] = color;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int shadeColor(float shade) {
+        int r = Math.min(255, (int) (BASE_R * shade));
+        int g = Math.min(255, (int) (BASE_G * shade));
+        int b = Math.min(255, (int) (BASE_B * shade));
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Box-filters the supersampled pixels down to the output size
+     */
+    private BufferedImage downsample(int[] src, int w, int h) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        int n = SUPERSAMPLE * SUPERSAMPLE;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = 0, g = 0, b = 0;
+                for (int sy = 0; sy < SUPERSAMPLE; sy++) {
+                    int row = (y * SUPERSAMPLE + sy) * w + x * SUPERSAMPLE;
+                    for (int sx = 0; sx < SUPERSAMPLE; sx++) {
+                        int p = src[row + sx];
+                        r += (p >> 16) & 0xFF;
+                        g += (p >> 8) & 0xFF;
+                        b += p & 0xFF;
+                    }
+                }
+                dst[y * width + x] = ((r / n) << 16) | ((g / n) << 8) | (b / n);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,244 @@
+package com.github.ledlogic.imgutils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+/**
+ * StreamingPdfAssembler - Build a one-image-per-page PDF with flat heap use
+ *
+ * In streaming mode the document is backed by PDFBox's temp-file scratch
+ * buffer (MemoryUsageSetting.setupTempFileOnly), so embedded image streams
+ * live on disk rather than in heap from the moment they are created. Callers
+ * hand over each page image through a {@link PageImage} and keep no
+ * reference to it afterwards.
+ *
+ * With pagesPerPart > 0 pages are also written incrementally: every
+ * pagesPerPart pages the current document is saved to a part file and
+ * closed, and the parts are merged (again through a temp-file buffer) when
+ * the assembler finishes.
+ *
+ * Time and heap use are printed for every page, with a summary at the end.
+ */
+class StreamingPdfAssembler implements Closeable {
+
+    /**
+     * Creates the image for one page inside the document it will be drawn in
+     */
+    interface PageImage {
+        PDImageXObject create(PDDocument document) throws IOException;
+    }
+
+    private final String outputPath;
+    private final boolean streaming;
+    private final int pagesPerPart;
+
+    private final List<File> parts = new ArrayList<>();
+    private PDDocument document;
+    private int pageCount = 0;
+    private int partPages = 0;
+
+    private long totalPageNanos = 0;
+    private long maxPageNanos = 0;
+    private long maxHeapAfterPage = 0;
+
+    /**
+     * @param outputPath Path where the PDF should be saved
+     * @param streaming Back the document with a temp file instead of heap
+     * @param pagesPerPart Pages per incrementally written part, or 0 to save once at the end
+     */
+    StreamingPdfAssembler(String outputPath, boolean streaming, int pagesPerPart) {
+        this.outputPath = outputPath;
+        this.streaming = streaming;
+        this.pagesPerPart = pagesPerPart;
+        resetPeakHeap();
+    }
+
+    /**
+     * Add a page holding one image, scaled to fit inside the margins and centered
+     *
+     * @param image Creates the page image in the current document
+     * @param pageSize Page size in points
+     * @param margin Margin on every side in points
+     * @throws IOException If the image or page content cannot be written
+     */
+    void addImagePage(PageImage image, PDRectangle pageSize, float margin) throws IOException {
+        long start = System.nanoTime();
+
+        if (pagesPerPart > 0 && partPages == pagesPerPart) {
+            savePart();
+        }
+
+        PDDocument doc = currentDocument();
+        drawImagePage(doc, image.create(doc), pageSize, margin);
+        pageCount++;
+        partPages++;
+
+        long elapsed = System.nanoTime() - start;
+        long heap = usedHeap();
+        totalPageNanos += elapsed;
+        maxPageNanos = Math.max(maxPageNanos, elapsed);
+        maxHeapAfterPage = Math.max(maxHeapAfterPage, heap);
+
+        System.out.println(String.format("Page %d: %.1f ms, heap used %.1f MB",
+            pageCount, elapsed / 1e6, heap / 1048576.0));
+    }
+
+    /**
+     * Save the PDF to the output path, merging part files if pages were written
+     * incrementally, and print the time and memory summary
+     *
+     * @throws IOException If the document cannot be saved
+     */
+    void finish() throws IOException {
+        long start = System.nanoTime();
+
+        if (parts.isEmpty()) {
+            // Save the document
+            currentDocument().save(outputPath);
+            document.close();
+            document = null;
+        } else {
+            if (partPages > 0) {
+                savePart();
+            }
+            PDFMergerUtility merger = new PDFMergerUtility();
+            for (File part : parts) {
+                merger.addSource(part);
+            }
+            merger.setDestinationFileName(outputPath);
+            merger.mergeDocuments(memoryUsage());
+            deleteParts();
+        }
+
+        long saveNanos = System.nanoTime() - start;
+        System.out.println("PDF saved: " + outputPath);
+        System.out.println(String.format(
+            "PDF assembly: %d page(s), %.1f ms/page avg, %.1f ms max, save %.1f ms",
+            pageCount, pageCount > 0 ? totalPageNanos / 1e6 / pageCount : 0.0,
+            maxPageNanos / 1e6, saveNanos / 1e6));
+        System.out.println(String.format(
+            "PDF memory: %.1f MB max heap after a page, %.1f MB peak heap (%s)",
+            maxHeapAfterPage / 1048576.0, peakHeap() / 1048576.0,
+            streaming ? "temp-file buffer" : "main memory"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (document != null) {
+                document.close();
+                document = null;
+            }
+        } finally {
+            deleteParts();
+        }
+    }
+
+    private PDDocument currentDocument() {
+        if (document == null) {
+            document = new PDDocument(memoryUsage());
+            partPages = 0;
+        }
+        return document;
+    }
+
+    private MemoryUsageSetting memoryUsage() {
+        return streaming
+            ? MemoryUsageSetting.setupTempFileOnly()
+            : MemoryUsageSetting.setupMainMemoryOnly();
+    }
+
+    private void savePart() throws IOException {
+        File part = File.createTempFile("pdf-part-", ".pdf");
+        parts.add(part);
+        document.save(part);
+        document.close();
+        document = null;
+        System.out.println("Wrote part " + parts.size() + " (" + partPages + " pages)");
+    }
+
+    private void deleteParts() {
+        for (File part : parts) {
+            if (part.exists() && !part.delete()) {
+                part.deleteOnExit();
+            }
+        }
+        parts.clear();
+    }
+
+    /**
+     * Draw one image on a new page, scaled to fit while maintaining aspect
+     * ratio and centered inside the margins
+     */
+    static void drawImagePage(PDDocument document, PDImageXObject image,
+            PDRectangle pageSize, float margin) throws IOException {
+        float availableWidth = pageSize.getWidth() - (2 * margin);
+        float availableHeight = pageSize.getHeight() - (2 * margin);
+
+        // Create a new page
+        PDPage page = new PDPage(pageSize);
+        document.addPage(page);
+
+        // Calculate scaling to fit while maintaining aspect ratio
+        float imgWidth = image.getWidth();
+        float imgHeight = image.getHeight();
+
+        float widthScale = availableWidth / imgWidth;
+        float heightScale = availableHeight / imgHeight;
+        float scale = Math.min(widthScale, heightScale);
+
+        float finalWidth = imgWidth * scale;
+        float finalHeight = imgHeight * scale;
+
+        // Center the image on the page
+        float x = margin + (availableWidth - finalWidth) / 2;
+        float y = margin + (availableHeight - finalHeight) / 2;
+
+        // Draw image on page
+        PDPageContentStream contentStream = new PDPageContentStream(
+            document, page, PDPageContentStream.AppendMode.APPEND, true, true);
+
+        try {
+            contentStream.drawImage(image, x, y, finalWidth, finalHeight);
+        } finally {
+            contentStream.close();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
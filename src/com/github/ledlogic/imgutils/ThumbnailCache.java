@@ -0,0 +1,242 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * ThumbnailCache - print-size thumbnails for the HTML gridders
+ *
+ * The gridders lay images out in CSS pixels (96 per inch). A cell of N CSS
+ * pixels prints at N / 96 inches, so the image only needs N * printDpi / 96
+ * device pixels; anything larger is decoded by the browser and thrown away.
+ * This cache writes thumbnails of exactly that size (shorter side, so
+ * object-fit: cover stays sharp) into a cache directory and hands back the
+ * thumbnail file to reference in the HTML.
+ *
+ * Thumbnail names are keyed by source path, size, last-modified time and
+ * target size, so an edited source gets a fresh thumbnail and an unchanged
+ * one is never decoded again. Missing thumbnails are generated in parallel.
+ */
+public class ThumbnailCache {
+
+    /** CSS pixels per inch, as used for the gridder cell sizes. */
+    static final int CSS_DPI = 96;
+
+    /** Default device resolution the thumbnails are sized for. */
+    static final int DEFAULT_PRINT_DPI = 300;
+
+    private final File cacheDir;
+    private final int printDpi;
+    private final int threads;
+
+    public ThumbnailCache(File cacheDir) {
+        this(cacheDir, DEFAULT_PRINT_DPI, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ThumbnailCache(File cacheDir, int printDpi, int threads) {
+        this.cacheDir = cacheDir;
+        this.printDpi = printDpi;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns a thumbnail for every source, sized for a cell of {@code cssPx}
+     * CSS pixels, generating missing ones in parallel. Sources that cannot be
+     * thumbnailed map to themselves so the page still renders.
+     */
+    public Map<File, File> thumbnails(Collection<File> sources, int cssPx) throws IOException {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            throw new IOException("Could not create thumbnail cache: " + cacheDir);
+        }
+
+        int targetPx = (int) Math.ceil(cssPx * (double) printDpi / CSS_DPI);
+
+        Map<File, File> result = new LinkedHashMap<>();
+        Map<File, File> missing = new LinkedHashMap<>();
+        for (File src : sources) {
+            if (result.containsKey(src)) continue;
+            File thumb = thumbnailFile(src, targetPx);
+            result.put(src, thumb);
+            if (!thumb.exists()) missing.put(src, thumb);
+        }
+
+        if (!missing.isEmpty()) {
+            System.out.println("Generating " + missing.size() + " thumbnail(s) at " + targetPx
+                + " px (" + cssPx + " CSS px at " + printDpi + " DPI) in " + cacheDir);
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, missing.size()));
+            List<Future<?>> futures = new ArrayList<>();
+            Set<File> failed = ConcurrentHashMap.newKeySet();
+            for (Map.Entry<File, File> entry : missing.entrySet()) {
+                File src = entry.getKey();
+                File thumb = entry.getValue();
+                futures.add(pool.submit(() -> {
+                    try {
+                        writeThumbnail(src, thumb, targetPx);
+                        Metrics.file(Metrics.format(src.getName()), true);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Thumbnail failed for " + src + ": " + e.getMessage());
+                        Metrics.file(Metrics.format(src.getName()), false);
+                        failed.add(src);
+                    }
+                }));
+            }
+            pool.shutdown();
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    System.err.println("Unexpected thumbnail error: " + e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while generating thumbnails", e);
+                }
+            }
+            for (File src : failed) result.put(src, src);
+        }
+        return result;
+    }
+
+    /**
+     * The {@code src} attribute for a thumbnail (or fallback original) in a
+     * generated page: an absolute file:/// URL with forward slashes.
+     */
+    public static String htmlSrc(File file) {
+        return "file:///" + file.getAbsolutePath().replace("\\", "/");
+    }
+
+    /**
+     * The cache file for {@code src} at {@code targetPx}:
+     * {@code <stem>-<key>-<targetPx>.<png|jpg>}
+     */
+    File thumbnailFile(File src, int targetPx) {
+        String name = src.getName();
+        String stem = StringUtils.substringBeforeLast(name, ".");
+        String ext = isJpeg(name) ? "jpg" : "png";
+        String key = src.getAbsolutePath() + "|" + src.length() + "|" + src.lastModified() + "|" + targetPx;
+        return new File(cacheDir, stem + "-" + shortHash(key) + "-" + targetPx + "." + ext);
+    }
+
+    private static void writeThumbnail(File src, File thumb, int targetPx) throws IOException {
+        BufferedImage img = readSubsampled(src, targetPx);
+        StageEvent transform = StageEvent.start(Metrics.TRANSFORM, src.getPath(), Metrics.format(src.getName()));
+        BufferedImage scaled = scaleToCover(img, targetPx);
+        transform.image(scaled).finish();
+
+        // Write to a temp name first so a half-written thumbnail is never cached
+        String format = thumb.getName().endsWith(".jpg") ? "jpg" : "png";
+        File tmp = new File(thumb.getParentFile(), thumb.getName() + ".tmp");
+        StageEvent encode = StageEvent.start(Metrics.ENCODE, thumb.getPath(), format);
+        if (!ImageIO.write(scaled, format, tmp)) {
+            throw new IOException("No " + format + " writer available");
+        }
+        encode.image(scaled).bytes(tmp.length()).finish();
+        Metrics.bytesWritten(format, tmp.length());
+        if (!tmp.renameTo(thumb)) {
+            tmp.delete();
+            if (!thumb.exists()) throw new IOException("Could not move thumbnail into place: " + thumb);
+        }
+    }
+
+    /**
+     * Decodes {@code src}, letting the reader skip pixels while the image is
+     * still at least twice the target size, so huge originals are never
+     * decoded at full resolution. Timed as the decode stage.
+     */
+    static BufferedImage readSubsampled(File src, int targetPx) throws IOException {
+        String format = Metrics.format(src.getName());
+        StageEvent decode = StageEvent.start(Metrics.DECODE, src.getPath(), format);
+        try (ImageInputStream iis = ImageIO.createImageInputStream(src)) {
+            if (iis == null) throw new IOException("Cannot open " + src);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) throw new IOException("No ImageIO reader for " + src);
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int shorter = Math.min(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, shorter / (targetPx * 2));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage img = reader.read(0, param);
+                decode.image(img).bytes(src.length()).finish();
+                Metrics.bytesRead(format, src.length());
+                return img;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales {@code img} so its shorter side is {@code targetPx}, halving with
+     * bilinear filtering until the last step for a smooth result. Images
+     * already at or below the target are returned unchanged.
+     */
+    static BufferedImage scaleToCover(BufferedImage img, int targetPx) {
+        int w = img.getWidth(), h = img.getHeight();
+        double scale = (double) targetPx / Math.min(w, h);
+        if (scale >= 1.0) return img;
+
+        int finalW = Math.max(1, (int) Math.round(w * scale));
+        int finalH = Math.max(1, (int) Math.round(h * scale));
+        int type = img.getColorModel().hasAlpha()
+                ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = img;
+        do {
+            w = Math.max(finalW, w / 2);
+            h = Math.max(finalH, h / 2);
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != finalW || h != finalH);
+        return current;
+    }
+
+    private static boolean isJpeg(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
+    private static String shortHash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 6; i++) sb.append(String.format("%02x", digest[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,762 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * TiledImage - an ARGB image kept in a memory-mapped tile file
+ *
+ * The pixels live in a store file of square tiles (256 x 256 by default),
+ * each a fixed-size block of ARGB ints, so any tile is found by arithmetic
+ * and mapped on its own. Only the most recently used tiles stay mapped; the
+ * rest are left to the page cache. Heap use is therefore set by the tile
+ * cache, not by the image size, and an image may hold
+ * more than the 2^31 samples a BufferedImage can.
+ *
+ * Images come in through a decoder that writes straight into the tiles, in
+ * one pass, and go out through a streaming PNG writer that deflates one row
+ * at a time, so neither end needs the whole image in memory. Regions small
+ * enough for a BufferedImage can also be copied out directly.
+ *
+ * Per-pixel work runs tile by tile, in parallel, using the same PixelOp as
+ * ImagePipeline, so gray and recolor fuse into one pass here as well.
+ *
+ * Store layout (native byte order):
+ *   [0..3]    magic "TIL1"
+ *   [4..15]   int width, int height, int tileSize
+ *   [16]      1 if the source had alpha
+ *   [4096..]  tiles in row-major order, tileSize^2 ints each (edge tiles padded)
+ *
+ * Usage:
+ *   try (TiledImage img = TiledImage.importImage(src, store, 256, 256L << 20)) {
+ *       img.apply(GrayScalerService::gray, threads);
+ *       img.writePng(new Rectangle(0, 0, img.width(), img.height()), out);
+ *   }
+ */
+public class TiledImage implements Closeable {
+
+    private static final int MAGIC = 0x54494C31; // "TIL1"
+    private static final long DATA_OFFSET = 4096;
+
+    public static final int DEFAULT_TILE = 256;
+
+    /**
+     * Formats whose readers write to the destination only through the
+     * Raster API; others (BMP, for one) cast its DataBuffer to a JDK class
+     */
+    private static final Set<String> SINK_FORMATS = Set.of("png", "jpeg");
+
+    /**
+     * One mapped tile: pixels (x, y) to (x + width, y + height) of the image.
+     * Edge tiles are narrower or shorter; their row stride is still the
+     * full tile size.
+     */
+    public static final class Tile {
+        public final int x, y, width, height;
+        private final int stride;
+        private final IntBuffer pixels;
+
+        private Tile(int x, int y, int width, int height, int stride, IntBuffer pixels) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.stride = stride;
+            this.pixels = pixels;
+        }
+
+        /** ARGB at (px, py), relative to the tile */
+        public int get(int px, int py) {
+            return pixels.get(py * stride + px);
+        }
+
+        public void set(int px, int py, int argb) {
+            pixels.put(py * stride + px, argb);
+        }
+
+        /** Copies row {@code py} of the tile into {@code dst} at {@code off} */
+        public void getRow(int py, int[] dst, int off) {
+            pixels.get(py * stride, dst, off, width);
+        }
+
+        /** Copies {@code width} values from {@code src} at {@code off} into row {@code py} */
+        public void setRow(int py, int[] src, int off) {
+            pixels.put(py * stride, src, off, width);
+        }
+    }
+
+    private final File store;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+    private final boolean alpha;
+    private final long tileBytes;
+
+    private final Map<Integer, Tile> resident;
+
+    private TiledImage(File store, RandomAccessFile file, int width, int height, int tileSize,
+                       boolean alpha, long cacheBytes) {
+        this.store = store;
+        this.file = file;
+        this.channel = file.getChannel();
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.tilesX = (width + tileSize - 1) / tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+        this.alpha = alpha;
+        this.tileBytes = (long) tileSize * tileSize * 4;
+        int maxTiles = (int) Math.max(4, Math.min(Integer.MAX_VALUE, cacheBytes / tileBytes));
+        this.resident = new LinkedHashMap<Integer, Tile>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+                // dropping the mapping leaves its pages to the OS; writes are already in the file
+                return size() > maxTiles;
+            }
+        };
+    }
+
+    // ── creating and opening ──
+
+    /**
+     * Creates an empty (transparent black) store of the given size. The file
+     * is sparse, so untouched tiles take no disk space.
+     */
+    public static TiledImage create(File store, int width, int height, int tileSize, boolean alpha,
+                                    long cacheBytes) throws IOException {
+        if (width <= 0 || height <= 0 || tileSize <= 0) {
+            throw new IllegalArgumentException("Bad size " + width + "x" + height + " / tile " + tileSize);
+        }
+        RandomAccessFile raf = new RandomAccessFile(store, "rw");
+        long tiles = (long) ((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize);
+        raf.setLength(0);
+        raf.setLength(DATA_OFFSET + tiles * tileSize * tileSize * 4);
+
+        ByteBuffer header = ByteBuffer.allocate(17).order(ByteOrder.nativeOrder());
+        header.putInt(MAGIC).putInt(width).putInt(height).putInt(tileSize).put((byte) (alpha ? 1 : 0)).flip();
+        raf.getChannel().write(header, 0);
+        return new TiledImage(store, raf, width, height, tileSize, alpha, cacheBytes);
+    }
+
+    /**
+     * Opens an existing store.
+     */
+    public static TiledImage open(File store, long cacheBytes) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(store, "rw");
+        ByteBuffer header = ByteBuffer.allocate(17).order(ByteOrder.nativeOrder());
+        raf.getChannel().read(header, 0);
+        header.flip();
+        if (header.remaining() < 17 || header.getInt() != MAGIC) {
+            raf.close();
+            throw new IOException("Not a tile store: " + store);
+        }
+        int width = header.getInt();
+        int height = header.getInt();
+        int tileSize = header.getInt();
+        boolean alpha = header.get() != 0;
+        return new TiledImage(store, raf, width, height, tileSize, alpha, cacheBytes);
+    }
+
+    /**
+     * Decodes {@code image} into a new store in one sequential pass. The
+     * reader writes straight into the tiles through a destination image
+     * whose DataBuffer is the store (see {@link TileSink}), so every row is
+     * decoded once and no band of the image is held on the heap.
+     *
+     * PNGs the sink cannot take (over 2^31 pixels, which no DataBuffer can
+     * index, or 1, 2 and 4 bit images, which pack several pixels per
+     * element) are streamed one row at a time instead (see
+     * {@link #importPng}), also in one pass.
+     *
+     * Anything else (interlaced or colour-keyed PNGs the sink cannot take,
+     * JPEGs over 2^31 pixels, other formats) is read one band of tile rows
+     * at a time. Each band decodes the file again from the top, so that
+     * path is quadratic in the height, and it warns when it has more than
+     * one band to read.
+     */
+    public static TiledImage importImage(File image, File store, int tileSize, long cacheBytes)
+            throws IOException {
+        int width, height;
+        boolean png;
+        try (ImageInputStream iis = ImageIO.createImageInputStream(image)) {
+            ImageReader reader = ImageSplitter.openReader(iis, image);
+            try {
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+                png = reader.getFormatName().equalsIgnoreCase("png");
+                ImageTypeSpecifier spec = sinkType(reader, width, height);
+                if (spec != null) {
+                    ColorModel colors = spec.getColorModel();
+                    TiledImage tiled = create(store, width, height, tileSize, colors.hasAlpha(), cacheBytes);
+                    try {
+                        SampleModel layout = spec.getSampleModel(width, height);
+                        int type = spec.getBufferedImageType();
+                        boolean direct = type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB;
+                        WritableRaster raster = Raster.createWritableRaster(layout,
+                            tiled.new TileSink(layout.getDataType(), colors, direct), null);
+                        ImageReadParam param = reader.getDefaultReadParam();
+                        param.setDestination(new BufferedImage(colors, raster, colors.isAlphaPremultiplied(), null));
+                        reader.read(0, param);
+                    } catch (UncheckedIOException e) {
+                        tiled.close();
+                        throw e.getCause();
+                    } catch (IOException | RuntimeException e) {
+                        tiled.close();
+                        throw e;
+                    }
+                    return tiled;
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+        if (png) {
+            TiledImage tiled = importPng(image, store, tileSize, cacheBytes);
+            if (tiled != null) return tiled;
+        }
+        return importBands(image, store, width, height, tileSize, cacheBytes);
+    }
+
+    /**
+     * Decodes a PNG into a new store one row at a time with
+     * {@link PngRowReader}, so any size is read in one pass with two rows
+     * of the file in memory. Samples become ARGB through the colour model
+     * ImageIO's PNG reader reports for the image, so pixels match what
+     * ImageIO.read returns. Returns null for PNGs this does not stream:
+     * interlaced images, and gray or RGB images with a tRNS colour key
+     * (for which ImageIO adds an alpha band the file does not have).
+     */
+    static TiledImage importPng(File image, File store, int tileSize, long cacheBytes) throws IOException {
+        ColorModel colors;
+        try (ImageInputStream iis = ImageIO.createImageInputStream(image)) {
+            ImageReader reader = ImageSplitter.openReader(iis, image);
+            try {
+                Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                if (!types.hasNext()) return null;
+                colors = types.next().getColorModel();
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        try (PngRowReader png = new PngRowReader(image)) {
+            boolean indexed = colors instanceof IndexColorModel;
+            if (png.interlaced() || (png.hasTransparency() && !indexed)
+                    || (!indexed && colors.getNumComponents() != png.bands())) {
+                return null;
+            }
+            int width = png.width(), height = png.height(), bands = png.bands();
+            // 8-bit sRGB(A) samples are already ARGB, as ImageIO.read's 3BYTE_BGR and 4BYTE_ABGR give them
+            boolean direct = png.bitDepth() == 8 && bands >= 3 && colors.getColorSpace().isCS_sRGB()
+                && !colors.isAlphaPremultiplied();
+            Object element = png.bitDepth() == 16 ? new short[bands] : new byte[bands];
+
+            TiledImage tiled = create(store, width, height, tileSize, colors.hasAlpha(), cacheBytes);
+            try {
+                int[] samples = new int[width * bands];
+                int[] argb = new int[width];
+                for (int y = 0; y < height; y++) {
+                    png.readRow(samples);
+                    for (int x = 0, i = 0; x < width; x++, i += bands) {
+                        if (indexed) {
+                            argb[x] = colors.getRGB(samples[i]);
+                        } else if (direct) {
+                            int a = bands == 4 ? samples[i + 3] : 0xFF;
+                            argb[x] = a << 24 | samples[i] << 16 | samples[i + 1] << 8 | samples[i + 2];
+                        } else {
+                            for (int b = 0; b < bands; b++) {
+                                if (element instanceof short[]) ((short[]) element)[b] = (short) samples[i + b];
+                                else ((byte[]) element)[b] = (byte) samples[i + b];
+                            }
+                            argb[x] = colors.getRGB(element);
+                        }
+                    }
+                    int ty = y / tileSize, py = y % tileSize;
+                    for (int tx = 0; tx < tiled.tilesX; tx++) {
+                        Tile t = tiled.tile(tx, ty);
+                        t.setRow(py, argb, t.x);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                tiled.close();
+                throw e;
+            }
+            return tiled;
+        }
+    }
+
+    /**
+     * The reader's type to decode through a TileSink: INT_ARGB or INT_RGB if
+     * offered, or in place of a default of interleaved bytes (JPEG and BMP
+     * offer only those); otherwise the default type (the one ImageIO.read
+     * uses, so gray stays gray and a palette keeps its colours) if that has
+     * one data element per pixel. Null if nothing fits, or if the image has
+     * more pixels than a DataBuffer can index.
+     */
+    private static ImageTypeSpecifier sinkType(ImageReader reader, int width, int height) throws IOException {
+        if (!SINK_FORMATS.contains(reader.getFormatName().toLowerCase(Locale.ROOT))) return null;
+        if ((long) width * height > Integer.MAX_VALUE) return null;
+        ImageTypeSpecifier first = null;
+        for (Iterator<ImageTypeSpecifier> it = reader.getImageTypes(0); it.hasNext();) {
+            ImageTypeSpecifier spec = it.next();
+            int type = spec.getBufferedImageType();
+            if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) return spec;
+            if (first == null) first = spec;
+        }
+        if (first == null) return null;
+        if (first.getBufferedImageType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_RGB);
+        }
+        if (first.getBufferedImageType() == BufferedImage.TYPE_4BYTE_ABGR) {
+            return ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_ARGB);
+        }
+        SampleModel layout = first.getSampleModel(1, 1);
+        int dataType = layout.getDataType();
+        if (dataType != DataBuffer.TYPE_BYTE && dataType != DataBuffer.TYPE_USHORT && dataType != DataBuffer.TYPE_INT) {
+            return null;
+        }
+        if (layout instanceof SinglePixelPackedSampleModel) return first;
+        if (layout instanceof ComponentSampleModel && layout.getNumBands() == 1
+                && ((ComponentSampleModel) layout).getPixelStride() == 1) {
+            return first;
+        }
+        return null;
+    }
+
+    /** The fallback import: one band of tile rows per region read */
+    private static TiledImage importBands(File image, File store, int width, int height, int tileSize,
+                                          long cacheBytes) throws IOException {
+        BufferedImage probe = ImageSplitter.readRegion(image, new Rectangle(0, 0, 1, 1));
+        TiledImage tiled = create(store, width, height, tileSize, probe.getColorModel().hasAlpha(), cacheBytes);
+        if (tiled.tilesY > 1) {
+            System.err.println("Warning: " + image.getName() + " (" + width + "x" + height + ") cannot be decoded"
+                + " in one pass; it is decoded again for each of " + tiled.tilesY + " bands of rows,"
+                + " which takes a long time for large images");
+        }
+        try {
+            int[] buf = new int[tileSize * tileSize];
+            for (int ty = 0; ty < tiled.tilesY; ty++) {
+                int y0 = ty * tileSize;
+                int h = Math.min(tileSize, height - y0);
+                BufferedImage band = ImageSplitter.readRegion(image, new Rectangle(0, y0, width, h));
+                for (int tx = 0; tx < tiled.tilesX; tx++) {
+                    Tile t = tiled.tile(tx, ty);
+                    band.getRGB(t.x, 0, t.width, h, buf, 0, t.width);
+                    for (int py = 0; py < h; py++) t.setRow(py, buf, py * t.width);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            tiled.close();
+            throw e;
+        }
+        return tiled;
+    }
+
+    /**
+     * A write-through DataBuffer over the store, used as a decoder's
+     * destination: element y * width + x is pixel (x, y), converted to ARGB
+     * with the reader's colour model as it is written. Decoders write rows
+     * left to right, so the last tile is kept and looked up again only
+     * when a write leaves it.
+     */
+    private final class TileSink extends DataBuffer {
+        private final ColorModel colors;
+        /** INT_ARGB or INT_RGB: elements are already ARGB, less any alpha */
+        private final boolean direct;
+        private final int opaque;
+        /** One element, for ColorModel.getRGB(Object) as BufferedImage.getRGB converts */
+        private final Object element;
+        private Tile last;
+
+        TileSink(int dataType, ColorModel colors, boolean direct) {
+            super(dataType, width * height);
+            this.colors = colors;
+            this.direct = direct;
+            this.opaque = colors.hasAlpha() ? 0 : 0xFF000000;
+            this.element = dataType == TYPE_BYTE ? new byte[1] : dataType == TYPE_USHORT ? new short[1] : new int[1];
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            int x = i % width, y = i / width;
+            Tile t = tileAt(x, y);
+            int argb = t.get(x - t.x, y - t.y);
+            if (direct) return argb & ~opaque;
+            Object e = colors.getDataElements(argb, null);
+            if (e instanceof byte[]) return ((byte[]) e)[0] & 0xFF;
+            if (e instanceof short[]) return ((short[]) e)[0] & 0xFFFF;
+            return ((int[]) e)[0];
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            int x = i % width, y = i / width;
+            Tile t = tileAt(x, y);
+            t.set(x - t.x, y - t.y, direct ? val | opaque : rgb(val));
+        }
+
+        private int rgb(int val) {
+            if (element instanceof byte[]) ((byte[]) element)[0] = (byte) val;
+            else if (element instanceof short[]) ((short[]) element)[0] = (short) val;
+            else ((int[]) element)[0] = val;
+            return colors.getRGB(element);
+        }
+
+        private Tile tileAt(int x, int y) {
+            Tile t = last;
+            if (t == null || x < t.x || x >= t.x + t.width || y < t.y || y >= t.y + t.height) {
+                try {
+                    t = tile(x / tileSize, y / tileSize);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                last = t;
+            }
+            return t;
+        }
+    }
+
+    // ── access ──
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int tileSize() {
+        return tileSize;
+    }
+
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    public File store() {
+        return store;
+    }
+
+    /**
+     * The tile at tile coordinates (tx, ty), mapping it if it is not resident.
+     */
+    public Tile tile(int tx, int ty) throws IOException {
+        int key = ty * tilesX + tx;
+        synchronized (resident) {
+            Tile t = resident.get(key);
+            if (t != null) return t;
+        }
+        long offset = DATA_OFFSET + (long) key * tileBytes;
+        IntBuffer pixels = channel.map(FileChannel.MapMode.READ_WRITE, offset, tileBytes)
+            .order(ByteOrder.nativeOrder()).asIntBuffer();
+        int x = tx * tileSize, y = ty * tileSize;
+        Tile t = new Tile(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y), tileSize, pixels);
+        synchronized (resident) {
+            Tile raced = resident.putIfAbsent(key, t);
+            return raced != null ? raced : t;
+        }
+    }
+
+    /** ARGB at (x, y) */
+    public int getRGB(int x, int y) throws IOException {
+        return tile(x / tileSize, y / tileSize).get(x % tileSize, y % tileSize);
+    }
+
+    public void setRGB(int x, int y, int argb) throws IOException {
+        tile(x / tileSize, y / tileSize).set(x % tileSize, y % tileSize, argb);
+    }
+
+    /**
+     * Tiles overlapping {@code region}, row by row. Mapping failures surface
+     * as UncheckedIOException.
+     */
+    public Iterable<Tile> tiles(Rectangle region) {
+        Rectangle r = region.intersection(new Rectangle(0, 0, width, height));
+        int tx0 = r.x / tileSize, ty0 = r.y / tileSize;
+        int tx1 = r.isEmpty() ? tx0 - 1 : (r.x + r.width - 1) / tileSize;
+        int ty1 = r.isEmpty() ? ty0 - 1 : (r.y + r.height - 1) / tileSize;
+        return () -> new Iterator<Tile>() {
+            int tx = tx0, ty = ty0;
+
+            @Override
+            public boolean hasNext() {
+                return ty <= ty1 && tx <= tx1;
+            }
+
+            @Override
+            public Tile next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Tile t;
+                try {
+                    t = tile(tx, ty);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (++tx > tx1) {
+                    tx = tx0;
+                    ty++;
+                }
+                return t;
+            }
+        };
+    }
+
+    public Iterable<Tile> tiles() {
+        return tiles(new Rectangle(0, 0, width, height));
+    }
+
+    // ── operations ──
+
+    /**
+     * Applies {@code op} to every pixel, tiles in parallel.
+     */
+    public void apply(ImagePipeline.PixelOp op, int threads) throws IOException {
+        int n = tilesX * tilesY;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, n)));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            int workers = Math.max(1, Math.min(threads, n));
+            for (int w = 0; w < workers; w++) {
+                int first = w;
+                futures.add(pool.submit(() -> {
+                    int[] row = new int[tileSize];
+                    for (int k = first; k < n; k += workers) {
+                        Tile t = tile(k % tilesX, k / tilesX);
+                        for (int py = 0; py < t.height; py++) {
+                            t.getRow(py, row, 0);
+                            for (int px = 0; px < t.width; px++) row[px] = op.apply(row[px]);
+                            t.setRow(py, row, 0);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            awaitAll(futures, "apply to " + store);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Copies {@code region} into a new BufferedImage. The region must fit in
+     * one (2^31 samples); use {@link #writePng} for anything larger.
+     */
+    public BufferedImage toBufferedImage(Rectangle region) throws IOException {
+        Rectangle r = region.intersection(new Rectangle(0, 0, width, height));
+        if ((long) r.width * r.height > Integer.MAX_VALUE - 8) {
+            throw new IOException("Region " + r.width + "x" + r.height + " is too large for a BufferedImage");
+        }
+        BufferedImage out = new BufferedImage(Math.max(1, r.width), Math.max(1, r.height),
+            alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[r.width];
+        for (int y = r.y; y < r.y + r.height; y++) {
+            readRow(y, r.x, r.width, row);
+            out.setRGB(0, y - r.y, r.width, 1, row, 0, r.width);
+        }
+        return out;
+    }
+
+    /**
+     * Reads {@code count} pixels of row {@code y} from column {@code x}.
+     */
+    public void readRow(int y, int x, int count, int[] dst) throws IOException {
+        int ty = y / tileSize, py = y % tileSize;
+        int done = 0;
+        while (done < count) {
+            int cx = x + done;
+            Tile t = tile(cx / tileSize, ty);
+            int px = cx - t.x;
+            int n = Math.min(t.width - px, count - done);
+            t.pixels.get(py * t.stride + px, dst, done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Streams {@code region} to a PNG file, one row at a time: 8-bit RGB, or
+     * RGBA if the source had alpha, with the Sub filter on every row.
+     */
+    public void writePng(Rectangle region, File out) throws IOException {
+        Rectangle r = region.intersection(new Rectangle(0, 0, width, height));
+        if (r.isEmpty()) throw new IOException("Empty region " + region);
+        int channels = alpha ? 4 : 3;
+
+        try (DataOutputStream png = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out), 1 << 16))) {
+            png.write(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' });
+
+            ByteBuffer ihdr = ByteBuffer.allocate(13);
+            ihdr.putInt(r.width).putInt(r.height).put((byte) 8).put((byte) (alpha ? 6 : 2))
+                .put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk(png, "IHDR", ihdr.array(), 13);
+
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            try (IdatStream idat = new IdatStream(png);
+                 DeflaterOutputStream z = new DeflaterOutputStream(idat, deflater, 1 << 16)) {
+                int[] argb = new int[r.width];
+                byte[] line = new byte[1 + r.width * channels];
+                line[0] = 1; // Sub
+                for (int y = r.y; y < r.y + r.height; y++) {
+                    readRow(y, r.x, r.width, argb);
+                    int pr = 0, pg = 0, pb = 0, pa = 0;
+                    for (int i = 0, o = 1; i < r.width; i++) {
+                        int p = argb[i];
+                        int red = (p >> 16) & 0xFF, green = (p >> 8) & 0xFF, blue = p & 0xFF;
+                        line[o++] = (byte) (red - pr);
+                        line[o++] = (byte) (green - pg);
+                        line[o++] = (byte) (blue - pb);
+                        pr = red; pg = green; pb = blue;
+                        if (alpha) {
+                            int a = p >>> 24;
+                            line[o++] = (byte) (a - pa);
+                            pa = a;
+                        }
+                    }
+                    z.write(line);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            writeChunk(png, "IEND", new byte[0], 0);
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int len) throws IOException {
+        byte[] t = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(t);
+        crc.update(data, 0, len);
+        out.writeInt(len);
+        out.write(t);
+        out.write(data, 0, len);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /** Cuts the deflate stream into 64 KB IDAT chunks */
+    private static final class IdatStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] buf = new byte[1 << 16];
+        private int len;
+
+        IdatStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (len == buf.length) flushChunk();
+            buf[len++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int n) throws IOException {
+            while (n > 0) {
+                if (len == buf.length) flushChunk();
+                int k = Math.min(n, buf.length - len);
+                System.arraycopy(b, off, buf, len, k);
+                len += k;
+                off += k;
+                n -= k;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (len > 0) writeChunk(out, "IDAT", buf, len);
+            len = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> futures, String what) throws IOException {
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            throw new IOException("Could not " + what + ": " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during " + what, e);
+        } finally {
+            for (Future<?> f : futures) f.cancel(true);
+        }
+    }
+
+    /**
+     * Drops the resident tiles and releases the store file. Each mapping is
+     * unmapped once its buffer is collected; until then Windows will not
+     * delete the file (see {@link #deleteStore}).
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (resident) {
+            resident.clear();
+        }
+        file.close();
+    }
+
+    /**
+     * Deletes a (closed) tile store. Windows refuses to delete a file while
+     * any part of it is mapped, and a mapping ends only when its buffer is
+     * garbage collected, so a failed delete is retried once after a GC.
+     */
+    public static void deleteStore(File store) {
+        if (store.delete() || !store.exists()) return;
+        System.gc();
+        if (store.delete() || !store.exists()) return;
+        System.err.println("Warning: could not delete tile store " + store + " (still mapped); delete it after exit");
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * TiledImageApp - crop, split, grayscale and recolor images of any size
+ *
+ * For panoramas and blueprints beyond what a single BufferedImage (2^31
+ * samples) or the default heap can hold. The source is decoded in one pass
+ * into a memory-mapped tile store (TiledImage), processed tile by tile, and
+ * written back out as streamed PNGs. The tiles are mapped file pages, not
+ * heap: --cache-mb caps how many stay mapped at once, and the heap holds
+ * only a few rows of pixels however large the image.
+ *
+ * Steps run in this order: gray and recolor (fused into one pass), then the
+ * crop, then the split of the cropped area into vertical slices.
+ *
+ * Usage:
+ *   java TiledImageApp <image> [--gray] [--recolor RRGGBB] [--crop X,Y,W,H] [--split N]
+ *                      [--out DIR] [--tile N] [--cache-mb N] [--threads N] [--keep-store]
+ *
+ * Output:
+ *   <stem>-tiled.png, or <stem>-slice-NN.png with --split
+ *
+ * Example:
+ *   java TiledImageApp "G:\My Drive\Games\BGC\2026\architecture\stone-arch.png" --gray --split 10
+ */
+public class TiledImageApp {
+
+    public static void main(String[] args) throws IOException {
+        args = Metrics.init("TiledImageApp", args);
+        // ── Argument handling ──────────────────────────────────────────────
+        if (args.length < 1 || args[0].startsWith("--")) {
+            System.err.println("Usage: java TiledImageApp <image> [--gray] [--recolor RRGGBB] [--crop X,Y,W,H] [--split N]");
+            System.err.println("                          [--out DIR] [--tile N] [--cache-mb N] [--threads N] [--keep-store]");
+            System.exit(1);
+        }
+
+        File input = new File(args[0]);
+        if (!input.isFile()) {
+            System.err.println("Error: file not found: " + args[0]);
+            System.exit(1);
+        }
+        boolean gray      = hasFlag(args, "--gray");
+        String recolor    = flagValue(args, "--recolor", null);
+        String crop       = flagValue(args, "--crop", null);
+        int split         = Integer.parseInt(flagValue(args, "--split", "0"));
+        int tile          = Integer.parseInt(flagValue(args, "--tile", String.valueOf(TiledImage.DEFAULT_TILE)));
+        long cacheBytes   = Long.parseLong(flagValue(args, "--cache-mb", "256")) << 20;
+        int threads       = Integer.parseInt(flagValue(args, "--threads",
+                                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        boolean keepStore = hasFlag(args, "--keep-store");
+        File outDir       = new File(flagValue(args, "--out", input.getAbsoluteFile().getParent()));
+
+        ImagePipeline.PixelOp op = null;
+        if (gray) op = GrayScalerService::gray;
+        if (recolor != null) {
+            String hex = recolor.replaceFirst("^#", "");
+            if (!hex.matches("[0-9A-Fa-f]{6}")) {
+                System.err.println("Error: --recolor needs 6 hex digits (e.g. FF0000)");
+                System.exit(1);
+            }
+            int color = Integer.parseInt(hex, 16);
+            ImagePipeline.PixelOp paint = argb -> ImageColorApp.isNearBlack(argb) ? (argb & 0xFF000000) | color : argb;
+            op = op == null ? paint : op.andThen(paint);
+        }
+
+        String name = input.getName();
+        String stem = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+        outDir.mkdirs();
+        File store = new File(outDir, stem + ".tiles");
+
+        // ── Import, process, export ────────────────────────────────────────
+        long t0 = System.nanoTime();
+        String format = Metrics.format(name);
+        try (TiledImage img = TiledImage.importImage(input, store, tile, cacheBytes)) {
+            Metrics.stage(Metrics.DECODE, format, t0);
+            System.out.printf(Locale.ROOT, "Imported %s: %dx%d (%.1f Mpx) in %.2f s%n", name,
+                img.width(), img.height(), (double) img.width() * img.height() / 1e6, seconds(t0));
+
+            if (op != null) {
+                long t1 = System.nanoTime();
+                img.apply(op, threads);
+                Metrics.stage(Metrics.TRANSFORM, format, t1);
+                System.out.printf(Locale.ROOT, "Processed pixels in %.2f s%n", seconds(t1));
+            }
+
+            Rectangle area = new Rectangle(0, 0, img.width(), img.height());
+            if (crop != null) {
+                String[] r = crop.split(",");
+                if (r.length != 4) {
+                    System.err.println("Error: --crop needs X,Y,W,H");
+                    System.exit(1);
+                }
+                area = area.intersection(new Rectangle(Integer.parseInt(r[0].trim()), Integer.parseInt(r[1].trim()),
+                    Integer.parseInt(r[2].trim()), Integer.parseInt(r[3].trim())));
+                if (area.isEmpty()) {
+                    System.err.println("Error: --crop lies outside the image");
+                    System.exit(1);
+                }
+            }
+
+            long t2 = System.nanoTime();
+            if (split > 1) {
+                int sliceWidth = (area.width + split - 1) / split;
+                int n = 0;
+                for (int x = area.x; x < area.x + area.width; x += sliceWidth) {
+                    Rectangle slice = new Rectangle(x, area.y, Math.min(sliceWidth, area.x + area.width - x), area.height);
+                    File out = new File(outDir, stem + String.format("-slice-%02d.png", ++n));
+                    img.writePng(slice, out);
+                    System.out.println("Saved: " + out.getPath() + " (" + slice.width + "x" + slice.height + ")");
+                }
+            } else {
+                File out = new File(outDir, stem + "-tiled.png");
+                img.writePng(area, out);
+                System.out.println("Saved: " + out.getPath() + " (" + area.width + "x" + area.height + ")");
+            }
+            Metrics.stage(Metrics.ENCODE, "png", t2);
+            Metrics.file(format, true);
+            System.out.printf(Locale.ROOT, "Wrote output in %.2f s%n", seconds(t2));
+        } finally {
+            if (!keepStore) TiledImage.deleteStore(store);
+        }
+
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf(Locale.ROOT, "Done in %.2f s, heap in use %d MB%n",
+            seconds(t0), (rt.totalMemory() - rt.freeMemory()) >> 20);
+    }
+
+    private static double seconds(long since) {
+        return (System.nanoTime() - since) / 1e9;
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String a : args) {
+            if (a.equalsIgnoreCase(flag)) return true;
+        }
+        return false;
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
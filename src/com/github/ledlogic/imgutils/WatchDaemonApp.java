@@ -0,0 +1,503 @@
+package com.github.ledlogic.imgutils;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * WatchDaemon - keeps folders processed as files arrive
+ *
+ * Runs the image operations of the one-shot apps as a long-lived process.
+ * Each watched folder is registered with a WatchService, so only files that
+ * are created or modified are looked at; there is no rescan and no JVM
+ * start per batch.
+ *
+ * A file is dispatched once it has settled: no event for --settle ms, the
+ * same size and modification time on two checks in a row, and readable
+ * (on Windows a file still being written by a sync client cannot be
+ * opened). Each processed file's size and time are remembered, so a touch
+ * that changes nothing is not reprocessed. Files the daemon writes itself
+ * are remembered the same way, if an operation would pick them up, and
+ * never fed back in. A file is forgotten once it is deleted.
+ *
+ * A file only counts as processed when its operation wrote a non-empty
+ * output; anything else counts as failed.
+ *
+ * All folders and operations share one worker pool of --threads threads.
+ *
+ * Operations:
+ *   grayscale   *.png *.jpg -> <stem>-gray.png  (GrayScalerService; deletes the original)
+ *   webp        *.webp      -> <stem>.png       (WebpConverterService, needs dwebp)
+ *   heic        *.heic      -> <stem>.png       (HeicConverterService, needs magick)
+ *   preview     slicer files and *.stl -> <stem>.preview.jpg  (SliceViewerApp)
+ *
+ * Usage:
+ *   java WatchDaemon <op>=<dir> [<op>=<dir> ...] [--recursive] [--scan]
+ *                    [--settle MS] [--threads N]
+ *
+ *   --recursive   also watch sub-folders, including ones created later
+ *   --scan        process the files already in each folder at start-up
+ *   --settle MS   quiet time before a file counts as written (default 2000)
+ *
+ * Example:
+ *   java WatchDaemon "heic=G:\My Drive\Ebay\incoming" "preview=C:\Users\Jeff\Desktop\SUP_Files" --recursive
+ */
+public class WatchDaemonApp {
+
+    enum Op {
+        GRAYSCALE {
+            @Override
+            boolean accepts(String lower) {
+                return (lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg"))
+                    && !lower.endsWith("-gray.png");
+            }
+
+            @Override
+            Path apply(Path file) throws Exception {
+                Path out = file.resolveSibling(stem(file) + "-gray.png");
+                GrayScalerService.convertWebFile(file.toString(), out.toString());
+                return out;
+            }
+        },
+        WEBP {
+            @Override
+            boolean accepts(String lower) {
+                return lower.endsWith(".webp");
+            }
+
+            @Override
+            Path apply(Path file) throws Exception {
+                Path out = file.resolveSibling(stem(file) + ".png");
+                WebpConverterService.convertWebFile(file.toString(), out.toString());
+                return out;
+            }
+        },
+        HEIC {
+            @Override
+            boolean accepts(String lower) {
+                return lower.endsWith(".heic");
+            }
+
+            @Override
+            Path apply(Path file) throws Exception {
+                Path out = file.resolveSibling(stem(file) + ".png");
+                HeicConverterService.convertWebFile(file.toString(), out.toString());
+                return out;
+            }
+        },
+        PREVIEW {
+            @Override
+            boolean accepts(String lower) {
+                return SliceViewerApp.isPreviewSource(lower);
+            }
+
+            @Override
+            Path apply(Path file) throws Exception {
+                Path out = file.resolveSibling(stem(file) + ".preview.jpg");
+                SliceViewerApp.writeJpeg(SliceViewerApp.loadPreview(file.toFile()), out, 0.90f, Color.BLACK);
+                return out;
+            }
+        };
+
+        abstract boolean accepts(String lower);
+
+        /** Processes {@code file}, returning the file written */
+        abstract Path apply(Path file) throws Exception;
+
+        private static String stem(Path file) {
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            return dot > 0 ? name.substring(0, dot) : name;
+        }
+    }
+
+    /** A file waiting to settle */
+    private static final class Pending {
+        long lastEvent;
+        long size = -1;
+        long modified = -1;
+    }
+
+    private final WatchService watcher;
+    private final boolean recursive;
+    private final long settleMillis;
+    private final ExecutorService pool;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final Map<Path, List<Op>> opsByDir = new ConcurrentHashMap<>();
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    /** path -> size and modification time when last processed or written; dropped on delete */
+    private final Map<Path, Long> stamps = new ConcurrentHashMap<>();
+    private final Set<Path> running = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    WatchDaemonApp(boolean recursive, long settleMillis, int threads) throws IOException {
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.recursive = recursive;
+        this.settleMillis = settleMillis;
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    public static void main(String[] args) throws IOException {
+        args = Metrics.init("WatchDaemonApp", args);
+        // ── Argument handling ──────────────────────────────────────────────
+        boolean recursive = hasFlag(args, "--recursive");
+        boolean scan = hasFlag(args, "--scan");
+        long settle = Long.parseLong(flagValue(args, "--settle", "2000"));
+        int threads = Integer.parseInt(flagValue(args, "--threads",
+                          String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        List<String> watches = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--settle") || args[i].equals("--threads")) {
+                i++;
+            } else if (!args[i].startsWith("--")) {
+                watches.add(args[i]);
+            }
+        }
+        if (watches.isEmpty()) {
+            System.out.println("Usage: java WatchDaemon <op>=<dir> [<op>=<dir> ...] [--recursive] [--scan] [--settle MS] [--threads N]");
+            System.out.println("  ops: grayscale, webp, heic, preview");
+            System.exit(1);
+        }
+
+        WatchDaemonApp daemon = new WatchDaemonApp(recursive, settle, threads);
+        for (String watch : watches) {
+            String opName = StringUtils.substringBefore(watch, "=");
+            String dirName = StringUtils.substringAfter(watch, "=");
+            Op op;
+            try {
+                op = Op.valueOf(opName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                op = null;
+            }
+            Path dir = Paths.get(dirName).toAbsolutePath().normalize();
+            if (op == null || dirName.isEmpty()) {
+                System.err.println("ERROR: expected <op>=<dir> with op grayscale, webp, heic or preview: " + watch);
+                System.exit(1);
+            }
+            if (!Files.isDirectory(dir)) {
+                System.err.println("ERROR: Not a directory: " + dir);
+                System.exit(1);
+            }
+            daemon.watch(dir, op, scan);
+            System.out.println("Watching " + dir + " (" + op.name().toLowerCase() + ")");
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::shutdown));
+        daemon.run();
+    }
+
+    // ── Registration ──────────────────────────────────────────────────────
+
+    void watch(Path root, Op op, boolean scan) throws IOException {
+        // the root on its own: without --recursive there is no walk to register it
+        register(root, List.of(op));
+        if (recursive) {
+            Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        register(dir, List.of(op));
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        System.err.println("Cannot access: " + file + " (" + exc.getMessage() + ")");
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+        }
+        if (scan) enqueueExisting(root, recursive);
+    }
+
+    private void register(Path dir, List<Op> ops) throws IOException {
+        List<Op> current = opsByDir.computeIfAbsent(dir, k -> {
+            try {
+                keys.put(k.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), k);
+            } catch (IOException e) {
+                System.err.println("Cannot watch " + k + ": " + e.getMessage());
+            }
+            return new ArrayList<>();
+        });
+        synchronized (current) {
+            for (Op op : ops) {
+                if (!current.contains(op)) current.add(op);
+            }
+        }
+    }
+
+    /** Queues every file already in {@code dir} (and below, if deep) */
+    private void enqueueExisting(Path dir, boolean deep) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    if (deep) enqueueExisting(entry, true);
+                } else {
+                    touch(entry);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot list " + dir + ": " + e.getMessage());
+        }
+    }
+
+    // ── Event loop ────────────────────────────────────────────────────────
+
+    void run() {
+        long tick = Math.max(100, settleMillis / 4);
+        ticker.scheduleWithFixedDelay(this::dispatchSettled, tick, tick, TimeUnit.MILLISECONDS);
+
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = keys.get(key);
+            if (dir == null) {
+                key.cancel();
+                continue;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // events were dropped: look at everything in the folder again
+                    enqueueExisting(dir, false);
+                    continue;
+                }
+                Path child = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    forget(child);
+                    continue;
+                }
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    if (recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        watchNewDirectory(child, opsByDir.get(dir));
+                    }
+                } else {
+                    touch(child);
+                }
+            }
+
+            if (!key.reset()) {
+                keys.remove(key);
+                opsByDir.remove(dir);
+            }
+        }
+    }
+
+    private void watchNewDirectory(Path dir, List<Op> ops) {
+        List<Op> inherited;
+        synchronized (ops) {
+            inherited = new ArrayList<>(ops);
+        }
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                    register(d, inherited);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Cannot watch " + dir + ": " + e.getMessage());
+        }
+        // files may have landed before the folder was registered
+        enqueueExisting(dir, true);
+    }
+
+    /** Records an event for {@code file}, if any operation wants it */
+    private void touch(Path file) {
+        if (opsFor(file).isEmpty()) return;
+        pending.computeIfAbsent(file, k -> new Pending()).lastEvent = System.currentTimeMillis();
+    }
+
+    private List<Op> opsFor(Path file) {
+        List<Op> ops = opsByDir.get(file.getParent());
+        if (ops == null) return List.of();
+        String lower = file.getFileName().toString().toLowerCase();
+        List<Op> wanted = new ArrayList<>(1);
+        synchronized (ops) {
+            for (Op op : ops) {
+                if (op.accepts(lower)) wanted.add(op);
+            }
+        }
+        return wanted;
+    }
+
+    // ── Debounce and dispatch ─────────────────────────────────────────────
+
+    private void dispatchSettled() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, Pending> e : pending.entrySet()) {
+            Path file = e.getKey();
+            Pending p = e.getValue();
+            if (now - p.lastEvent < settleMillis) continue;
+
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException gone) {
+                forget(file);
+                continue;
+            }
+            long size = attrs.size();
+            long modified = attrs.lastModifiedTime().toMillis();
+            if (size != p.size || modified != p.modified) {
+                // still changing (or first check): wait another settle period
+                p.size = size;
+                p.modified = modified;
+                p.lastEvent = now;
+                continue;
+            }
+            if (!readable(file)) {
+                p.lastEvent = now;
+                continue;
+            }
+
+            pending.remove(file);
+            Long stamp = stamps.get(file);
+            if (stamp != null && stamp == stamp(size, modified)) continue;  // unchanged, or our own output
+            if (!running.add(file)) {
+                // being processed right now: look again once that finishes
+                touch(file);
+                continue;
+            }
+            stamps.put(file, stamp(size, modified));
+            pool.execute(() -> process(file));
+        }
+    }
+
+    private void process(Path file) {
+        try {
+            for (Op op : opsFor(file)) {
+                if (!Files.exists(file)) break;  // an earlier operation consumed it
+                long t0 = System.nanoTime();
+                Path out = op.apply(file);
+                if (!Files.isRegularFile(out) || Files.size(out) == 0) {
+                    throw new IOException(op.name().toLowerCase() + " wrote no output: " + out);
+                }
+                remember(out);
+                processed.incrementAndGet();
+                System.out.printf("  %-9s %s -> %s (%d ms)%n", op.name().toLowerCase(),
+                    file.getFileName(), out.getFileName(), (System.nanoTime() - t0) / 1_000_000);
+            }
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+            System.err.println("  FAILED: " + file + " (" + ex + ")");
+        } finally {
+            running.remove(file);
+            if (!Files.exists(file)) stamps.remove(file);  // consumed by its operation
+        }
+    }
+
+    /**
+     * Marks a file the daemon wrote, so its own events are ignored. Outputs
+     * no operation would pick up are not stamped, as their events are
+     * dropped anyway.
+     */
+    private void remember(Path out) {
+        if (opsFor(out).isEmpty()) return;
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(out, BasicFileAttributes.class);
+            stamps.put(out, stamp(attrs.size(), attrs.lastModifiedTime().toMillis()));
+        } catch (IOException e) {
+            // not written after all; nothing to ignore
+        }
+    }
+
+    /** Drops everything known about a file that is gone */
+    private void forget(Path file) {
+        pending.remove(file);
+        stamps.remove(file);
+    }
+
+    private static long stamp(long size, long modified) {
+        return modified * 31 + size;
+    }
+
+    private static boolean readable(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return in != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Files processed so far, by all operations */
+    int processed() {
+        return processed.get();
+    }
+
+    /** Files that failed so far, by all operations */
+    int failed() {
+        return failed.get();
+    }
+
+    /** Files whose size and time are remembered */
+    int remembered() {
+        return stamps.size();
+    }
+
+    void shutdown() {
+        ticker.shutdownNow();
+        pool.shutdown();
+        try {
+            pool.awaitTermination(30, TimeUnit.SECONDS);
+            watcher.close();
+        } catch (InterruptedException | IOException e) {
+            // exiting anyway
+        }
+        System.out.println("Stopped. Processed: " + processed.get() + ", Failed: " + failed.get()
+            + ", Pending: " + pending.size());
+    }
+
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String a : args) {
+            if (a.equalsIgnoreCase(flag)) return true;
+        }
+        return false;
+    }
+
+    private static String flagValue(String[] args, String flag, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equalsIgnoreCase(flag)) return args[i + 1];
+        }
+        return defaultValue;
+    }
+}
@@ -4,18 +4,20 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.github.ledlogic.imgutils.FileDiscoveryService.Format;
+
 public class WebpConverterApp {
 	
-	private static WebpFilenameFilter filter = new WebpFilenameFilter();
-	
 	public static void main(String[] args) throws IOException, InterruptedException {
+		args = Metrics.init("WebpConverterApp", args);
 		String attackFolder = "G:\\My Drive\\Games\\Traveller\\Traveller Scenarios\\Traveller Solomani Rim\\05-Dingir Zone\\char-npcs";
 		File attackFolderFile = new File(attackFolder);
 		
-		File[] files = attackFolderFile.listFiles(filter);
+		List<File> files = FileDiscoveryService.files(attackFolderFile, Format.WEBP);
 
 		String pattern = "yyyyMMddHHmm";
 		SimpleDateFormat simpleDateFormat = new SimpleDateFormat(pattern);
@@ -25,7 +27,7 @@ public class WebpConverterApp {
 		long cnt = 500;
 		for (File file: files) {
 			String inputFile = file.getName();
-			String outputFile = (newNames ? date + (cnt++) : StringUtils.replace(file.getName(),".webp", "")) + ".png";			
+			String outputFile = (newNames ? date + (cnt++) : StringUtils.substringBeforeLast(file.getName(), ".")) + ".png";			
 			
 			String inPath = attackFolder + "\\" + inputFile;
 			String outPath = attackFolder + "\\" + outputFile;
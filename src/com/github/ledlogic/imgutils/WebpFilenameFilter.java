@@ -1,14 +0,0 @@
-package com.github.ledlogic.imgutils;
-
-import java.io.File;
-import java.io.FilenameFilter;
-
-public class WebpFilenameFilter implements FilenameFilter {
-
-	@Override
-	public boolean accept(File dir, String name) {
-		boolean ret = name.toLowerCase().endsWith("webp");
-		return ret;
-	}
-
-}
\ No newline at end of file
@@ -57,13 +57,14 @@ public class ZipExtractor {
      * Result of extracting one zip file.
      * extracted = files written, skipped = files already present with matching size, errors = failures
      */
-    private static class ExtractResult {
+    static class ExtractResult {
         int extracted = 0;
         int skipped   = 0;
         boolean failed = false; // true if an IOException aborted the whole zip
     }
 
     public static void main(String[] args) {
+        args = Metrics.init("ZipExtractor", args);
         if (args.length == 0) { printUsage(); System.exit(1); }
 
         // --- Parse arguments ---
@@ -274,7 +275,7 @@ public class ZipExtractor {
      *
      * Uses a 64 KB read/write buffer for efficient I/O.
      */
-    private static ExtractResult extractZip(Path zip, Path destDir, boolean dryRun) {
+    static ExtractResult extractZip(Path zip, Path destDir, boolean dryRun) {
         ExtractResult result = new ExtractResult();
         byte[] buf = new byte[64 * 1024];
         try (ZipFile zf = new ZipFile(zip.toFile())) {
@@ -309,12 +310,20 @@ public class ZipExtractor {
                 // ── Extract ───────────────────────────────────────────────────
                 if (!dryRun) {
                     Files.createDirectories(outPath.getParent());
+                    String format = Metrics.format(entry.getName());
+                    StageEvent write = StageEvent.start(Metrics.WRITE, outPath.toString(), format);
+                    long written = 0;
                     try (InputStream in  = zf.getInputStream(entry);
                          OutputStream out = new BufferedOutputStream(
                                  Files.newOutputStream(outPath), 64 * 1024)) {
                         int n;
-                        while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+                        while ((n = in.read(buf)) != -1) {
+                            out.write(buf, 0, n);
+                            written += n;
+                        }
                     }
+                    write.bytes(written).finish();
+                    Metrics.bytesWritten(format, written);
                 }
                 info("  [FILE] " + zip.getFileName() + " -> " + entry.getName());
                 result.extracted++;
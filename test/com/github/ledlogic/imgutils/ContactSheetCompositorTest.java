@@ -0,0 +1,52 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContactSheetCompositorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyPageGetsItsTiles() throws IOException {
+        // 1in cells on a 3in x 3in page with 0.5in margins: 4 cells per page
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 6; i++) files.add(solid("tok" + i + ".png", 0x200000 * (i + 1)));
+        files.add(Files.write(dir.resolve("bad.png"), new byte[] { 1, 2, 3 }).toFile());
+        ContactSheetCompositor.Section section = new ContactSheetCompositor.Section(files, 96, 2, false, true, false);
+
+        List<File> pages = new ContactSheetCompositor(96, 3, 3, 0.5, "png", 2)
+            .render(List.of(section), dir.resolve("out").toFile(), "sheet");
+
+        assertEquals(4, pages.size());
+        // the second pass starts on page 2 after tok0..tok2 and the bad cell
+        BufferedImage page = ImageIO.read(pages.get(2));
+        assertEquals(0x200000, page.getRGB(48 + 48, 48 + 48) & 0xFFFFFF);
+        assertEquals(0x400000, page.getRGB(48 + 96 + 48, 48 + 48) & 0xFFFFFF);
+        // the bad image leaves its cell blank
+        assertEquals(0xFFFFFF, ImageIO.read(pages.get(1)).getRGB(48 + 48, 48 + 96 + 48) & 0xFFFFFF);
+    }
+
+    private File solid(String name, int rgb) throws IOException {
+        BufferedImage img = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 64; y++)
+            for (int x = 0; x < 64; x++)
+                img.setRGB(x, y, rgb);
+        File file = dir.resolve(name).toFile();
+        ImageIO.write(img, "png", file);
+        return file;
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DuplicateFinderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void groupsCopiesButNotLinks() throws Exception {
+        Path real = write("real.png");
+        Path copy = write("copy.png");
+        Path link = symlink("link.png", real);
+
+        List<List<Path>> groups = DuplicateFinder.findDuplicates(List.of(link, real, copy), 2);
+
+        assertEquals(List.of(List.of(real, copy)), groups);
+    }
+
+    @Test
+    void aLinkAndItsTargetAloneAreNotDuplicates() throws Exception {
+        Path real = write("real.png");
+        Path link = symlink("a.png", real);
+        Path hard = Files.createLink(dir.resolve("hard.png"), real);
+
+        assertTrue(DuplicateFinder.findDuplicates(List.of(link, real, hard), 2).isEmpty());
+    }
+
+    /** The shortest-path rule would keep "a.png" and delete the real file */
+    @Test
+    void contentModeKeepsTheFileALinkPointsTo() throws Exception {
+        Path real = dir.resolve("sub").resolve("original.png");
+        Files.createDirectories(real.getParent());
+        Files.write(real, bytes());
+        Path link = symlink("a.png", real);
+
+        ImageCopyRemoverApp.main(new String[] { dir.toString(), "--content", "--recursive" });
+
+        assertTrue(Files.exists(real));
+        assertTrue(Files.isSymbolicLink(link));
+    }
+
+    private Path write(String name) throws IOException {
+        return Files.write(dir.resolve(name), bytes());
+    }
+
+    private Path symlink(String name, Path target) throws IOException {
+        try {
+            return Files.createSymbolicLink(dir.resolve(name), target);
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "symbolic links not available: " + e);
+            return null;
+        }
+    }
+
+    private static byte[] bytes() {
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i * 31);
+        return data;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageCropAppTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * RGBA PNGs take the drawImage fallback; the second, transparent one
+     * must come out black, not with the first one's pixels from the pool
+     */
+    @Test
+    void pooledReadsDoNotLeakPixelsBetweenFiles() throws Exception {
+        File orange = png("orange.png", 0xFFFF8000);
+        File clear = png("clear.png", 0x00000000);
+
+        try (RasterPool.Lease first = ImageCropApp.readRaw(orange)) {
+            assertEquals(0xFFFF8000, first.image().getRGB(10, 10));
+        }
+        try (RasterPool.Lease second = ImageCropApp.readRaw(clear)) {
+            BufferedImage img = second.image();
+            for (int y = 0; y < img.getHeight(); y += 7) {
+                for (int x = 0; x < img.getWidth(); x += 7) {
+                    assertEquals(0xFF000000, img.getRGB(x, y), "pixel " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    private File png(String name, int argb) throws IOException {
+        BufferedImage img = new BufferedImage(300, 250, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) img.setRGB(x, y, argb);
+        }
+        File file = dir.resolve(name).toFile();
+        ImageIO.write(img, "png", file);
+        return file;
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImagePipelineAppTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameStemInputsGetDistinctOutputs() throws IOException {
+        File in = Files.createDirectory(dir.resolve("in")).toFile();
+        File out = new File(in, "pipeline");
+        List<File> files = List.of(new File(in, "a.png"), new File(in, "a.jpg"), new File(in, "A.webp"),
+            new File(in, "b.png"));
+
+        Map<File, File> outputs = ImagePipelineApp.outputs(files, out, "", "png");
+
+        assertEquals(new File(out, "a.png"), outputs.get(files.get(0)));
+        assertEquals(new File(out, "a-2.png"), outputs.get(files.get(1)));
+        assertEquals(new File(out, "A-3.png"), outputs.get(files.get(2)));
+        assertEquals(new File(out, "b.png"), outputs.get(files.get(3)));
+    }
+
+    @Test
+    void inputsInTheOutputFolderAreNeverTargets() throws IOException {
+        File in = dir.toFile();
+        List<File> files = List.of(new File(in, "a.jpg"), new File(in, "a.png"));
+
+        Map<File, File> outputs = ImagePipelineApp.outputs(files, in, "", "png");
+
+        assertEquals(new File(in, "a-2.png"), outputs.get(files.get(0)));
+        assertEquals(new File(in, "a-3.png"), outputs.get(files.get(1)));
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import com.sun.management.ThreadMXBean;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageSplitterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void slicesAreColumnsOfTheSource() throws IOException {
+        BufferedImage source = gradient(100, 20);
+        File input = dir.resolve("wide.png").toFile();
+        ImageIO.write(source, "png", input);
+
+        String pdf = dir.resolve("wide-slices.pdf").toString();
+        int slices = ImageSplitter.splitToPDF(input, 10, 3, pdf, true, true, 2);
+
+        assertEquals(4, slices);
+        assertTrue(Files.size(Path.of(pdf)) > 0);
+        int[] widths = { 30, 30, 30, 10 };
+        for (int i = 0; i < slices; i++) {
+            BufferedImage slice = ImageIO.read(dir.resolve(String.format("wide-slice-%02d.png", i + 1)).toFile());
+            assertEquals(widths[i], slice.getWidth());
+            assertEquals(20, slice.getHeight());
+            for (int y = 0; y < 20; y++) {
+                for (int x = 0; x < slice.getWidth(); x++) {
+                    assertEquals(source.getRGB(i * 30 + x, y), slice.getRGB(x, y), "slice " + i + " at " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void splitImageWritesEverySlice() throws IOException {
+        File input = dir.resolve("wide.png").toFile();
+        ImageIO.write(gradient(100, 20), "png", input);
+
+        List<File> files = ImageSplitter.splitImage(input, 10, 3, 2);
+
+        assertEquals(4, files.size());
+        assertEquals(10, ImageIO.read(files.get(3)).getWidth());
+    }
+
+    /**
+     * The split path must not decode the panorama onto the heap: the calling
+     * thread, which imports the source, may allocate only a fraction of the
+     * decoded image
+     */
+    @Test
+    void splitDoesNotDecodeTheWholeSource() throws IOException {
+        int width = 8000, height = 2000;
+        BufferedImage pano = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pano.setRGB(x, y, (x / 32) << 16 | (y / 8) << 8 | 0x80);
+            }
+        }
+        File input = dir.resolve("pano.png").toFile();
+        ImageIO.write(pano, "png", input);
+        pano = null;
+        String pdf = dir.resolve("pano-slices.pdf").toString();
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int slices = ImageSplitter.splitToPDF(input, 80, 4, pdf, false, false, 2);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(20, slices);
+        long decoded = (long) width * height * 3;
+        assertTrue(allocated < decoded / 2, "calling thread allocated " + allocated + " of " + decoded + " bytes");
+    }
+
+    private static BufferedImage gradient(int width, int height) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                img.setRGB(x, y, (x * 2) << 16 | (y * 10) << 8 | (x + y));
+            }
+        }
+        return img;
+    }
+}
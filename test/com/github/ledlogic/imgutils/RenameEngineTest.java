@@ -0,0 +1,94 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RenameEngineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void targetDifferingOnlyInCaseIsTaken() throws Exception {
+        write("IMG_1.jpg", "kept");
+        write("x.jpg", "moved");
+        RenameEngine engine = new RenameEngine(name -> name.equals("x.jpg") ? "img_1.jpg" : null, 1);
+
+        assertTrue(engine.plan(dir, false).isEmpty());
+        assertEquals(1, engine.skippedCount());
+    }
+
+    @Test
+    void targetCreatedAfterPlanningIsNotReplaced() throws Exception {
+        write("a.jpg", "source");
+        RenameEngine engine = new RenameEngine(name -> name.equals("a.jpg") ? "b.jpg" : null, 1);
+        Map<Path, List<RenameEngine.Step>> plan = engine.plan(dir, false);
+        write("b.jpg", "arrived");
+
+        engine.apply(plan, dir.resolve("journal.tsv"));
+
+        assertEquals("source", read("a.jpg"));
+        assertEquals("arrived", read("b.jpg"));
+        assertEquals(1, engine.skippedCount());
+    }
+
+    @Test
+    void undoDoesNotReplaceANewFile() throws Exception {
+        write("a.jpg", "source");
+        Path journal = dir.resolve("journal.tsv");
+        RenameEngine engine = new RenameEngine(name -> name.equals("a.jpg") ? "b.jpg" : null, 1);
+        engine.apply(engine.plan(dir, false), journal);
+        write("a.jpg", "arrived");
+
+        RenameEngine.undo(journal, 1);
+
+        assertEquals("arrived", read("a.jpg"));
+        assertEquals("source", read("b.jpg"));
+    }
+
+    @Test
+    void caseOnlyRenameGoesThroughATemporaryName() throws Exception {
+        write("IMG_1.JPG", "photo");
+        RenameEngine engine = new RenameEngine(name -> name.equals("IMG_1.JPG") ? "img_1.jpg" : null, 1);
+        Map<Path, List<RenameEngine.Step>> plan = engine.plan(dir, false);
+        assertEquals(2, plan.get(dir).size());
+
+        engine.apply(plan, dir.resolve("journal.tsv"));
+
+        assertEquals("photo", read("img_1.jpg"));
+        try (Stream<Path> names = Files.list(dir)) {
+            assertFalse(names.anyMatch(p -> p.getFileName().toString().equals("IMG_1.JPG")));
+        }
+    }
+
+    @Test
+    void swapStillWorks() throws Exception {
+        write("a.jpg", "A");
+        write("b.jpg", "B");
+        RenameEngine engine = new RenameEngine(name -> name.equals("a.jpg") ? "b.jpg" : name.equals("b.jpg") ? "a.jpg" : null, 1);
+
+        engine.apply(engine.plan(dir, false), dir.resolve("journal.tsv"));
+
+        assertEquals("B", read("a.jpg"));
+        assertEquals("A", read("b.jpg"));
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.writeString(dir.resolve(name), content);
+    }
+
+    private String read(String name) throws IOException {
+        return Files.readString(dir.resolve(name));
+    }
+}
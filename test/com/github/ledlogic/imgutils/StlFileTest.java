@@ -0,0 +1,93 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StlFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void binaryWithTrailingBytesIsBinary() throws IOException {
+        byte[] stl = TestData.stl(3);
+        Path file = write("trailing.stl", Arrays.copyOf(stl, stl.length + 17));
+        assertEquals(3, StlFile.binaryTriangleCount(file));
+        assertEquals(3, triangles(file));
+    }
+
+    @Test
+    void binaryWithSolidHeaderIsBinary() throws IOException {
+        byte[] stl = TestData.stl(4);
+        byte[] solid = "solid exported by a CAD tool".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(solid, 0, stl, 0, solid.length);
+        Path file = write("solid.stl", stl);
+        assertEquals(4, StlFile.binaryTriangleCount(file));
+        assertEquals(4, triangles(file));
+    }
+
+    @Test
+    void binaryWithZeroHeaderCountReadsTheRecords() throws IOException {
+        byte[] stl = TestData.stl(5);
+        Arrays.fill(stl, 80, 84, (byte) 0);
+        Path file = write("zero.stl", stl);
+        assertEquals(5, triangles(file));
+    }
+
+    @Test
+    void asciiIsAscii() throws IOException {
+        String text = "solid part\n"
+            + " facet normal 0 0 1\n  outer loop\n"
+            + "   vertex 0 0 0\n   vertex 1 0 0\n   vertex 0 1 0\n"
+            + "  endloop\n endfacet\n"
+            + "endsolid part\n";
+        Path file = write("ascii.stl", text.getBytes(StandardCharsets.US_ASCII));
+        assertEquals(-1, StlFile.binaryTriangleCount(file));
+        assertEquals(1, triangles(file));
+    }
+
+    @Test
+    void neitherFormatIsAnError() throws IOException {
+        byte[] text = "this is a plain text file that happens to have an .stl name, and it is long enough"
+            .repeat(3).getBytes(StandardCharsets.US_ASCII);
+        Path file = write("text.stl", text);
+        assertThrows(IOException.class, () -> StlFile.scan(file, 1, Counter::new));
+
+        Path tiny = write("tiny.stl", new byte[] { 1, 2, 3 });
+        assertThrows(IOException.class, () -> StlFile.scan(tiny, 1, Counter::new));
+    }
+
+    @Test
+    void truncatedAsciiIsAnError() throws IOException {
+        String text = "solid part\n facet normal 0 0 1\n  outer loop\n   vertex 0 0 0\n   vertex 1 0 0\n";
+        Path file = write("cut.stl", text.getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> StlFile.scan(file, 1, Counter::new));
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(dir.resolve(name), bytes);
+    }
+
+    private static long triangles(Path file) throws IOException {
+        return StlFile.scan(file, 2, Counter::new).stream().mapToLong(c -> c.n).sum();
+    }
+
+    private static final class Counter implements StlFile.TriangleVisitor {
+        long n;
+
+        @Override
+        public void triangle(float ax, float ay, float az, float bx, float by, float bz,
+                float cx, float cy, float cz) {
+            n++;
+        }
+    }
+}
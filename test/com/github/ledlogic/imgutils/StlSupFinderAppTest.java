@@ -0,0 +1,74 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StlSupFinderAppTest {
+
+    @TempDir
+    Path dir;
+
+    private Path out;
+    private final Map<String, CompletableFuture<Path>> meshes = new ConcurrentHashMap<>();
+    private final StlSupFinderApp.Transfers transfers = new StlSupFinderApp.Transfers();
+    private final List<String> errors = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        out = Files.createDirectory(dir.resolve("out"));
+    }
+
+    @Test
+    void sameMeshIsSkipped() throws IOException {
+        collect("a_SUP.stl", TestData.stl(3));
+        collect("b_SUP.stl", TestData.stl(3));
+        assertTrue(Files.exists(out.resolve("a_SUP.stl")));
+        assertFalse(Files.exists(out.resolve("b_SUP.stl")));
+        assertEquals(1, transfers.duplicates.get());
+    }
+
+    @Test
+    void emptyMeshesAreNotDuplicates() throws IOException {
+        assertNull(StlGeometryHash.of(Files.write(dir.resolve("empty.stl"), TestData.stl(0)), 1));
+        collect("a_SUP.stl", TestData.stl(0));
+        collect("b_SUP.stl", "solid b\nendsolid b\n".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(Files.exists(out.resolve("a_SUP.stl")));
+        assertTrue(Files.exists(out.resolve("b_SUP.stl")));
+        assertEquals(0, transfers.duplicates.get());
+        assertEquals(2, errors.size());
+    }
+
+    @Test
+    void unparseableFilesAreNotDuplicates() throws IOException {
+        byte[] junk = "not an stl file at all, just some text long enough to pass for a header"
+            .repeat(2).getBytes(StandardCharsets.US_ASCII);
+        collect("a_SUP.stl", junk);
+        collect("b_SUP.stl", junk);
+        assertTrue(Files.exists(out.resolve("a_SUP.stl")));
+        assertTrue(Files.exists(out.resolve("b_SUP.stl")));
+        assertEquals(0, transfers.duplicates.get());
+        assertEquals(2, errors.size());
+    }
+
+    private void collect(String name, byte[] bytes) throws IOException {
+        Path src = Files.write(dir.resolve(name), bytes);
+        StlSupFinderApp.transferUnique(src, out.resolve(name), "copy", "skip", bytes.length,
+            meshes, transfers, errors);
+    }
+}
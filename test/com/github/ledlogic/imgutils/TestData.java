@@ -0,0 +1,26 @@
+package com.github.ledlogic.imgutils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/** Small inputs built in memory for the tests */
+final class TestData {
+
+    private TestData() {
+    }
+
+    /** A binary STL of {@code triangles} distinct triangles, with an exact header count */
+    static byte[] stl(int triangles) {
+        ByteBuffer bb = ByteBuffer.allocate(84 + triangles * 50).order(ByteOrder.LITTLE_ENDIAN);
+        bb.position(80);
+        bb.putInt(triangles);
+        for (int i = 0; i < triangles; i++) {
+            bb.putFloat(0).putFloat(0).putFloat(1);
+            bb.putFloat(i).putFloat(0).putFloat(0);
+            bb.putFloat(i + 1).putFloat(0).putFloat(0);
+            bb.putFloat(i).putFloat(1).putFloat(0);
+            bb.putShort((short) 0);
+        }
+        return bb.array();
+    }
+}
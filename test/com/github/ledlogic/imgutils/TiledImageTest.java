@@ -0,0 +1,194 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TiledImageTest {
+
+    private static final int WIDTH = 300, HEIGHT = 210, TILE = 64;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void importsRgbPng() throws Exception {
+        assertImports(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)), "png"));
+    }
+
+    @Test
+    void importsRgbaPng() throws Exception {
+        assertImports(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB)), "png"));
+    }
+
+    @Test
+    void importsGrayPng() throws Exception {
+        assertImports(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY)), "png"));
+    }
+
+    @Test
+    void importsPalettePng() throws Exception {
+        byte[] r = new byte[256], g = new byte[256], b = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            r[i] = (byte) i;
+            g[i] = (byte) (255 - i);
+            b[i] = (byte) (i * 7);
+        }
+        BufferedImage indexed = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_INDEXED,
+            new IndexColorModel(8, 256, r, g, b));
+        assertImports(write(fill(indexed), "png"));
+    }
+
+    @Test
+    void importsSixteenBitGrayPng() throws Exception {
+        assertImports(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_USHORT_GRAY)), "png"));
+    }
+
+    @Test
+    void importsGrayJpeg() throws Exception {
+        assertImports(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY)), "jpg"));
+    }
+
+    /** 1-bit images have no one-element-per-pixel type and are streamed row by row instead */
+    @Test
+    void importsBinaryPng() throws Exception {
+        assertImports(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_BINARY)), "png"));
+    }
+
+    @Test
+    void importsJpeg() throws Exception {
+        assertImports(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)), "jpg"));
+    }
+
+    @Test
+    void importsBmp() throws Exception {
+        assertImports(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)), "bmp"));
+    }
+
+    // ── the row-by-row PNG path, used past 2^31 pixels ──
+
+    @Test
+    void streamsRgbAndRgbaPngs() throws Exception {
+        assertStreams(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)), "png"));
+        assertStreams(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB)), "png"));
+    }
+
+    @Test
+    void streamsGrayPngs() throws Exception {
+        assertStreams(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY)), "png"));
+        assertStreams(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_USHORT_GRAY)), "png"));
+        assertStreams(write(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_BINARY)), "png"));
+    }
+
+    @Test
+    void streamsGrayAlphaPng() throws Exception {
+        ColorModel colors = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY), true, false,
+            Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+        assertStreams(write(fill(new BufferedImage(colors, colors.createCompatibleWritableRaster(WIDTH, HEIGHT),
+            false, null)), "png"));
+    }
+
+    @Test
+    void streamsSixteenBitRgbaPng() throws Exception {
+        ColorModel colors = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), true, false,
+            Transparency.TRANSLUCENT, DataBuffer.TYPE_USHORT);
+        assertStreams(write(fill(new BufferedImage(colors, colors.createCompatibleWritableRaster(WIDTH, HEIGHT),
+            false, null)), "png"));
+    }
+
+    @Test
+    void streamsPalettePngs() throws Exception {
+        for (int bits : new int[] { 2, 4, 8 }) {
+            int size = 1 << bits;
+            byte[] r = new byte[size], g = new byte[size], b = new byte[size], a = new byte[size];
+            for (int i = 0; i < size; i++) {
+                r[i] = (byte) (i * 255 / (size - 1));
+                g[i] = (byte) (255 - i * 255 / (size - 1));
+                b[i] = (byte) (i * 37);
+                a[i] = (byte) (i % 3 == 0 ? 0x80 : 0xFF);
+            }
+            IndexColorModel opaque = new IndexColorModel(bits, size, r, g, b);
+            IndexColorModel translucent = new IndexColorModel(bits, size, r, g, b, a);
+            for (IndexColorModel colors : new IndexColorModel[] { opaque, translucent }) {
+                int type = bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY;
+                assertStreams(write(fill(new BufferedImage(WIDTH, HEIGHT, type, colors)), "png"));
+            }
+        }
+    }
+
+    @Test
+    void leavesInterlacedPngsToTheBandPath() throws Exception {
+        File file = dir.resolve("interlaced.png").toFile();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(fill(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)), null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        assertNull(TiledImage.importPng(file, dir.resolve("store.tiles").toFile(), TILE, 1 << 20));
+        assertImports(file);
+    }
+
+    /** Every pixel must match what ImageIO.read decodes */
+    private void assertImports(File image) throws IOException {
+        try (TiledImage tiled = TiledImage.importImage(image, dir.resolve("store.tiles").toFile(), TILE, 1 << 20)) {
+            assertMatches(image, tiled);
+        }
+    }
+
+    private void assertStreams(File image) throws IOException {
+        try (TiledImage tiled = TiledImage.importPng(image, dir.resolve("store.tiles").toFile(), TILE, 1 << 20)) {
+            assertNotNull(tiled);
+            assertMatches(image, tiled);
+        }
+    }
+
+    private static void assertMatches(File image, TiledImage tiled) throws IOException {
+        BufferedImage expected = ImageIO.read(image);
+        assertEquals(expected.getColorModel().hasAlpha(), tiled.hasAlpha());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(expected.getRGB(x, y), tiled.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    private static BufferedImage fill(BufferedImage img) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int a = img.getColorModel().hasAlpha() ? (x * 255 / WIDTH) : 255;
+                img.setRGB(x, y, a << 24 | (x & 0xFF) << 16 | (y & 0xFF) << 8 | ((x ^ y) & 0xFF));
+            }
+        }
+        return img;
+    }
+
+    private File write(BufferedImage img, String format) throws IOException {
+        File file = dir.resolve("source." + format).toFile();
+        ImageIO.write(img, format, file);
+        return file;
+    }
+}
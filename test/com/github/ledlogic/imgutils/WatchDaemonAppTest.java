@@ -0,0 +1,109 @@
+package com.github.ledlogic.imgutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WatchDaemonAppTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void scanWithoutRecursiveProcessesExistingFiles() throws Exception {
+        Files.write(dir.resolve("part.stl"), TestData.stl(1));
+        WatchDaemonApp daemon = new WatchDaemonApp(false, 100, 1);
+        daemon.watch(dir, WatchDaemonApp.Op.PREVIEW, true);
+        runUntil(daemon, dir.resolve("part.preview.jpg"), null);
+    }
+
+    @Test
+    void watchWithoutRecursiveSeesNewFiles() throws Exception {
+        WatchDaemonApp daemon = new WatchDaemonApp(false, 100, 1);
+        daemon.watch(dir, WatchDaemonApp.Op.PREVIEW, false);
+        runUntil(daemon, dir.resolve("part.preview.jpg"), dir.resolve("part.stl"));
+    }
+
+    @Test
+    void grayscaleKeepsOriginalWhenOutputCannotBeWritten() throws Exception {
+        Path original = dir.resolve("map.png");
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", original.toFile());
+        // a non-empty folder where the PNG should go cannot be replaced or written
+        Files.createDirectories(dir.resolve("map-gray.png"));
+        Files.write(dir.resolve("map-gray.png").resolve("keep"), new byte[1]);
+
+        WatchDaemonApp daemon = new WatchDaemonApp(false, 100, 1);
+        daemon.watch(dir, WatchDaemonApp.Op.GRAYSCALE, true);
+        Thread loop = new Thread(daemon::run);
+        loop.start();
+        try {
+            await(() -> daemon.failed() >= 1, "grayscale failure");
+        } finally {
+            daemon.shutdown();
+            loop.join(5000);
+        }
+        assertTrue(Files.exists(original), "original deleted after a failed write");
+        assertEquals(0, daemon.processed());
+    }
+
+    @Test
+    void consumedAndUnwatchedFilesAreForgotten() throws Exception {
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", dir.resolve("map.png").toFile());
+
+        WatchDaemonApp daemon = new WatchDaemonApp(false, 100, 1);
+        daemon.watch(dir, WatchDaemonApp.Op.GRAYSCALE, true);
+        Thread loop = new Thread(daemon::run);
+        loop.start();
+        try {
+            awaitFile(dir.resolve("map-gray.png"));
+            // map.png is deleted by the operation; map-gray.png is never picked up
+            await(() -> daemon.remembered() == 0, "stamps to be dropped");
+        } finally {
+            daemon.shutdown();
+            loop.join(5000);
+        }
+        assertEquals(1, daemon.processed());
+    }
+
+    /** Runs the daemon, optionally writes {@code arriving}, and waits for {@code preview} */
+    private static void runUntil(WatchDaemonApp daemon, Path preview, Path arriving) throws Exception {
+        Thread loop = new Thread(daemon::run);
+        loop.start();
+        try {
+            if (arriving != null) Files.write(arriving, TestData.stl(1));
+            awaitFile(preview);
+        } finally {
+            daemon.shutdown();
+            loop.join(5000);
+        }
+        assertTrue(daemon.processed() >= 1);
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) return;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Timed out waiting for " + what);
+    }
+
+    private static void awaitFile(Path file) throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (Files.exists(file) && Files.size(file) > 0) return;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Not written within 15 s: " + file);
+    }
+}